@@ -0,0 +1,278 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.sudoku.bench;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The puzzles used by the benchmarks.  The easy, medium and hard
+ * sets are the sample .sud files shipped with the application (the
+ * build copies them into the benchmark jar).  The extreme set is
+ * generated from a few well-known hard puzzles, by relabeling the
+ * digits and shuffling the rows and columns in ways that keep the
+ * puzzle valid, so each one is as hard as the puzzle it came from.
+ * 
+ * @author Mike Wallace (mwallace at pobox.com)
+ * @version 1.0
+ */
+public final class Corpus
+{
+  /**
+   * The number of cells in a row.
+   */
+  private static final int SIZE = 9;
+  
+  /**
+   * The number of rows in a band.
+   */
+  private static final int BAND = 3;
+  
+  /**
+   * The number of puzzles in the extreme set.
+   */
+  private static final int EXTREME_COUNT = 50;
+  
+  /**
+   * The seed for generating the extreme set, so every run
+   * gets the same puzzles.
+   */
+  private static final long EXTREME_SEED = 20061016L;
+  
+  /**
+   * The well-known hard puzzles the extreme set is made from:
+   * AI Escargot, Easter Monster, Arto Inkala's 2012 puzzle,
+   * Golden Nugget and Platinum Blonde.
+   */
+  private static final String[] HARD_SEEDS = {
+    "100007090030020008009600500005300900010080002600004000300000010040000007007000300",
+    "100000002090400050006000700050903000000070000000850040700000600030009080002000001",
+    "800000000003600000070090200050007000000045700000100030001000068008500010090000400",
+    "000000039000001005003050800008090006070002000100400000009080050020000600400700000",
+    "000000012000000003002300400001800005060070800000009000008500000900040500470006000"};
+  
+  
+  /**
+   * Default constructor.  Not used.
+   */
+  private Corpus()
+  {
+    super();
+  }
+  
+  
+  /**
+   * Return the puzzles in a set.
+   * 
+   * @param level the set: easy, medium, hard, extreme or all
+   * @return the puzzles, as 81 digits each
+   * @throws IOException if a sample file can't be read
+   */
+  public static List<String> load(final String level) throws IOException
+  {
+    List<String> list = new ArrayList<String>(EXTREME_COUNT);
+    if ("easy".equals(level))
+    {
+      addFile(list, "easy1.sud");
+      addFile(list, "easy2.sud");
+    }
+    else if ("medium".equals(level))
+    {
+      addFile(list, "med1.sud");
+      addFile(list, "med2.sud");
+    }
+    else if ("hard".equals(level))
+    {
+      addFile(list, "hard1.sud");
+      addFile(list, "hard2.sud");
+      addFile(list, "hard3.sud");
+    }
+    else if ("extreme".equals(level))
+    {
+      addExtreme(list);
+    }
+    else if ("all".equals(level))
+    {
+      list.addAll(load("easy"));
+      list.addAll(load("medium"));
+      list.addAll(load("hard"));
+      list.addAll(load("extreme"));
+    }
+    else
+    {
+      throw new IllegalArgumentException("Unknown puzzle set: " + level);
+    }
+    
+    return list;
+  }
+  
+  
+  /**
+   * Add the puzzles in a sample file.  Lines that are blank or
+   * start with '#' are skipped.
+   * 
+   * @param list the list to add to
+   * @param name the name of the file
+   * @throws IOException if the file can't be read
+   */
+  private static void addFile(final List<String> list, final String name)
+    throws IOException
+  {
+    final InputStream in = Corpus.class.getResourceAsStream("/" + name);
+    if (in == null)
+    {
+      throw new IOException("Missing sample puzzle " + name);
+    }
+    
+    BufferedReader reader = new BufferedReader(
+        new InputStreamReader(in, StandardCharsets.US_ASCII));
+    try
+    {
+      String line;
+      while ((line = reader.readLine()) != null)
+      {
+        line = line.trim();
+        if ((line.length() > 0) && (!line.startsWith("#")))
+        {
+          list.add(line);
+        }
+      }
+    }
+    finally
+    {
+      reader.close();
+    }
+  }
+  
+  
+  /**
+   * Add the generated extreme puzzles.
+   * 
+   * @param list the list to add to
+   */
+  private static void addExtreme(final List<String> list)
+  {
+    Random random = new Random(EXTREME_SEED);
+    for (int i = 0; i < EXTREME_COUNT; ++i)
+    {
+      list.add(transform(HARD_SEEDS[i % HARD_SEEDS.length], random));
+    }
+  }
+  
+  
+  /**
+   * Return a random puzzle equivalent to the one given: the digits
+   * are relabeled, the bands and stacks are shuffled, the rows and
+   * columns are shuffled within them, and the grid may be transposed.
+   * 
+   * @param puzzle the puzzle, as 81 digits
+   * @param random the source of random numbers
+   * @return the new puzzle
+   */
+  static String transform(final String puzzle, final Random random)
+  {
+    final int[] digits = shuffle(SIZE + 1, 1, random);
+    final int[] rows = shuffleLines(random);
+    final int[] cols = shuffleLines(random);
+    final boolean transpose = random.nextBoolean();
+    
+    StringBuilder sb = new StringBuilder(SIZE * SIZE);
+    for (int row = 0; row < SIZE; ++row)
+    {
+      for (int col = 0; col < SIZE; ++col)
+      {
+        final int r = (transpose ? cols[col] : rows[row]);
+        final int c = (transpose ? rows[row] : cols[col]);
+        final int value = Character.digit(puzzle.charAt((r * SIZE) + c), 10);
+        sb.append((char) ('0' + ((value > 0) ? digits[value] : 0)));
+      }
+    }
+    
+    return sb.toString();
+  }
+  
+  
+  /**
+   * Return a random order of the rows (or columns) that keeps
+   * each band of three together.
+   * 
+   * @param random the source of random numbers
+   * @return the new order of the lines
+   */
+  private static int[] shuffleLines(final Random random)
+  {
+    final int[] bands = shuffle(BAND, 0, random);
+    int[] lines = new int[SIZE];
+    for (int band = 0; band < BAND; ++band)
+    {
+      final int[] within = shuffle(BAND, 0, random);
+      for (int i = 0; i < BAND; ++i)
+      {
+        lines[(band * BAND) + i] = (bands[band] * BAND) + within[i];
+      }
+    }
+    
+    return lines;
+  }
+  
+  
+  /**
+   * Return an array whose entries from the start index on are
+   * a random order of those same indexes.
+   * 
+   * @param length the length of the array
+   * @param start the first index to shuffle
+   * @param random the source of random numbers
+   * @return the shuffled array
+   */
+  private static int[] shuffle(final int length, final int start, final Random random)
+  {
+    int[] array = new int[length];
+    for (int i = 0; i < length; ++i)
+    {
+      array[i] = i;
+    }
+    
+    for (int i = length - 1; i > start; --i)
+    {
+      final int j = start + random.nextInt(i - start + 1);
+      final int temp = array[i];
+      array[i] = array[j];
+      array[j] = temp;
+    }
+    
+    return array;
+  }
+}
@@ -0,0 +1,247 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.sudoku.bench;
+
+import io.miti.sudoku.Sudoku;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The JMH benchmarks for the Sudoku class.  Each benchmark works
+ * through the puzzles of one set in turn, so the results are an
+ * average over the set.  The solve benchmarks include the setData()
+ * call that loads the puzzle, which is measured on its own too.
+ * 
+ * Run with -prof gc to see the allocation rate of each one.
+ * 
+ * @author Mike Wallace (mwallace at pobox.com)
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SudokuBenchmark
+{
+  /**
+   * The set of puzzles to use.
+   */
+  @Param({"easy", "medium", "hard", "extreme"})
+  private String level;
+  
+  /**
+   * The puzzles in the set.
+   */
+  private String[] puzzles;
+  
+  /**
+   * The puzzles, loaded.
+   */
+  private Sudoku[] loaded;
+  
+  /**
+   * A second copy of the loaded puzzles, for equals().
+   */
+  private Sudoku[] copies;
+  
+  /**
+   * The puzzle that's reused for loading and solving.
+   */
+  private Sudoku work;
+  
+  /**
+   * The index of the next puzzle.
+   */
+  private int next = 0;
+  
+  
+  /**
+   * Load the puzzles.
+   * 
+   * @throws IOException if the sample puzzles can't be read
+   */
+  @Setup
+  public void setUp() throws IOException
+  {
+    final List<String> list = Corpus.load(level);
+    puzzles = list.toArray(new String[list.size()]);
+    loaded = new Sudoku[puzzles.length];
+    copies = new Sudoku[puzzles.length];
+    for (int i = 0; i < puzzles.length; ++i)
+    {
+      loaded[i] = new Sudoku();
+      loaded[i].setData(puzzles[i]);
+      copies[i] = new Sudoku();
+      copies[i].setData(puzzles[i]);
+    }
+    
+    work = new Sudoku();
+  }
+  
+  
+  /**
+   * Return the index of the next puzzle, and move on.
+   * 
+   * @return the index of the next puzzle
+   */
+  private int nextIndex()
+  {
+    final int index = next;
+    next = ((index + 1 == puzzles.length) ? 0 : (index + 1));
+    return index;
+  }
+  
+  
+  /**
+   * Load a puzzle.
+   * 
+   * @return the puzzle
+   */
+  @Benchmark
+  public Sudoku setData()
+  {
+    work.setData(puzzles[nextIndex()]);
+    return work;
+  }
+  
+  
+  /**
+   * Check whether a puzzle is valid.
+   * 
+   * @return whether the puzzle is valid
+   */
+  @Benchmark
+  public boolean isValid()
+  {
+    return loaded[nextIndex()].isValid();
+  }
+  
+  
+  /**
+   * Load a puzzle and solve it with the deduction rules only.
+   * 
+   * @return whether the puzzle was solved
+   */
+  @Benchmark
+  public boolean solve()
+  {
+    work.setData(puzzles[nextIndex()]);
+    return work.solve();
+  }
+  
+  
+  /**
+   * Load a puzzle and solve it with the deduction rules and
+   * the search.
+   * 
+   * @return whether the puzzle was solved
+   */
+  @Benchmark
+  public boolean solveWithGuess()
+  {
+    work.setData(puzzles[nextIndex()]);
+    return work.solveWithGuess();
+  }
+  
+  
+  /**
+   * Return the cells of a puzzle as a string.
+   * 
+   * @return the cells
+   */
+  @Benchmark
+  public String getData()
+  {
+    return loaded[nextIndex()].getData();
+  }
+  
+  
+  /**
+   * Return the hash code of a puzzle.
+   * 
+   * @return the hash code
+   */
+  @Benchmark
+  public int hashCodeOf()
+  {
+    return loaded[nextIndex()].hashCode();
+  }
+  
+  
+  /**
+   * Compare a puzzle with an equal copy, which has to compare
+   * every cell.
+   * 
+   * @return whether the puzzles are equal
+   */
+  @Benchmark
+  public boolean equalsCopy()
+  {
+    final int index = nextIndex();
+    return loaded[index].equals(copies[index]);
+  }
+  
+  
+  /**
+   * Solve every puzzle in the set.
+   * 
+   * @return the number of puzzles solved
+   */
+  @Benchmark
+  public int solveAll()
+  {
+    int solved = 0;
+    for (String puzzle : puzzles)
+    {
+      work.setData(puzzle);
+      if (work.solveWithGuess())
+      {
+        ++solved;
+      }
+    }
+    
+    return solved;
+  }
+}
@@ -42,6 +42,7 @@ import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
@@ -52,9 +53,12 @@ import java.util.GregorianCalendar;
 import javax.swing.JButton;
 import javax.swing.JFileChooser;
 import javax.swing.JFrame;
+import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JTextField;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
 
 /**
  * This class is the GUI for the Sudoku Struggler.
@@ -109,6 +113,46 @@ public final class App implements KeyListener
    */
   private JButton btnCopy = null;
   
+  /**
+   * The Cancel button, to stop a solve in progress.
+   */
+  private JButton btnCancel = null;
+  
+  /**
+   * The status area, showing the progress and time of a solve.
+   */
+  private JLabel lblStatus = null;
+  
+  /**
+   * The default time limit for a solve, in seconds.
+   */
+  private static final int DEFAULT_TIMEOUT = 30;
+  
+  /**
+   * How often the status area is updated during a solve, in milliseconds.
+   */
+  private static final int STATUS_MILLIS = 100;
+  
+  /**
+   * The time limit for a solve, in milliseconds.
+   */
+  private long timeoutMillis = DEFAULT_TIMEOUT * 1000L;
+  
+  /**
+   * The solve in progress, or null.
+   */
+  private SolveWorker solveWorker = null;
+  
+  /**
+   * The validity check in progress, or null.
+   */
+  private CheckWorker checkWorker = null;
+  
+  /**
+   * Updates the status area during a solve.
+   */
+  private Timer statusTimer = null;
+  
   /**
    * The working directory.  Default to the current directory.
    */
@@ -124,6 +168,11 @@ public final class App implements KeyListener
    */
   private Sudoku sudokuBackup = null;
   
+  /**
+   * The solver used by the Solve button.
+   */
+  private SudokuSolver solver = null;
+  
   
   /**
    * Default constructor.
@@ -132,6 +181,27 @@ public final class App implements KeyListener
   {
     // Instantiate the backup puzzle
     sudokuBackup = new Sudoku();
+    
+    // Create the solver, which can be chosen with -Dsudoku.solver=dlx
+    solver = SolverType.getSolverType(
+               System.getProperty("sudoku.solver")).createSolver();
+    
+    // Check a persistent store first, if one was set with -Dsudoku.store=file
+    final String storeName = System.getProperty("sudoku.store");
+    if (storeName != null)
+    {
+      try
+      {
+        solver = new StoredSolver(solver, new SolutionStore(new File(storeName)));
+      }
+      catch (IOException ioe)
+      {
+        System.err.println("Unable to open the solution store: " + ioe.getMessage());
+      }
+    }
+    
+    // Get the time limit for a solve, which can be set with -Dsudoku.timeout=seconds
+    timeoutMillis = Integer.getInteger("sudoku.timeout", DEFAULT_TIMEOUT) * 1000L;
   }
   
   
@@ -191,8 +261,16 @@ public final class App implements KeyListener
     // Set operation to do when user presses enter.
     m_appFrame.getRootPane().setDefaultButton(btnSolve);
     
-    // Add the button panel to the frame
-    m_appFrame.getContentPane().add(buttonPanel, BorderLayout.SOUTH);
+    // Create a panel for the status area and the Cancel button
+    JPanel statusPanel = new JPanel(new BorderLayout(5, 5));
+    statusPanel.add(lblStatus, BorderLayout.CENTER);
+    statusPanel.add(btnCancel, BorderLayout.EAST);
+    
+    // Add the button and status panels to the frame
+    JPanel southPanel = new JPanel(new BorderLayout(5, 5));
+    southPanel.add(buttonPanel, BorderLayout.CENTER);
+    southPanel.add(statusPanel, BorderLayout.SOUTH);
+    m_appFrame.getContentPane().add(southPanel, BorderLayout.SOUTH);
   }
   
   
@@ -348,6 +426,31 @@ public final class App implements KeyListener
       }
     });
     
+    // Initialize the Cancel button, which is only enabled during a solve
+    btnCancel = new JButton("Cancel");
+    btnCancel.setToolTipText("Stop solving or checking the puzzle");
+    btnCancel.setEnabled(false);
+    btnCancel.addActionListener(new java.awt.event.ActionListener()
+    {
+      public void actionPerformed(final java.awt.event.ActionEvent evt)
+      {
+        // Stop the solve
+        cancelSolve();
+      }
+    });
+    
+    // Initialize the status area
+    lblStatus = new JLabel(" ");
+    
+    // Update the status area while a solve is running
+    statusTimer = new Timer(STATUS_MILLIS, new java.awt.event.ActionListener()
+    {
+      public void actionPerformed(final java.awt.event.ActionEvent evt)
+      {
+        updateSolveStatus();
+      }
+    });
+    
     // Instantiate the text fields
     atfPuzzle = new JTextField[81];
     final Color whiteColor = new Color(0xFFFFFF);
@@ -369,10 +472,19 @@ public final class App implements KeyListener
   
   
   /**
-   * Check if the puzzle is valid.
+   * Check if the puzzle is valid.  The solutions are counted, and
+   * a puzzle with one solution is rated, in the background within
+   * the same time limit as a solve; the result is shown when it
+   * finishes.
    */
   private void checkValidity()
   {
+    // Only run one solve or check at a time
+    if ((solveWorker != null) || (checkWorker != null))
+    {
+      return;
+    }
+    
     // Save the puzzle data as a string
     final String data = getPuzzleData();
     
@@ -381,30 +493,94 @@ public final class App implements KeyListener
     sudoku.setData(data);
     
     // Check if it's valid
-    if (sudoku.isValid())
+    if (!sudoku.isValid())
     {
-      JOptionPane.showMessageDialog(m_appFrame, "The puzzle is valid", "Valid Puzzle",
-          JOptionPane.INFORMATION_MESSAGE);
+      JOptionPane.showMessageDialog(m_appFrame, "The puzzle is NOT VALID!",
+          "Invalid Puzzle", JOptionPane.ERROR_MESSAGE);
+      return;
     }
-    else
+    
+    // Count the solutions in the background
+    setSolving(true);
+    lblStatus.setText("Checking...");
+    lblStatus.setToolTipText(null);
+    checkWorker = new CheckWorker(sudoku);
+    checkWorker.execute();
+  }
+  
+  
+  /**
+   * Show the result of a finished validity check.
+   * 
+   * @param worker the finished check
+   */
+  private void finishCheck(final CheckWorker worker)
+  {
+    // Restore the controls
+    checkWorker = null;
+    setSolving(false);
+    lblStatus.setText(" ");
+    
+    // Check how the count ended
+    final Integer count = worker.getCount();
+    if (count == null)
     {
-      JOptionPane.showMessageDialog(m_appFrame, "The puzzle is NOT VALID!",
+      lblStatus.setText("Check failed");
+      JOptionPane.showMessageDialog(m_appFrame,
+          "Error while checking: " + worker.getFailure(),
+          "Error", JOptionPane.ERROR_MESSAGE);
+      return;
+    }
+    
+    // Show the number of solutions
+    final int numSolutions = count.intValue();
+    if (numSolutions < 0)
+    {
+      lblStatus.setText(worker.isStopping() ? "Check cancelled"
+                        : ("Check timed out after " + formatMillis(timeoutMillis)));
+    }
+    else if (numSolutions == 1)
+    {
+      final DifficultyRating rating = worker.getRating();
+      JOptionPane.showMessageDialog(m_appFrame, "The puzzle is valid\nDifficulty: "
+          + ((rating == null) ? "not rated within the time limit" : rating.toString()),
+          "Valid Puzzle", JOptionPane.INFORMATION_MESSAGE);
+    }
+    else if (numSolutions == 0)
+    {
+      JOptionPane.showMessageDialog(m_appFrame, "The puzzle has no solution",
           "Invalid Puzzle", JOptionPane.ERROR_MESSAGE);
     }
+    else
+    {
+      JOptionPane.showMessageDialog(m_appFrame,
+          "The puzzle is valid, but has multiple solutions",
+          "Multiple Solutions", JOptionPane.WARNING_MESSAGE);
+    }
   }
   
   
   /**
-   * Attempt to solve the puzzle.
+   * Attempt to solve the puzzle.  The solve runs in the background,
+   * so the window stays responsive; the result is shown when it
+   * finishes.
    * 
    * @param undoSolve whether to undo the previous solve
    */
   private void solvePuzzle(final boolean undoSolve)
   {
+    // Only run one solve at a time
+    if (solveWorker != null)
+    {
+      return;
+    }
+    
     // Check whether to solve the puzzle or undo the last solve
     if (undoSolve)
     {
       updateCells(sudokuBackup.getData());
+      lblStatus.setText(" ");
+      lblStatus.setToolTipText(null);
     }
     else
     {
@@ -426,30 +602,143 @@ public final class App implements KeyListener
       // Save the current puzzle state
       sudokuBackup.setData(data);
       
-      // Get the current time, so we can time the solving
-      // long lTime = System.currentTimeMillis();
-      
-      // Try to solve it, and save whether it was solved
-      final boolean bSolved = sudoku.solveWithGuess();
-      
-      // Print out the time it took to solve the puzzle
-      // lTime = System.currentTimeMillis() - lTime;
-      // System.out.println("Time to solve: " + Long.toString(lTime) + " ms");
-      
+      // Start solving it in the background
+      setSolving(true);
+      solveWorker = new SolveWorker(sudoku);
+      solveWorker.execute();
+      statusTimer.start();
+    }
+  }
+  
+  
+  /**
+   * Stop the solve in progress.
+   */
+  private void cancelSolve()
+  {
+    if (solveWorker != null)
+    {
+      solveWorker.stop();
+      lblStatus.setText("Cancelling...");
+    }
+    else if (checkWorker != null)
+    {
+      checkWorker.stop();
+      lblStatus.setText("Cancelling...");
+    }
+  }
+  
+  
+  /**
+   * Update the status area with the time spent on the solve in
+   * progress.  The solver stops itself when the time limit is reached.
+   */
+  private void updateSolveStatus()
+  {
+    if ((solveWorker == null) || (solveWorker.isStopping()))
+    {
+      return;
+    }
+    
+    lblStatus.setText("Solving... " + formatMillis(solveWorker.getElapsedMillis()));
+  }
+  
+  
+  /**
+   * Show the result of a finished solve.
+   * 
+   * @param worker the finished solve
+   */
+  private void finishSolve(final SolveWorker worker)
+  {
+    // Restore the controls
+    statusTimer.stop();
+    solveWorker = null;
+    setSolving(false);
+    
+    // Check how the solve ended, and show the counts of the work
+    // done when the mouse is over the status area
+    final String time = formatMillis(worker.getElapsedMillis());
+    final Sudoku sudoku = worker.getPuzzle();
+    final SolveResult result = worker.getResult();
+    if (result == null)
+    {
+      // The solver failed, so show why
+      lblStatus.setText("Failed after " + time);
+      lblStatus.setToolTipText(null);
+      JOptionPane.showMessageDialog(m_appFrame,
+          "Error while solving: " + worker.getFailure(),
+          "Error", JOptionPane.ERROR_MESSAGE);
+      return;
+    }
+    
+    final SolveStatistics statistics = sudoku.getStatistics();
+    final DifficultyRating rating = worker.getRating();
+    lblStatus.setToolTipText("<html>"
+        + ((rating == null) ? "" : ("Difficulty: " + rating.toString() + "<br>"))
+        + "Nodes: " + result.getNodeCount() + "<br>"
+        + statistics.toString().replace("\n", "<br>") + "</html>");
+    if (result.getStatus() == SolveStatus.TIMED_OUT)
+    {
+      lblStatus.setText("Timed out after " + time);
+    }
+    else if (!result.isFinished())
+    {
+      lblStatus.setText("Cancelled after " + time);
+    }
+    else if (!sudoku.isValid())
+    {
       // Check again if it's valid
-      if (!sudoku.isValid())
-      {
-        JOptionPane.showMessageDialog(m_appFrame, "The puzzle is NOT VALID!",
-            "Invalid Puzzle", JOptionPane.ERROR_MESSAGE);
-        return;
-      }
-      
+      lblStatus.setText(" ");
+      JOptionPane.showMessageDialog(m_appFrame, "The puzzle is NOT VALID!",
+          "Invalid Puzzle", JOptionPane.ERROR_MESSAGE);
+    }
+    else
+    {
       // Now update the puzzle
+      lblStatus.setText((result.isSolved() ? "Solved in " : "No solution found in ")
+                        + time + (((rating == null) || (!rating.isSolvable())) ? ""
+                                  : (": " + rating.getDifficulty() + ", score "
+                                     + rating.getScore()))
+                        + " (" + statistics.getSummary() + ")");
       updateCells(sudoku.getData());
     }
   }
   
   
+  /**
+   * Enable or disable the controls that can't be used during a
+   * solve or a validity check.
+   * 
+   * @param solving whether a solve or check is starting
+   */
+  private void setSolving(final boolean solving)
+  {
+    btnSolve.setEnabled(!solving);
+    btnValid.setEnabled(!solving);
+    btnLoad.setEnabled(!solving);
+    btnClear.setEnabled(!solving);
+    btnCancel.setEnabled(solving);
+  }
+  
+  
+  /**
+   * Format a time for the status area.
+   * 
+   * @param millis the time in milliseconds
+   * @return the formatted time
+   */
+  private static String formatMillis(final long millis)
+  {
+    if (millis < 1000L)
+    {
+      return millis + " ms";
+    }
+    
+    return (millis / 1000L) + "." + ((millis % 1000L) / 100L) + " s";
+  }
+  
+  
   /**
    * Returns the puzzle data as a string.
    * 
@@ -532,6 +821,7 @@ public final class App implements KeyListener
     
     // Add the file filters
     chooser.addChoosableFileFilter(new SudokuFilter());
+    chooser.addChoosableFileFilter(new SudokuBinaryFilter());
     chooser.addChoosableFileFilter(chooser.getAcceptAllFileFilter());
     
     // Default to the current directory
@@ -571,6 +861,13 @@ public final class App implements KeyListener
     // Save the working directory
     currentDirectory = tempDirectory;
     
+    // Check for the binary format
+    if (BinaryFormat.isBinaryName(outputFile.getName()))
+    {
+      saveBinaryPuzzle(outputFile);
+      return;
+    }
+    
     // Write out the contents of the puzzle
     BufferedWriter out = null;
     
@@ -622,6 +919,53 @@ public final class App implements KeyListener
   }
   
   
+  /**
+   * Save the puzzle to a binary puzzle file.
+   * 
+   * @param outputFile the output file
+   */
+  private void saveBinaryPuzzle(final File outputFile)
+  {
+    // Get the puzzle data
+    Sudoku puzzle = new Sudoku();
+    puzzle.setData(getPuzzleData());
+    
+    PuzzleEncoder encoder = null;
+    try
+    {
+      // Write the puzzle as the only record
+      encoder = new PuzzleEncoder(new FileOutputStream(outputFile), true);
+      encoder.write(puzzle);
+      encoder.close();
+      encoder = null;
+    }
+    catch (IOException ioe)
+    {
+      JOptionPane.showMessageDialog(m_appFrame,
+          "Error while saving: " + ioe.getMessage(),
+          "Error", JOptionPane.ERROR_MESSAGE);
+    }
+    finally
+    {
+      if (encoder != null)
+      {
+        try
+        {
+          encoder.close();
+        }
+        catch (IOException e)
+        {
+          JOptionPane.showMessageDialog(m_appFrame,
+              "Error while closing: " + e.getMessage(),
+              "Error", JOptionPane.ERROR_MESSAGE);
+        }
+        
+        encoder = null;
+      }
+    }
+  }
+  
+  
   /**
    * Copy the frame to the clipboard.
    */
@@ -720,6 +1064,7 @@ public final class App implements KeyListener
     
     // Add the file filters
     chooser.addChoosableFileFilter(new SudokuFilter());
+    chooser.addChoosableFileFilter(new SudokuBinaryFilter());
     chooser.addChoosableFileFilter(chooser.getAcceptAllFileFilter());
     
     // Default to the current directory
@@ -759,6 +1104,13 @@ public final class App implements KeyListener
     // Save the working directory
     currentDirectory = tempDirectory;
     
+    // Check for the binary format
+    if (BinaryFormat.isBinaryName(inputFile.getName()))
+    {
+      loadBinaryPuzzle(inputFile);
+      return;
+    }
+    
     // Read the input file
     BufferedReader reader = null;
     try
@@ -816,6 +1168,52 @@ public final class App implements KeyListener
   }
   
   
+  /**
+   * Load the first puzzle from a binary puzzle file.
+   * 
+   * @param inputFile the input file
+   */
+  private void loadBinaryPuzzle(final File inputFile)
+  {
+    PuzzleDecoder decoder = null;
+    try
+    {
+      // Read the first block, and decode its first record
+      decoder = new PuzzleDecoder(inputFile);
+      if (decoder.getCount() > 0)
+      {
+        Sudoku puzzle = new Sudoku();
+        decoder.readBlocks(0, 1).next(puzzle);
+        updateCells(puzzle.getData());
+      }
+    }
+    catch (IOException ioe)
+    {
+      JOptionPane.showMessageDialog(m_appFrame,
+          "Error while loading: " + ioe.getMessage(),
+          "Error", JOptionPane.ERROR_MESSAGE);
+    }
+    finally
+    {
+      if (decoder != null)
+      {
+        try
+        {
+          decoder.close();
+        }
+        catch (IOException e)
+        {
+          JOptionPane.showMessageDialog(m_appFrame,
+              "Error while closing: " + e.getMessage(),
+              "Error", JOptionPane.ERROR_MESSAGE);
+        }
+        
+        decoder = null;
+      }
+    }
+  }
+  
+  
   /**
    * Clear the puzzle.
    */
@@ -1008,4 +1406,357 @@ public final class App implements KeyListener
       }
     });
   }
+  
+  
+  /**
+   * Solves a puzzle on a background thread.  The solver checks the
+   * limits as it searches, so the solve can be stopped early.
+   */
+  private final class SolveWorker extends SwingWorker<SolveResult, Void>
+  {
+    /**
+     * The puzzle to solve.
+     */
+    private final Sudoku puzzle;
+    
+    /**
+     * The puzzle before it was solved.
+     */
+    private final String data;
+    
+    /**
+     * The difficulty of the puzzle, or null if it wasn't rated.
+     */
+    private volatile DifficultyRating rating = null;
+    
+    /**
+     * The limits on the solve.
+     */
+    private final SolveOptions options = new SolveOptions();
+    
+    /**
+     * Cancelled to stop the solve.
+     */
+    private final CancellationToken token = new CancellationToken();
+    
+    /**
+     * When the solve started, from System.nanoTime().
+     */
+    private final long start = System.nanoTime();
+    
+    /**
+     * How long the solve took, in nanoseconds, or -1 while running.
+     */
+    private volatile long elapsed = -1L;
+    
+    /**
+     * The reason the solver failed, or null.
+     */
+    private Throwable failure = null;
+    
+    
+    /**
+     * Constructor.
+     * 
+     * @param srcPuzzle the puzzle to solve
+     */
+    public SolveWorker(final Sudoku srcPuzzle)
+    {
+      puzzle = srcPuzzle;
+      data = srcPuzzle.getData();
+      puzzle.setStatistics(new SolveStatistics());
+      options.setCancellationToken(token);
+      if (timeoutMillis > 0L)
+      {
+        options.setTimeout(timeoutMillis);
+      }
+    }
+    
+    
+    /**
+     * Solve the puzzle, and rate it if it was solved.  This runs
+     * on a background thread.
+     * 
+     * @return the result of the solve
+     */
+    @Override
+    protected SolveResult doInBackground()
+    {
+      final SolveResult result;
+      try
+      {
+        result = solver.solve(puzzle, options);
+      }
+      finally
+      {
+        elapsed = System.nanoTime() - start;
+      }
+      
+      // The rating is bound by the same limits as the solve
+      if (result.isSolved())
+      {
+        rating = new DifficultyRater().rate(data, options);
+      }
+      
+      return result;
+    }
+    
+    
+    /**
+     * Show the result.  This runs on the event dispatch thread.
+     */
+    @Override
+    protected void done()
+    {
+      finishSolve(this);
+    }
+    
+    
+    /**
+     * Ask the solve to stop.
+     */
+    public void stop()
+    {
+      token.cancel();
+    }
+    
+    
+    /**
+     * Return whether the solve was asked to stop.
+     * 
+     * @return whether the solve was asked to stop
+     */
+    public boolean isStopping()
+    {
+      return token.isCancelled();
+    }
+    
+    
+    /**
+     * Return the result of the solve.  Only call this once the
+     * solve is done.
+     * 
+     * @return the result of the solve, or null if the solver failed
+     */
+    public SolveResult getResult()
+    {
+      try
+      {
+        return get();
+      }
+      catch (InterruptedException ie)
+      {
+        Thread.currentThread().interrupt();
+        return new SolveResult(SolveStatus.CANCELLED, false, 0L);
+      }
+      catch (java.util.concurrent.ExecutionException ee)
+      {
+        failure = ee.getCause();
+        return null;
+      }
+    }
+    
+    
+    /**
+     * Return the reason the solver failed.  Only call this after
+     * getResult returns null.
+     * 
+     * @return the exception thrown by the solver
+     */
+    public Throwable getFailure()
+    {
+      return failure;
+    }
+    
+    
+    /**
+     * Return the puzzle.
+     * 
+     * @return the puzzle
+     */
+    public Sudoku getPuzzle()
+    {
+      return puzzle;
+    }
+    
+    
+    /**
+     * Return the difficulty of the puzzle.
+     * 
+     * @return the rating, or null if the puzzle wasn't rated
+     */
+    public DifficultyRating getRating()
+    {
+      return rating;
+    }
+    
+    
+    /**
+     * Return the time spent solving, so far or in total.
+     * 
+     * @return the time spent solving, in milliseconds
+     */
+    public long getElapsedMillis()
+    {
+      final long nanos = elapsed;
+      return (((nanos < 0L) ? (System.nanoTime() - start) : nanos) / 1000000L);
+    }
+  }
+  
+  
+  /**
+   * Counts the solutions of a puzzle on a background thread, for
+   * the validity check, and rates the puzzle if it has just one.
+   * The count stops at two, and both are bound by the same time
+   * limit as a solve.
+   */
+  private final class CheckWorker extends SwingWorker<Integer, Void>
+  {
+    /**
+     * The puzzle to check.
+     */
+    private final Sudoku puzzle;
+    
+    /**
+     * The puzzle, as 81 digits.
+     */
+    private final String data;
+    
+    /**
+     * The difficulty of the puzzle, or null if it wasn't rated.
+     */
+    private volatile DifficultyRating rating = null;
+    
+    /**
+     * The limits on the count and the rating.
+     */
+    private final SolveOptions options = new SolveOptions();
+    
+    /**
+     * Cancelled to stop the count.
+     */
+    private final CancellationToken token = new CancellationToken();
+    
+    /**
+     * The reason the count failed, or null.
+     */
+    private Throwable failure = null;
+    
+    
+    /**
+     * Constructor.
+     * 
+     * @param srcPuzzle the puzzle to check
+     */
+    public CheckWorker(final Sudoku srcPuzzle)
+    {
+      puzzle = srcPuzzle;
+      data = srcPuzzle.getData();
+      options.setCancellationToken(token);
+      if (timeoutMillis > 0L)
+      {
+        options.setTimeout(timeoutMillis);
+      }
+    }
+    
+    
+    /**
+     * Count the solutions, up to two, and rate the puzzle if it
+     * has one.  This runs on a background thread.
+     * 
+     * @return the number of solutions, or -1 if the count was stopped
+     */
+    @Override
+    protected Integer doInBackground()
+    {
+      final int count = puzzle.countSolutions(2, options);
+      
+      // The rating is bound by the same limits as the count
+      if (count == 1)
+      {
+        rating = new DifficultyRater().rate(data, options);
+      }
+      
+      return Integer.valueOf(count);
+    }
+    
+    
+    /**
+     * Show the result.  This runs on the event dispatch thread.
+     */
+    @Override
+    protected void done()
+    {
+      finishCheck(this);
+    }
+    
+    
+    /**
+     * Ask the count to stop.
+     */
+    public void stop()
+    {
+      token.cancel();
+    }
+    
+    
+    /**
+     * Return whether the count was asked to stop.
+     * 
+     * @return whether the count was asked to stop
+     */
+    public boolean isStopping()
+    {
+      return token.isCancelled();
+    }
+    
+    
+    /**
+     * Return the number of solutions.  Only call this once the
+     * check is done.
+     * 
+     * @return the number of solutions, -1 if the count was stopped,
+     *         or null if the count failed
+     */
+    public Integer getCount()
+    {
+      try
+      {
+        return get();
+      }
+      catch (InterruptedException ie)
+      {
+        Thread.currentThread().interrupt();
+        return Integer.valueOf(-1);
+      }
+      catch (java.util.concurrent.ExecutionException ee)
+      {
+        failure = ee.getCause();
+        return null;
+      }
+    }
+    
+    
+    /**
+     * Return the reason the count failed.  Only call this after
+     * getCount returns null.
+     * 
+     * @return the exception thrown by the count
+     */
+    public Throwable getFailure()
+    {
+      return failure;
+    }
+    
+    
+    /**
+     * Return the difficulty of the puzzle.
+     * 
+     * @return the rating, or null if the puzzle wasn't rated
+     */
+    public DifficultyRating getRating()
+    {
+      return rating;
+    }
+  }
 }
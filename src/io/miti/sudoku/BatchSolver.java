@@ -0,0 +1,1190 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.sudoku;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Solve a file of puzzles without the GUI.  The input has one
+ * puzzle per line, in the same format as the .sud files; blank
+ * lines and lines starting with '#' are skipped.  The solutions
+ * are written in the same order as the input, one per line.
+ * A puzzle that can't be solved is written back out as a comment.
+ * 
+ * Either file can also be in the binary puzzle (.sdb) format.  In
+ * a binary output file, a puzzle that can't be solved is written
+ * back out unchanged, and a line that's too short is skipped,
+ * since there's no way to mark it in the binary format.  Lines
+ * that are too short are counted separately from the puzzles.
+ * 
+ * The work is split into three stages: one thread maps chunks of
+ * the input into memory, a pool of threads parses and solves them,
+ * and one thread writes the solutions.  The stages pass batches
+ * through bounded queues, so a slow disk never stalls the solver
+ * threads, and memory use stays bounded for any size of input.
+ * 
+ * @author Mike Wallace (mwallace at pobox.com)
+ * @version 1.0
+ */
+public final class BatchSolver
+{
+  /**
+   * The smallest chunk of the input in each batch, in bytes.
+   */
+  private static final long MIN_CHUNK_SIZE = 64L * 1024L;
+  
+  /**
+   * The largest chunk of the input in each batch, in bytes.
+   */
+  private static final long MAX_CHUNK_SIZE = 4L * 1024L * 1024L;
+  
+  /**
+   * The number of chunks per solver thread to aim for, so the
+   * work is balanced across the threads.
+   */
+  private static final int CHUNKS_PER_THREAD = 16;
+  
+  /**
+   * The most blocks of binary records in each batch.
+   */
+  private static final int MAX_BLOCKS = 64;
+  
+  /**
+   * The prefix written in place of a puzzle that has no solution.
+   */
+  private static final byte[] NO_SOLUTION = ascii("# no solution: ");
+  
+  /**
+   * The prefix written in place of a line that's too short.
+   */
+  private static final byte[] INVALID = ascii("# invalid: ");
+  
+  /**
+   * The number of batches that can wait in each queue, per solver thread.
+   */
+  private static final int QUEUE_DEPTH = 4;
+  
+  /**
+   * How long a stage waits on a queue before checking for errors
+   * in the other stages, in milliseconds.
+   */
+  private static final long WAIT_MILLIS = 100L;
+  
+  /**
+   * The batch that marks the end of the input.
+   */
+  private static final Batch END = new Batch(-1, null, null);
+  
+  /**
+   * The digits written for each cell value.
+   */
+  private static final byte[] DIGITS = ascii("0123456789");
+  
+  /**
+   * The number of solver threads.
+   */
+  private int threadCount = 1;
+  
+  /**
+   * The type of solver each thread uses.
+   */
+  private SolverType solverType = SolverType.LOGIC;
+  
+  /**
+   * The solution cache shared by the solver threads, or null.
+   */
+  private SolutionCache cache = null;
+  
+  /**
+   * The persistent solution store shared by the solver threads,
+   * or null.
+   */
+  private SolutionStore store = null;
+  
+  /**
+   * The counts of the work done by all of the solver threads, or
+   * null to not count.
+   */
+  private SolveStatistics statistics = null;
+  
+  /**
+   * Whether the solutions are written in the binary format.
+   */
+  private boolean binaryOutput = false;
+  
+  /**
+   * The batches waiting to be solved.
+   */
+  private BlockingQueue<Batch> inputQueue = null;
+  
+  /**
+   * The batches waiting to be written.
+   */
+  private BlockingQueue<Batch> outputQueue = null;
+  
+  /**
+   * Limits the number of batches read but not yet written, so the
+   * batches held for reordering can't grow without bound.
+   */
+  private Semaphore inFlight = null;
+  
+  /**
+   * The first error raised by any stage.
+   */
+  private final AtomicReference<Throwable> error =
+    new AtomicReference<Throwable>(null);
+  
+  /**
+   * The number of puzzles read.
+   */
+  private long puzzleCount = 0L;
+  
+  /**
+   * The number of puzzles solved.
+   */
+  private long solvedCount = 0L;
+  
+  /**
+   * The number of lines that were too short to be a puzzle.
+   */
+  private long invalidCount = 0L;
+  
+  
+  /**
+   * Constructor.
+   * 
+   * @param nThreads the number of solver threads
+   * @param type the type of solver each thread uses
+   */
+  public BatchSolver(final int nThreads, final SolverType type)
+  {
+    threadCount = Math.max(1, nThreads);
+    solverType = type;
+    
+    final int depth = QUEUE_DEPTH * threadCount;
+    inputQueue = new ArrayBlockingQueue<Batch>(depth);
+    outputQueue = new ArrayBlockingQueue<Batch>(depth);
+    inFlight = new Semaphore(3 * depth);
+  }
+  
+  
+  /**
+   * Solve each puzzle in the input file and write the solutions to
+   * the output file, in the same order.  Either file can be in the
+   * text or the binary format, based on its extension.
+   * 
+   * @param inputFile the source of the puzzles
+   * @param outputFile the destination of the solutions, or null
+   *        to write text to the console
+   * @throws IOException on a read or write error
+   */
+  public void run(final File inputFile, final File outputFile)
+    throws IOException
+  {
+    // Open the input
+    PuzzleFile textInput = null;
+    PuzzleDecoder binaryInput = null;
+    if (BinaryFormat.isBinaryName(inputFile.getName()))
+    {
+      binaryInput = new PuzzleDecoder(inputFile);
+    }
+    else
+    {
+      textInput = new PuzzleFile(inputFile);
+    }
+    
+    // Open the output
+    OutputStream output = null;
+    PuzzleEncoder encoder = null;
+    try
+    {
+      output = new BufferedOutputStream((outputFile == null) ? System.out
+                                        : new FileOutputStream(outputFile), 1 << 16);
+      binaryOutput = ((outputFile != null)
+                      && (BinaryFormat.isBinaryName(outputFile.getName())));
+      if (binaryOutput)
+      {
+        encoder = new PuzzleEncoder(output, false);
+      }
+      
+      run(textInput, binaryInput, output, encoder);
+    }
+    finally
+    {
+      // Close everything but the console
+      closeQuietly((textInput != null) ? textInput : binaryInput);
+      if (encoder != null)
+      {
+        encoder.close();
+      }
+      else if ((output != null) && (outputFile != null))
+      {
+        output.close();
+      }
+      else if (output != null)
+      {
+        output.flush();
+      }
+    }
+  }
+  
+  
+  /**
+   * Close a file, ignoring errors.
+   * 
+   * @param file the file to close
+   */
+  private static void closeQuietly(final Closeable file)
+  {
+    try
+    {
+      file.close();
+    }
+    catch (IOException ioe)
+    {
+      System.err.println("Error while closing: " + ioe.getMessage());
+    }
+  }
+  
+  
+  /**
+   * Run the three stages.
+   * 
+   * @param textInput the text source of the puzzles, or null
+   * @param binaryInput the binary source of the puzzles, or null
+   * @param output the destination of the solutions
+   * @param encoder the binary encoder for the output, or null
+   *        for text
+   * @throws IOException on a read or write error
+   */
+  private void run(final PuzzleFile textInput,
+                   final PuzzleDecoder binaryInput,
+                   final OutputStream output,
+                   final PuzzleEncoder encoder)
+    throws IOException
+  {
+    // Start the solver threads
+    List<Thread> threads = new ArrayList<Thread>(threadCount + 1);
+    for (int i = 0; i < threadCount; ++i)
+    {
+      threads.add(startThread(new Runnable()
+      {
+        public void run()
+        {
+          solveBatches();
+        }
+      }, "solver-" + i));
+    }
+    
+    // Start the writer thread
+    threads.add(startThread(new Runnable()
+    {
+      public void run()
+      {
+        writeBatches(output, encoder);
+      }
+    }, "writer"));
+    
+    // Read the input on this thread
+    if (textInput != null)
+    {
+      readBatches(textInput);
+    }
+    else
+    {
+      readBatches(binaryInput);
+    }
+    
+    // Wait for the other stages to finish
+    for (Thread thread : threads)
+    {
+      try
+      {
+        thread.join();
+      }
+      catch (InterruptedException ie)
+      {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while solving", ie);
+      }
+    }
+    
+    // Pass along any error
+    final Throwable cause = error.get();
+    if (cause instanceof IOException)
+    {
+      throw (IOException) cause;
+    }
+    else if (cause != null)
+    {
+      throw new RuntimeException(cause);
+    }
+  }
+  
+  
+  /**
+   * Return the number of puzzles read.
+   * 
+   * @return the number of puzzles read
+   */
+  public long getPuzzleCount()
+  {
+    return puzzleCount;
+  }
+  
+  
+  /**
+   * Return the number of puzzles solved.
+   * 
+   * @return the number of puzzles solved
+   */
+  public long getSolvedCount()
+  {
+    return solvedCount;
+  }
+  
+  
+  /**
+   * Return the number of lines that were too short to be a puzzle.
+   * 
+   * @return the number of invalid lines
+   */
+  public long getInvalidCount()
+  {
+    return invalidCount;
+  }
+  
+  
+  /**
+   * Set the solution cache shared by the solver threads.  This
+   * must be called before run.
+   * 
+   * @param srcCache the cache, or null for none
+   */
+  public void setCache(final SolutionCache srcCache)
+  {
+    cache = srcCache;
+  }
+  
+  
+  /**
+   * Set the persistent solution store shared by the solver threads.
+   * It's checked after the cache.  This must be called before run.
+   * 
+   * @param srcStore the store, or null for none
+   */
+  public void setStore(final SolutionStore srcStore)
+  {
+    store = srcStore;
+  }
+  
+  
+  /**
+   * Set the object that counts the work done by the solvers.  Each
+   * solver thread keeps its own counts, and adds them to this one
+   * when it's done.  This must be called before run.
+   * 
+   * @param srcStatistics the counts, or null to not count
+   */
+  public void setStatistics(final SolveStatistics srcStatistics)
+  {
+    statistics = srcStatistics;
+  }
+  
+  
+  /**
+   * Create and start a daemon thread.
+   * 
+   * @param task the code to run
+   * @param name the thread name
+   * @return the thread
+   */
+  private static Thread startThread(final Runnable task, final String name)
+  {
+    Thread thread = new Thread(task, "batch-" + name);
+    thread.setDaemon(true);
+    thread.start();
+    return thread;
+  }
+  
+  
+  /**
+   * Map the input in chunks and queue them for the solvers.
+   * 
+   * @param input the source of the puzzles
+   */
+  private void readBatches(final PuzzleFile input)
+  {
+    // Size the chunks so each thread gets several
+    final long chunkSize = Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE,
+        input.getSize() / (threadCount * CHUNKS_PER_THREAD)));
+    
+    try
+    {
+      int sequence = 0;
+      for (PuzzleFile.Chunk chunk : input.split(chunkSize))
+      {
+        if (error.get() != null)
+        {
+          break;
+        }
+        
+        // Bring the chunk into memory before a solver needs it
+        chunk.load();
+        queueBatch(new Batch(sequence++, chunk, null));
+      }
+    }
+    catch (IOException ioe)
+    {
+      error.compareAndSet(null, ioe);
+    }
+    catch (InterruptedException ie)
+    {
+      error.compareAndSet(null, ie);
+    }
+    finally
+    {
+      // Tell the solvers there's no more input
+      endInput();
+    }
+  }
+  
+  
+  /**
+   * Read the binary input in runs of blocks and queue them for
+   * the solvers.
+   * 
+   * @param input the source of the puzzles
+   */
+  private void readBatches(final PuzzleDecoder input)
+  {
+    // Size the batches so each thread gets several
+    final int blockCount = input.getBlockCount();
+    final int blocksPerBatch = Math.max(1, Math.min(MAX_BLOCKS,
+        blockCount / (threadCount * CHUNKS_PER_THREAD)));
+    
+    try
+    {
+      int sequence = 0;
+      for (int block = 0; block < blockCount; block += blocksPerBatch)
+      {
+        if (error.get() != null)
+        {
+          break;
+        }
+        
+        queueBatch(new Batch(sequence++, null,
+                             input.readBlocks(block, blocksPerBatch)));
+      }
+    }
+    catch (IOException ioe)
+    {
+      error.compareAndSet(null, ioe);
+    }
+    catch (InterruptedException ie)
+    {
+      error.compareAndSet(null, ie);
+    }
+    finally
+    {
+      // Tell the solvers there's no more input
+      endInput();
+    }
+  }
+  
+  
+  /**
+   * Queue a batch for the solvers, waiting if too many batches
+   * are waiting to be written.  This gives up if another stage
+   * has failed.
+   * 
+   * @param batch the batch to queue
+   * @throws InterruptedException if the thread is interrupted
+   */
+  private void queueBatch(final Batch batch) throws InterruptedException
+  {
+    while (!inFlight.tryAcquire(WAIT_MILLIS, TimeUnit.MILLISECONDS))
+    {
+      if (error.get() != null)
+      {
+        return;
+      }
+    }
+    
+    while (!inputQueue.offer(batch, WAIT_MILLIS, TimeUnit.MILLISECONDS))
+    {
+      if (error.get() != null)
+      {
+        return;
+      }
+    }
+  }
+  
+  
+  /**
+   * Queue the end-of-input marker.  If another stage has failed,
+   * the unsolved batches are discarded to make room.
+   */
+  private void endInput()
+  {
+    boolean interrupted = false;
+    while (true)
+    {
+      try
+      {
+        if (inputQueue.offer(END, WAIT_MILLIS, TimeUnit.MILLISECONDS))
+        {
+          break;
+        }
+      }
+      catch (InterruptedException ie)
+      {
+        interrupted = true;
+      }
+      
+      if (error.get() != null)
+      {
+        inputQueue.clear();
+      }
+    }
+    
+    if (interrupted)
+    {
+      Thread.currentThread().interrupt();
+    }
+  }
+  
+  
+  /**
+   * Solve batches until the end of the input.
+   */
+  private void solveBatches()
+  {
+    // Each thread has its own solver, puzzle and output buffer
+    final Worker worker = new Worker();
+    
+    try
+    {
+      Batch batch = inputQueue.take();
+      while (batch != END)
+      {
+        worker.solve(batch);
+        outputQueue.put(batch);
+        batch = inputQueue.take();
+      }
+      
+      // Leave the marker for the other solver threads
+      endInput();
+    }
+    catch (IOException ioe)
+    {
+      error.compareAndSet(null, ioe);
+      endInput();
+    }
+    catch (InterruptedException ie)
+    {
+      error.compareAndSet(null, ie);
+      endInput();
+    }
+    catch (RuntimeException re)
+    {
+      error.compareAndSet(null, re);
+      endInput();
+    }
+    finally
+    {
+      // Add this thread's counts to the total
+      if (statistics != null)
+      {
+        synchronized (statistics)
+        {
+          statistics.add(worker.puzzle.getStatistics());
+        }
+      }
+      
+      // Tell the writer this thread is done
+      putQuietly(outputQueue, END);
+    }
+  }
+  
+  
+  /**
+   * Convert a string of ASCII characters to bytes.
+   * 
+   * @param str the string
+   * @return the bytes
+   */
+  private static byte[] ascii(final String str)
+  {
+    final int len = str.length();
+    byte[] bytes = new byte[len];
+    for (int i = 0; i < len; ++i)
+    {
+      bytes[i] = (byte) str.charAt(i);
+    }
+    
+    return bytes;
+  }
+  
+  
+  /**
+   * Write the solved batches in their original order.
+   * 
+   * @param output the destination of the text solutions
+   * @param encoder the destination of the binary solutions, or null
+   */
+  private void writeBatches(final OutputStream output,
+                            final PuzzleEncoder encoder)
+  {
+    // Batches that arrived ahead of their turn
+    Map<Integer, Batch> pending = new HashMap<Integer, Batch>();
+    int nextSequence = 0;
+    int running = threadCount;
+    
+    try
+    {
+      while (running > 0)
+      {
+        // Count the solver threads that have finished
+        Batch batch = outputQueue.take();
+        if (batch == END)
+        {
+          --running;
+          continue;
+        }
+        
+        // Write every batch that's now in order
+        pending.put(batch.sequence, batch);
+        batch = pending.remove(nextSequence);
+        while (batch != null)
+        {
+          if (encoder != null)
+          {
+            for (int i = 0; i < batch.puzzleCount; ++i)
+            {
+              encoder.write(batch.grids, i * Geometry.NUM_CELLS);
+            }
+          }
+          else
+          {
+            output.write(batch.output);
+          }
+          
+          puzzleCount += batch.puzzleCount;
+          solvedCount += batch.solvedCount;
+          invalidCount += batch.invalidCount;
+          inFlight.release();
+          ++nextSequence;
+          batch = pending.remove(nextSequence);
+        }
+      }
+      
+      output.flush();
+    }
+    catch (IOException ioe)
+    {
+      error.compareAndSet(null, ioe);
+    }
+    catch (InterruptedException ie)
+    {
+      error.compareAndSet(null, ie);
+    }
+    finally
+    {
+      // If the writer failed, keep the solver threads from blocking
+      if (running > 0)
+      {
+        drain(running);
+      }
+    }
+  }
+  
+  
+  /**
+   * Discard the solved batches after a write error, so the
+   * solver threads can finish.
+   * 
+   * @param nRunning the number of solver threads still running
+   */
+  private void drain(final int nRunning)
+  {
+    for (int running = nRunning; running > 0; )
+    {
+      try
+      {
+        if (outputQueue.take() == END)
+        {
+          --running;
+        }
+      }
+      catch (InterruptedException ie)
+      {
+        return;
+      }
+    }
+  }
+  
+  
+  /**
+   * Add to a queue, ignoring interrupts.  This is used to pass
+   * the end markers to the writer thread.
+   * 
+   * @param queue the queue
+   * @param batch the batch to add
+   */
+  private static void putQuietly(final BlockingQueue<Batch> queue,
+                                 final Batch batch)
+  {
+    boolean interrupted = false;
+    while (true)
+    {
+      try
+      {
+        queue.put(batch);
+        break;
+      }
+      catch (InterruptedException ie)
+      {
+        interrupted = true;
+      }
+    }
+    
+    if (interrupted)
+    {
+      Thread.currentThread().interrupt();
+    }
+  }
+  
+  
+  /**
+   * Print the usage message and exit.
+   */
+  private static void usage()
+  {
+    System.err.println("Usage: java -cp sudokustruggler.jar io.miti.sudoku.BatchSolver"
+        + " [-threads n] [-solver logic|dlx|parallel] [-cache size [-canonical]] [-store file] [-stats] input [output]");
+    System.exit(1);
+  }
+  
+  
+  /**
+   * Entry point to the batch solver.
+   * 
+   * @param args the command-line arguments
+   */
+  public static void main(final String[] args)
+  {
+    // Parse the arguments
+    int nThreads = Runtime.getRuntime().availableProcessors();
+    SolverType type = SolverType.LOGIC;
+    String inName = null;
+    String outName = null;
+    int cacheSize = 0;
+    boolean canonical = false;
+    String storeName = null;
+    boolean bStats = false;
+    for (int i = 0; i < args.length; ++i)
+    {
+      if ((args[i].equals("-threads")) && (i + 1 < args.length))
+      {
+        nThreads = Integer.parseInt(args[++i]);
+      }
+      else if ((args[i].equals("-solver")) && (i + 1 < args.length))
+      {
+        type = SolverType.getSolverType(args[++i]);
+      }
+      else if ((args[i].equals("-cache")) && (i + 1 < args.length))
+      {
+        cacheSize = Integer.parseInt(args[++i]);
+      }
+      else if (args[i].equals("-canonical"))
+      {
+        canonical = true;
+      }
+      else if ((args[i].equals("-store")) && (i + 1 < args.length))
+      {
+        storeName = args[++i];
+      }
+      else if (args[i].equals("-stats"))
+      {
+        bStats = true;
+      }
+      else if (inName == null)
+      {
+        inName = args[i];
+      }
+      else if (outName == null)
+      {
+        outName = args[i];
+      }
+      else
+      {
+        usage();
+      }
+    }
+    
+    if (inName == null)
+    {
+      usage();
+    }
+    
+    // Solve the file
+    BatchSolver batch = new BatchSolver(nThreads, type);
+    final SolutionCache cache = ((cacheSize > 0)
+                                 ? new SolutionCache(cacheSize, canonical) : null);
+    batch.setCache(cache);
+    SolutionStore store = null;
+    final SolveStatistics statistics = (bStats ? new SolveStatistics() : null);
+    batch.setStatistics(statistics);
+    final long start = System.nanoTime();
+    try
+    {
+      if (storeName != null)
+      {
+        store = new SolutionStore(new File(storeName));
+        batch.setStore(store);
+      }
+      
+      batch.run(new File(inName), (outName == null) ? null : new File(outName));
+      
+      if (store != null)
+      {
+        store.close();
+      }
+    }
+    catch (IOException ioe)
+    {
+      System.err.println("Error while solving: " + ioe.getMessage());
+      System.exit(1);
+    }
+    
+    // Print a summary
+    final long elapsed = (System.nanoTime() - start) / 1000000L;
+    System.err.println("Solved " + batch.getSolvedCount() + " of "
+        + batch.getPuzzleCount() + " puzzles in " + elapsed + " ms");
+    if (batch.getInvalidCount() > 0L)
+    {
+      System.err.println("Skipped " + batch.getInvalidCount()
+          + " lines that were too short");
+    }
+    
+    if (cache != null)
+    {
+      System.err.println(cache.toString());
+    }
+    
+    if (store != null)
+    {
+      System.err.println(store.toString());
+    }
+    
+    if (statistics != null)
+    {
+      System.err.println(statistics.toString());
+    }
+  }
+  
+  
+  /**
+   * The thread-local state of a solver thread.
+   */
+  private final class Worker
+  {
+    /**
+     * The solver.
+     */
+    private final SudokuSolver solver;
+    
+    /**
+     * The puzzle being solved.
+     */
+    private final Sudoku puzzle = new Sudoku();
+    
+    /**
+     * Used to copy out each solution.
+     */
+    private final int[] grid = new int[Geometry.NUM_CELLS];
+    
+    /**
+     * The text solutions for the current batch.
+     */
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    
+    /**
+     * The binary solutions for the current batch.
+     */
+    private int[] grids = new int[Geometry.NUM_CELLS * 64];
+    
+    /**
+     * The number of values in grids.
+     */
+    private int gridSize = 0;
+    
+    
+    /**
+     * Default constructor.
+     */
+    public Worker()
+    {
+      // Put the store, then the cache, in front of the solver
+      SudokuSolver chain = solverType.createSolver();
+      if (store != null)
+      {
+        chain = new StoredSolver(chain, store);
+      }
+      
+      if (cache != null)
+      {
+        chain = new CachingSolver(chain, cache);
+      }
+      
+      solver = chain;
+      
+      // Count the work done, if asked to
+      if (statistics != null)
+      {
+        puzzle.setStatistics(new SolveStatistics());
+      }
+    }
+    
+    
+    /**
+     * Solve each puzzle in a batch, and save the solutions in it.
+     * 
+     * @param batch the batch to solve
+     * @throws IOException if a binary record is damaged
+     */
+    public void solve(final Batch batch) throws IOException
+    {
+      out.reset();
+      gridSize = 0;
+      
+      if (batch.chunk != null)
+      {
+        // Parse each record straight from the mapped chunk
+        final PuzzleFile.Chunk chunk = batch.chunk;
+        final ByteBuffer buffer = chunk.getBuffer();
+        for (int offset = chunk.nextRecord(); offset >= 0;
+             offset = chunk.nextRecord())
+        {
+          // Check the length, since setData ignores missing cells
+          final int length = chunk.getRecordLength();
+          if (length < Geometry.NUM_CELLS)
+          {
+            writeInvalid(batch, buffer, offset, length);
+          }
+          else
+          {
+            puzzle.setData(buffer, offset);
+            solvePuzzle(batch);
+          }
+        }
+      }
+      else
+      {
+        // Unpack each binary record
+        while (batch.records.next(puzzle))
+        {
+          solvePuzzle(batch);
+        }
+      }
+      
+      // Save the solutions
+      if (binaryOutput)
+      {
+        batch.grids = Arrays.copyOf(grids, gridSize);
+      }
+      else
+      {
+        batch.output = out.toByteArray();
+      }
+    }
+    
+    
+    /**
+     * Solve the current puzzle, and save the solution.
+     * 
+     * @param batch the batch holding the puzzle
+     */
+    private void solvePuzzle(final Batch batch)
+    {
+      ++batch.puzzleCount;
+      final boolean solved = solver.solve(puzzle);
+      if (solved)
+      {
+        ++batch.solvedCount;
+      }
+      
+      // The solvers leave an unsolved puzzle unchanged
+      puzzle.getMatrix(grid);
+      if (binaryOutput)
+      {
+        addGrid(grid);
+        return;
+      }
+      
+      if (!solved)
+      {
+        out.write(NO_SOLUTION, 0, NO_SOLUTION.length);
+      }
+      
+      for (int i = 0; i < Geometry.NUM_CELLS; ++i)
+      {
+        out.write(DIGITS[grid[i]]);
+      }
+      out.write('\n');
+    }
+    
+    
+    /**
+     * Count a line that's too short to be a puzzle.  In text
+     * output it's written back out as a comment; in binary output
+     * it's left out, since an empty grid would read back as a
+     * valid puzzle.
+     * 
+     * @param batch the batch holding the line
+     * @param buffer the buffer holding the line
+     * @param offset the index of the line in the buffer
+     * @param length the length of the line
+     */
+    private void writeInvalid(final Batch batch, final ByteBuffer buffer,
+                              final int offset, final int length)
+    {
+      ++batch.invalidCount;
+      if (binaryOutput)
+      {
+        return;
+      }
+      
+      out.write(INVALID, 0, INVALID.length);
+      for (int i = 0; i < length; ++i)
+      {
+        out.write(buffer.get(offset + i));
+      }
+      out.write('\n');
+    }
+    
+    
+    /**
+     * Add a grid to the binary solutions.
+     * 
+     * @param cells the 81 cell values
+     */
+    private void addGrid(final int[] cells)
+    {
+      if (gridSize + Geometry.NUM_CELLS > grids.length)
+      {
+        grids = Arrays.copyOf(grids, grids.length * 2);
+      }
+      
+      System.arraycopy(cells, 0, grids, gridSize, Geometry.NUM_CELLS);
+      gridSize += Geometry.NUM_CELLS;
+    }
+  }
+  
+  
+  /**
+   * A numbered part of the input, and its solutions.
+   */
+  private static final class Batch
+  {
+    /**
+     * The position of this batch in the input.
+     */
+    private final int sequence;
+    
+    /**
+     * The chunk of the text input, or null.
+     */
+    private final PuzzleFile.Chunk chunk;
+    
+    /**
+     * The records of the binary input, or null.
+     */
+    private final PuzzleDecoder.Records records;
+    
+    /**
+     * The text solutions, set by the solver thread.
+     */
+    private byte[] output = null;
+    
+    /**
+     * The binary solutions, set by the solver thread.
+     */
+    private int[] grids = null;
+    
+    /**
+     * The number of puzzles in the chunk.
+     */
+    private int puzzleCount = 0;
+    
+    /**
+     * The number of puzzles solved.
+     */
+    private int solvedCount = 0;
+    
+    /**
+     * The number of lines that were too short to be a puzzle.
+     */
+    private int invalidCount = 0;
+    
+    
+    /**
+     * Constructor.
+     * 
+     * @param nSequence the position of this batch in the input
+     * @param srcChunk the chunk of the text input, or null
+     * @param srcRecords the records of the binary input, or null
+     */
+    public Batch(final int nSequence, final PuzzleFile.Chunk srcChunk,
+                 final PuzzleDecoder.Records srcRecords)
+    {
+      sequence = nSequence;
+      chunk = srcChunk;
+      records = srcRecords;
+    }
+  }
+}
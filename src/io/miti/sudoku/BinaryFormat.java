@@ -0,0 +1,279 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.sudoku;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * The layout of the binary puzzle (.sdb) format, and the code to
+ * pack and unpack a single record.
+ * 
+ * A file starts with an 8-byte header: the magic bytes "SUDB",
+ * the format version, the record encoding, and the number of
+ * records per index entry (a big-endian short).  The records
+ * follow.  After the records comes the index, which holds the
+ * file offset (a long) of every INDEX_INTERVAL-th record.  The
+ * file ends with a 16-byte trailer: the offset of the index (a
+ * long), the number of records (an int), and the magic bytes
+ * again.  Since the counts are in the trailer, a file can be
+ * written in a single pass to any stream.
+ * 
+ * There are two record encodings.  PACKED stores 4 bits per cell,
+ * in 41 bytes, which suits solved grids.  SPARSE stores an 81-bit
+ * map of the filled cells in 11 bytes, followed by 4 bits for each
+ * filled cell, which suits puzzles; a 25-clue puzzle takes 24 bytes
+ * instead of the 82 bytes of a line in a .sud file.
+ * 
+ * @author Mike Wallace (mwallace at pobox.com)
+ * @version 1.0
+ */
+final class BinaryFormat
+{
+  /**
+   * The magic bytes at the start and end of the file ("SUDB").
+   */
+  static final int MAGIC = 0x53554442;
+  
+  /**
+   * The format version.
+   */
+  static final int VERSION = 1;
+  
+  /**
+   * The size of the header, in bytes.
+   */
+  static final int HEADER_SIZE = 8;
+  
+  /**
+   * The size of the trailer, in bytes.
+   */
+  static final int TRAILER_SIZE = 16;
+  
+  /**
+   * The number of records per index entry.
+   */
+  static final int INDEX_INTERVAL = 64;
+  
+  /**
+   * The encoding that stores 4 bits per cell.
+   */
+  static final int PACKED = 0;
+  
+  /**
+   * The encoding that stores a map of the filled cells, and
+   * 4 bits per filled cell.
+   */
+  static final int SPARSE = 1;
+  
+  /**
+   * The size of a record in the PACKED encoding.
+   */
+  static final int PACKED_SIZE = (Geometry.NUM_CELLS + 1) / 2;
+  
+  /**
+   * The size of the map of filled cells in the SPARSE encoding.
+   */
+  static final int MAP_SIZE = (Geometry.NUM_CELLS + 7) / 8;
+  
+  /**
+   * The largest size of a record in either encoding.
+   */
+  static final int MAX_RECORD_SIZE = MAP_SIZE + PACKED_SIZE;
+  
+  /**
+   * The file extension.
+   */
+  static final String EXTENSION = ".sdb";
+  
+  
+  /**
+   * Default constructor.
+   */
+  private BinaryFormat()
+  {
+    super();
+  }
+  
+  
+  /**
+   * Return whether a file name has the binary format's extension.
+   * 
+   * @param name the file name
+   * @return whether it's a binary puzzle file
+   */
+  static boolean isBinaryName(final String name)
+  {
+    return name.toLowerCase().endsWith(EXTENSION);
+  }
+  
+  
+  /**
+   * Pack a grid into a record, at the buffer's position.  The
+   * position is moved past the record.
+   * 
+   * @param grid the cell values, with zero for an empty cell
+   * @param start the index of the first of the 81 cells in the grid
+   * @param encoding the record encoding
+   * @param buffer the destination
+   */
+  static void encode(final int[] grid, final int start, final int encoding,
+                     final ByteBuffer buffer)
+  {
+    if (encoding == PACKED)
+    {
+      // Two cells per byte, the first cell in the high nibble
+      for (int i = 0; i < Geometry.NUM_CELLS; i += 2)
+      {
+        final int low = ((i + 1 < Geometry.NUM_CELLS) ? grid[start + i + 1] : 0);
+        buffer.put((byte) ((grid[start + i] << 4) | low));
+      }
+      
+      return;
+    }
+    
+    // Write the map of filled cells
+    for (int i = 0; i < Geometry.NUM_CELLS; i += 8)
+    {
+      int bits = 0;
+      final int end = Math.min(i + 8, Geometry.NUM_CELLS);
+      for (int j = i; j < end; ++j)
+      {
+        if (grid[start + j] != 0)
+        {
+          bits |= (1 << (j - i));
+        }
+      }
+      
+      buffer.put((byte) bits);
+    }
+    
+    // Pack the values of the filled cells
+    int pending = -1;
+    for (int i = start; i < start + Geometry.NUM_CELLS; ++i)
+    {
+      if (grid[i] == 0)
+      {
+        continue;
+      }
+      
+      if (pending < 0)
+      {
+        pending = grid[i];
+      }
+      else
+      {
+        buffer.put((byte) ((pending << 4) | grid[i]));
+        pending = -1;
+      }
+    }
+    
+    if (pending >= 0)
+    {
+      buffer.put((byte) (pending << 4));
+    }
+  }
+  
+  
+  /**
+   * Unpack a record into a grid, from the buffer's position.  The
+   * position is moved past the record.
+   * 
+   * @param buffer the source
+   * @param encoding the record encoding
+   * @param grid the array to fill in with the 81 cell values
+   * @throws IOException if a cell value is out of range
+   */
+  static void decode(final ByteBuffer buffer, final int encoding,
+                     final int[] grid)
+    throws IOException
+  {
+    if (encoding == PACKED)
+    {
+      for (int i = 0; i < Geometry.NUM_CELLS; i += 2)
+      {
+        final int bits = buffer.get() & 0xFF;
+        grid[i] = checkValue(bits >>> 4);
+        if (i + 1 < Geometry.NUM_CELLS)
+        {
+          grid[i + 1] = checkValue(bits & 0x0F);
+        }
+      }
+      
+      return;
+    }
+    
+    // Read the map of filled cells
+    final int mapStart = buffer.position();
+    buffer.position(mapStart + MAP_SIZE);
+    
+    // Unpack the values of the filled cells
+    int bits = 0;
+    boolean high = true;
+    for (int i = 0; i < Geometry.NUM_CELLS; ++i)
+    {
+      if ((buffer.get(mapStart + (i >>> 3)) & (1 << (i & 7))) == 0)
+      {
+        grid[i] = 0;
+      }
+      else if (high)
+      {
+        bits = buffer.get() & 0xFF;
+        grid[i] = checkValue(bits >>> 4);
+        high = false;
+      }
+      else
+      {
+        grid[i] = checkValue(bits & 0x0F);
+        high = true;
+      }
+    }
+  }
+  
+  
+  /**
+   * Check a decoded cell value.  A nibble can hold up to 15, so
+   * a damaged record could otherwise put an invalid value in a
+   * puzzle.
+   * 
+   * @param value the cell value
+   * @return the cell value
+   * @throws IOException if the value is out of range
+   */
+  private static int checkValue(final int value) throws IOException
+  {
+    if (value > 9)
+    {
+      throw new IOException("Invalid cell value in the binary puzzle file: "
+                            + value);
+    }
+    
+    return value;
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.sudoku;
+
+/**
+ * A flag that asks a solve to stop.  Any thread can cancel the
+ * token; the solver checks it as it searches, and returns with a
+ * status of CANCELLED.  A token can have a parent, in which case
+ * cancelling the parent cancels this token too.
+ * 
+ * @author Mike Wallace (mwallace at pobox.com)
+ * @version 1.0
+ */
+public final class CancellationToken
+{
+  /**
+   * The parent token, or null.
+   */
+  private final CancellationToken parent;
+  
+  /**
+   * Whether this token has been cancelled.
+   */
+  private volatile boolean bCancelled = false;
+  
+  
+  /**
+   * Default constructor.
+   */
+  public CancellationToken()
+  {
+    this(null);
+  }
+  
+  
+  /**
+   * Constructor.
+   * 
+   * @param srcParent the parent token, or null
+   */
+  public CancellationToken(final CancellationToken srcParent)
+  {
+    parent = srcParent;
+  }
+  
+  
+  /**
+   * Ask the solve to stop.
+   */
+  public void cancel()
+  {
+    bCancelled = true;
+  }
+  
+  
+  /**
+   * Return whether this token, or its parent, has been cancelled.
+   * 
+   * @return whether the token has been cancelled
+   */
+  public boolean isCancelled()
+  {
+    return (bCancelled || ((parent != null) && (parent.isCancelled())));
+  }
+}
@@ -0,0 +1,957 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.sudoku;
+
+import java.util.Arrays;
+
+/**
+ * Compute the canonical form of a grid.  Two grids are the same
+ * puzzle if one can be turned into the other by relabeling the
+ * digits, permuting the rows within a band or the columns within
+ * a stack, permuting the bands or the stacks, and transposing.
+ * The canonical form is the smallest grid that can be reached this
+ * way, with the digits numbered in the order they first appear; so
+ * two grids are the same puzzle if and only if their canonical
+ * forms are equal.
+ * 
+ * Grids are ordered first by a key for each row, then by a key for
+ * each column, and then by their 81 digits.  A row's key depends on
+ * its number of clues and the number of clues in the columns it
+ * crosses, and doesn't change when the columns or digits are
+ * permuted (and likewise for a column's key).  So the row and
+ * column order is mostly fixed by sorting the keys, and only rows
+ * or columns with equal keys have to be searched.  The search
+ * picks the rows and columns in order, comparing each new cell
+ * with the best grid found so far and dropping a branch as soon as
+ * it's larger.  Identical rows within a band, or columns within a
+ * stack, are only tried once.
+ * 
+ * The transformation that produced the canonical form is kept, so
+ * other grids (such as a solution) can be mapped to and from the
+ * canonical layout.  An instance holds scratch state, so it should
+ * only be used by one thread.
+ * 
+ * @author Mike Wallace (mwallace at pobox.com)
+ * @version 1.0
+ */
+public final class Canonicalizer
+{
+  /**
+   * The value used for cells of the best grid not yet filled in.
+   */
+  private static final int UNSET = 10;
+  
+  /**
+   * The grid and its transpose.
+   */
+  private final int[][] aiSources = new int[2][Geometry.NUM_CELLS];
+  
+  /**
+   * For each row, the first row in the same band with the same
+   * values, or -1 if there is none; indexed by transposition.
+   */
+  private final int[][] aiRowRepeats = new int[2][9];
+  
+  /**
+   * For each column, the first column in the same stack with the
+   * same values, or -1 if there is none; indexed by transposition.
+   */
+  private final int[][] aiColumnRepeats = new int[2][9];
+  
+  /**
+   * The key of each row; indexed by transposition.
+   */
+  private final int[][] aiRowKeys = new int[2][9];
+  
+  /**
+   * The key of each column; indexed by transposition.
+   */
+  private final int[][] aiColumnKeys = new int[2][9];
+  
+  /**
+   * The sorted row keys of each band; indexed by transposition.
+   */
+  private final long[][] alBandKeys = new long[2][3];
+  
+  /**
+   * The sorted column keys of each stack; indexed by transposition.
+   */
+  private final long[][] alStackKeys = new long[2][3];
+  
+  /**
+   * The row keys of the output, in order; indexed by transposition.
+   */
+  private final int[][] aiTargetRowKeys = new int[2][9];
+  
+  /**
+   * The column keys of the output, in order; indexed by
+   * transposition.
+   */
+  private final int[][] aiTargetColumnKeys = new int[2][9];
+  
+  /**
+   * The band keys of the output, in order; indexed by transposition.
+   */
+  private final long[][] alTargetBandKeys = new long[2][3];
+  
+  /**
+   * The stack keys of the output, in order; indexed by
+   * transposition.
+   */
+  private final long[][] alTargetStackKeys = new long[2][3];
+  
+  /**
+   * The number of clues in each row.
+   */
+  private final int[] aiRowCounts = new int[9];
+  
+  /**
+   * The number of clues in each column.
+   */
+  private final int[] aiColumnCounts = new int[9];
+  
+  /**
+   * The digits in each third of each line, as bit masks.
+   */
+  private final int[] aiThirds = new int[27];
+  
+  /**
+   * The number of clues in the lines crossing each line.
+   */
+  private final int[] aiCrossSums = new int[9];
+  
+  /**
+   * The row keys of the grid being searched.
+   */
+  private int[] aiRowKey = null;
+  
+  /**
+   * The column keys of the grid being searched.
+   */
+  private int[] aiColumnKey = null;
+  
+  /**
+   * The band keys of the grid being searched.
+   */
+  private long[] alBandKey = null;
+  
+  /**
+   * The stack keys of the grid being searched.
+   */
+  private long[] alStackKey = null;
+  
+  /**
+   * The output row keys for the grid being searched.
+   */
+  private int[] aiTargetRowKey = null;
+  
+  /**
+   * The output column keys for the grid being searched.
+   */
+  private int[] aiTargetColumnKey = null;
+  
+  /**
+   * The output band keys for the grid being searched.
+   */
+  private long[] alTargetBandKey = null;
+  
+  /**
+   * The output stack keys for the grid being searched.
+   */
+  private long[] alTargetStackKey = null;
+  
+  /**
+   * The grid being searched (one of aiSources).
+   */
+  private int[] aiSource = null;
+  
+  /**
+   * The row repeats for the grid being searched.
+   */
+  private int[] aiRowRepeat = null;
+  
+  /**
+   * The column repeats for the grid being searched.
+   */
+  private int[] aiColumnRepeat = null;
+  
+  /**
+   * The source row for each row of the output.
+   */
+  private final int[] aiRowMap = new int[9];
+  
+  /**
+   * The source column for each column of the output.
+   */
+  private final int[] aiColumnMap = new int[9];
+  
+  /**
+   * The source rows already used.
+   */
+  private int usedRows = 0;
+  
+  /**
+   * The source columns already used.
+   */
+  private int usedColumns = 0;
+  
+  /**
+   * The source bands already used.
+   */
+  private int usedBands = 0;
+  
+  /**
+   * The source stacks already used.
+   */
+  private int usedStacks = 0;
+  
+  /**
+   * The output label of each source digit, or zero if it hasn't
+   * appeared yet.
+   */
+  private final int[] aiLabels = new int[10];
+  
+  /**
+   * The next label to give out.
+   */
+  private int nextLabel = 1;
+  
+  /**
+   * The digits first labeled by each output row, so the labels
+   * can be removed when backtracking.
+   */
+  private final int[][] aaiNewDigits = new int[9][9];
+  
+  /**
+   * The smallest grid found so far.
+   */
+  private final int[] aiBest = new int[Geometry.NUM_CELLS];
+  
+  /**
+   * Whether the best grid got smaller since the last saved
+   * transformation.
+   */
+  private boolean bImproved = false;
+  
+  /**
+   * Whether the best transformation uses the transpose.
+   */
+  private boolean bTransposed = false;
+  
+  /**
+   * The row map of the best transformation.
+   */
+  private final int[] aiBestRowMap = new int[9];
+  
+  /**
+   * The column map of the best transformation.
+   */
+  private final int[] aiBestColumnMap = new int[9];
+  
+  /**
+   * The labels of the best transformation, for all nine digits.
+   */
+  private final int[] aiBestLabels = new int[10];
+  
+  /**
+   * The source digit for each label of the best transformation.
+   */
+  private final int[] aiBestDigits = new int[10];
+  
+  /**
+   * Whether the grid being searched is the transpose.
+   */
+  private boolean bSearchTransposed = false;
+  
+  
+  /**
+   * Default constructor.
+   */
+  public Canonicalizer()
+  {
+    super();
+  }
+  
+  
+  /**
+   * Return the canonical form of a puzzle.
+   * 
+   * @param puzzle the puzzle
+   * @return the canonical form, as 81 digits
+   */
+  public String canonicalize(final Sudoku puzzle)
+  {
+    int[] grid = new int[Geometry.NUM_CELLS];
+    puzzle.getMatrix(grid);
+    canonicalize(grid, grid);
+    
+    StringBuilder sb = new StringBuilder(Geometry.NUM_CELLS);
+    for (int i = 0; i < Geometry.NUM_CELLS; ++i)
+    {
+      sb.append((char) ('0' + grid[i]));
+    }
+    
+    return sb.toString();
+  }
+  
+  
+  /**
+   * Compute the canonical form of a grid.  The input and output
+   * can be the same array.
+   * 
+   * @param grid the 81 cell values, with zero for an empty cell
+   * @param canonical the array to fill in with the canonical form
+   */
+  public void canonicalize(final int[] grid, final int[] canonical)
+  {
+    // Build the grid and its transpose
+    for (int i = 0; i < Geometry.NUM_CELLS; ++i)
+    {
+      aiSources[0][i] = grid[i];
+      aiSources[1][Geometry.COLUMN[i] * 9 + Geometry.ROW[i]] = grid[i];
+    }
+    
+    // The rows of the transpose are the columns of the grid
+    findRepeats(aiSources[0], aiRowRepeats[0], aiColumnRepeats[0]);
+    findKeys();
+    System.arraycopy(aiRowRepeats[0], 0, aiColumnRepeats[1], 0, 9);
+    System.arraycopy(aiColumnRepeats[0], 0, aiRowRepeats[1], 0, 9);
+    
+    // Only search the orientations with the smallest keys
+    final int order = compareKeys();
+    
+    // Search the orientations
+    Arrays.fill(aiBest, UNSET);
+    bImproved = true;
+    for (int t = 0; t < 2; ++t)
+    {
+      if (((t == 0) && (order > 0)) || ((t == 1) && (order < 0)))
+      {
+        continue;
+      }
+      
+      aiSource = aiSources[t];
+      aiRowRepeat = aiRowRepeats[t];
+      aiColumnRepeat = aiColumnRepeats[t];
+      aiRowKey = aiRowKeys[t];
+      aiColumnKey = aiColumnKeys[t];
+      alBandKey = alBandKeys[t];
+      alStackKey = alStackKeys[t];
+      aiTargetRowKey = aiTargetRowKeys[t];
+      aiTargetColumnKey = aiTargetColumnKeys[t];
+      alTargetBandKey = alTargetBandKeys[t];
+      alTargetStackKey = alTargetStackKeys[t];
+      bSearchTransposed = (t == 1);
+      
+      // Try each row that can be the first row
+      for (int row = 0; row < 9; ++row)
+      {
+        if ((aiRowRepeat[row] >= 0) || (aiRowKey[row] != aiTargetRowKey[0])
+            || (alBandKey[row / 3] != alTargetBandKey[0]))
+        {
+          continue;
+        }
+        
+        aiRowMap[0] = row;
+        usedRows = (1 << row);
+        usedBands = (1 << (row / 3));
+        searchColumn(0, -1);
+      }
+    }
+    
+    System.arraycopy(aiBest, 0, canonical, 0, Geometry.NUM_CELLS);
+  }
+  
+  
+  /**
+   * Map a grid to the canonical layout, using the transformation
+   * found by the last call to canonicalize.  This is meant for a
+   * grid derived from the canonicalized one, such as its solution.
+   * 
+   * @param grid the 81 cell values
+   * @param canonical the array to fill in
+   */
+  public void toCanonical(final int[] grid, final int[] canonical)
+  {
+    for (int row = 0; row < 9; ++row)
+    {
+      for (int col = 0; col < 9; ++col)
+      {
+        canonical[row * 9 + col] = aiBestLabels[grid[getSourceCell(row, col)]];
+      }
+    }
+  }
+  
+  
+  /**
+   * Map a grid in the canonical layout back to the layout of the
+   * grid passed to the last call to canonicalize.
+   * 
+   * @param canonical the 81 cell values in the canonical layout
+   * @param grid the array to fill in
+   */
+  public void fromCanonical(final int[] canonical, final int[] grid)
+  {
+    for (int row = 0; row < 9; ++row)
+    {
+      for (int col = 0; col < 9; ++col)
+      {
+        grid[getSourceCell(row, col)] = aiBestDigits[canonical[row * 9 + col]];
+      }
+    }
+  }
+  
+  
+  /**
+   * Return the cell of the original grid that the best
+   * transformation moves to the given row and column.
+   * 
+   * @param row the row of the canonical grid
+   * @param col the column of the canonical grid
+   * @return the cell of the original grid
+   */
+  private int getSourceCell(final int row, final int col)
+  {
+    final int srcRow = aiBestRowMap[row];
+    final int srcCol = aiBestColumnMap[col];
+    return (bTransposed ? (srcCol * 9 + srcRow) : (srcRow * 9 + srcCol));
+  }
+  
+  
+  /**
+   * Compute the row and column keys for both orientations, and
+   * the order of the keys in the output.
+   */
+  private void findKeys()
+  {
+    final int[] grid = aiSources[0];
+    
+    // Count the clues in each row and column
+    Arrays.fill(aiRowCounts, 0);
+    Arrays.fill(aiColumnCounts, 0);
+    for (int i = 0; i < Geometry.NUM_CELLS; ++i)
+    {
+      if (grid[i] != 0)
+      {
+        ++aiRowCounts[Geometry.ROW[i]];
+        ++aiColumnCounts[Geometry.COLUMN[i]];
+      }
+    }
+    
+    findLineKeys(grid, false, aiRowCounts, aiColumnCounts, aiRowKeys[0]);
+    findLineKeys(grid, true, aiColumnCounts, aiRowCounts, aiColumnKeys[0]);
+    
+    // The transpose swaps the row and column keys
+    System.arraycopy(aiRowKeys[0], 0, aiColumnKeys[1], 0, 9);
+    System.arraycopy(aiColumnKeys[0], 0, aiRowKeys[1], 0, 9);
+    
+    for (int t = 0; t < 2; ++t)
+    {
+      sortKeys(aiRowKeys[t], alBandKeys[t], aiTargetRowKeys[t],
+               alTargetBandKeys[t]);
+      sortKeys(aiColumnKeys[t], alStackKeys[t], aiTargetColumnKeys[t],
+               alTargetStackKeys[t]);
+    }
+  }
+  
+  
+  /**
+   * Compute a key for each row (or column) that doesn't change
+   * when the digits are relabeled, or the rows and columns are
+   * permuted within the rules.  It combines the line's number of
+   * clues, the number of clues in the lines it crosses, and how
+   * many digits each third of the line shares with the thirds of
+   * the other lines.  The key only has 20 bits, so different lines
+   * can share a key; that only costs search time.
+   * 
+   * @param grid the grid
+   * @param byColumn whether to compute the keys of the columns
+   * @param counts the number of clues in each line
+   * @param crossCounts the number of clues in each crossing line
+   * @param keys the array to fill in with the keys
+   */
+  private void findLineKeys(final int[] grid, final boolean byColumn,
+                            final int[] counts, final int[] crossCounts,
+                            final int[] keys)
+  {
+    // Build a mask of the digits in each third of each line
+    final int[] thirds = aiThirds;
+    final int[] crossSums = aiCrossSums;
+    Arrays.fill(thirds, 0);
+    Arrays.fill(crossSums, 0);
+    for (int line = 0; line < 9; ++line)
+    {
+      for (int k = 0; k < 9; ++k)
+      {
+        final int value = (byColumn ? grid[k * 9 + line] : grid[line * 9 + k]);
+        if (value != 0)
+        {
+          thirds[line * 3 + k / 3] |= (1 << value);
+          crossSums[line] += crossCounts[k];
+        }
+      }
+    }
+    
+    for (int line = 0; line < 9; ++line)
+    {
+      // Compare each third with the thirds of the other lines
+      int sameGroup = 0;
+      int otherAligned = 0;
+      int otherCrossed = 0;
+      for (int other = 0; other < 9; ++other)
+      {
+        if (other == line)
+        {
+          continue;
+        }
+        
+        final boolean inGroup = ((other / 3) == (line / 3));
+        for (int g = 0; g < 3; ++g)
+        {
+          final int mask = thirds[line * 3 + g];
+          for (int h = 0; h < 3; ++h)
+          {
+            final int shared = Integer.bitCount(mask & thirds[other * 3 + h]);
+            final int weight = shared * shared;
+            if (inGroup)
+            {
+              sameGroup += weight;
+            }
+            else if (g == h)
+            {
+              otherAligned += weight;
+            }
+            else
+            {
+              otherCrossed += weight;
+            }
+          }
+        }
+      }
+      
+      // Mix the values into 20 bits
+      int key = counts[line];
+      key = key * 97 + crossSums[line];
+      key = key * 1031 + sameGroup;
+      key = key * 1031 + otherAligned;
+      key = key * 1031 + otherCrossed;
+      key ^= (key >>> 15);
+      key *= 0x2C1B3C6D;
+      key ^= (key >>> 12);
+      keys[line] = (key & 0xFFFFF);
+    }
+  }
+  
+  
+  /**
+   * Find the smallest order of the keys for the rows or columns:
+   * sorted within each band, with the bands sorted by their keys.
+   * 
+   * @param keys the key of each row
+   * @param groupKeys the array to fill in with the sorted keys of
+   *        each band
+   * @param targetKeys the array to fill in with the keys in order
+   * @param targetGroupKeys the array to fill in with the band keys
+   *        in order
+   */
+  private static void sortKeys(final int[] keys, final long[] groupKeys,
+                               final int[] targetKeys,
+                               final long[] targetGroupKeys)
+  {
+    // Pack each band's sorted keys into one value
+    for (int group = 0; group < 3; ++group)
+    {
+      final long a = keys[group * 3];
+      final long b = keys[group * 3 + 1];
+      final long c = keys[group * 3 + 2];
+      final long low = Math.min(a, Math.min(b, c));
+      final long high = Math.max(a, Math.max(b, c));
+      groupKeys[group] = (low << 40) | ((a + b + c - low - high) << 20) | high;
+    }
+    
+    // Sort the bands, and unpack the keys
+    System.arraycopy(groupKeys, 0, targetGroupKeys, 0, 3);
+    Arrays.sort(targetGroupKeys);
+    for (int group = 0; group < 3; ++group)
+    {
+      final long packed = targetGroupKeys[group];
+      targetKeys[group * 3] = (int) (packed >>> 40);
+      targetKeys[group * 3 + 1] = (int) ((packed >>> 20) & 0xFFFFF);
+      targetKeys[group * 3 + 2] = (int) (packed & 0xFFFFF);
+    }
+  }
+  
+  
+  /**
+   * Compare the output keys of the two orientations.
+   * 
+   * @return negative if the grid's keys are smaller, positive if
+   *         the transpose's keys are smaller, and zero if they match
+   */
+  private int compareKeys()
+  {
+    for (int i = 0; i < 9; ++i)
+    {
+      final int diff = aiTargetRowKeys[0][i] - aiTargetRowKeys[1][i];
+      if (diff != 0)
+      {
+        return diff;
+      }
+    }
+    
+    for (int i = 0; i < 9; ++i)
+    {
+      final int diff = aiTargetColumnKeys[0][i] - aiTargetColumnKeys[1][i];
+      if (diff != 0)
+      {
+        return diff;
+      }
+    }
+    
+    return 0;
+  }
+  
+  
+  /**
+   * Find the rows that repeat an earlier row in the same band,
+   * and the columns that repeat an earlier column in the same
+   * stack.  Swapping two such rows or columns doesn't change the
+   * grid, so only one of them needs to be tried.
+   * 
+   * @param grid the grid
+   * @param rowRepeats the array to fill in for the rows
+   * @param columnRepeats the array to fill in for the columns
+   */
+  private static void findRepeats(final int[] grid,
+                                  final int[] rowRepeats,
+                                  final int[] columnRepeats)
+  {
+    for (int i = 0; i < 9; ++i)
+    {
+      rowRepeats[i] = -1;
+      columnRepeats[i] = -1;
+      for (int j = i - (i % 3); j < i; ++j)
+      {
+        if ((rowRepeats[i] < 0) && (sameRows(grid, i, j)))
+        {
+          rowRepeats[i] = j;
+        }
+        
+        if ((columnRepeats[i] < 0) && (sameColumns(grid, i, j)))
+        {
+          columnRepeats[i] = j;
+        }
+      }
+    }
+  }
+  
+  
+  /**
+   * Return whether two rows have the same values.
+   * 
+   * @param grid the grid
+   * @param row1 the first row
+   * @param row2 the second row
+   * @return whether the rows have the same values
+   */
+  private static boolean sameRows(final int[] grid, final int row1,
+                                  final int row2)
+  {
+    for (int k = 0; k < 9; ++k)
+    {
+      if (grid[row1 * 9 + k] != grid[row2 * 9 + k])
+      {
+        return false;
+      }
+    }
+    
+    return true;
+  }
+  
+  
+  /**
+   * Return whether two columns have the same values.
+   * 
+   * @param grid the grid
+   * @param col1 the first column
+   * @param col2 the second column
+   * @return whether the columns have the same values
+   */
+  private static boolean sameColumns(final int[] grid, final int col1,
+                                     final int col2)
+  {
+    for (int k = 0; k < 9; ++k)
+    {
+      if (grid[k * 9 + col1] != grid[k * 9 + col2])
+      {
+        return false;
+      }
+    }
+    
+    return true;
+  }
+  
+  
+  /**
+   * Return whether a source row or column should be skipped,
+   * because an unused earlier one in the same band or stack has
+   * the same values, and will be tried instead.
+   * 
+   * @param index the row or column
+   * @param repeats the repeats for the rows or columns
+   * @param used the rows or columns already used
+   * @return whether to skip the row or column
+   */
+  private static boolean isRepeat(final int index, final int[] repeats,
+                                  final int used)
+  {
+    final int first = repeats[index];
+    return ((first >= 0) && ((used & (1 << first)) == 0));
+  }
+  
+  
+  /**
+   * Compare a new cell with the best grid.  If it's smaller, the
+   * rest of the best grid is cleared, since any completion of this
+   * branch is smaller.
+   * 
+   * @param position the cell of the output
+   * @param value the value of the cell
+   * @return whether the branch is no larger than the best grid
+   */
+  private boolean compareCell(final int position, final int value)
+  {
+    final int best = aiBest[position];
+    if (value > best)
+    {
+      return false;
+    }
+    else if (value < best)
+    {
+      aiBest[position] = value;
+      Arrays.fill(aiBest, position + 1, Geometry.NUM_CELLS, UNSET);
+      bImproved = true;
+    }
+    
+    return true;
+  }
+  
+  
+  /**
+   * Return the output value of a source digit, giving it the next
+   * label if it hasn't appeared yet.
+   * 
+   * @param digit the source digit
+   * @return the output value
+   */
+  private int getLabel(final int digit)
+  {
+    if ((digit == 0) || (aiLabels[digit] != 0))
+    {
+      return aiLabels[digit];
+    }
+    
+    return nextLabel;
+  }
+  
+  
+  /**
+   * Pick the source column for each column of the output, while
+   * building the first row.
+   * 
+   * @param col the output column
+   * @param stack the source stack of the current output stack
+   */
+  private void searchColumn(final int col, final int stack)
+  {
+    // Once the columns are picked, pick the remaining rows
+    if (col == 9)
+    {
+      searchRow(1, aiRowMap[0] / 3);
+      return;
+    }
+    
+    // Each stack starts with a column from any unused stack
+    final int firstCol = ((col % 3) == 0) ? 0 : (stack * 3);
+    final int lastCol = ((col % 3) == 0) ? 9 : (firstCol + 3);
+    final int rowStart = aiRowMap[0] * 9;
+    for (int src = firstCol; src < lastCol; ++src)
+    {
+      final int srcStack = src / 3;
+      if (((usedColumns & (1 << src)) != 0)
+          || (aiColumnKey[src] != aiTargetColumnKey[col])
+          || (((col % 3) == 0) && (((usedStacks & (1 << srcStack)) != 0)
+                                   || (alStackKey[srcStack] != alTargetStackKey[col / 3])))
+          || isRepeat(src, aiColumnRepeat, usedColumns))
+      {
+        continue;
+      }
+      
+      // Compare the cell in the first row
+      final int digit = aiSource[rowStart + src];
+      if (!compareCell(col, getLabel(digit)))
+      {
+        continue;
+      }
+      
+      // Take the column
+      final boolean isNew = ((digit != 0) && (aiLabels[digit] == 0));
+      if (isNew)
+      {
+        aiLabels[digit] = nextLabel++;
+      }
+      aiColumnMap[col] = src;
+      usedColumns |= (1 << src);
+      usedStacks |= (1 << srcStack);
+      
+      searchColumn(col + 1, srcStack);
+      
+      // Give it back
+      usedColumns &= ~(1 << src);
+      if ((col % 3) == 0)
+      {
+        usedStacks &= ~(1 << srcStack);
+      }
+      if (isNew)
+      {
+        aiLabels[digit] = 0;
+        --nextLabel;
+      }
+    }
+  }
+  
+  
+  /**
+   * Pick the source row for each remaining row of the output.
+   * 
+   * @param row the output row
+   * @param band the source band of the current output band
+   */
+  private void searchRow(final int row, final int band)
+  {
+    // Save the transformation when a smaller grid is complete
+    if (row == 9)
+    {
+      if (bImproved)
+      {
+        saveTransformation();
+        bImproved = false;
+      }
+      
+      return;
+    }
+    
+    // Each band starts with a row from any unused band
+    final int firstRow = ((row % 3) == 0) ? 0 : (band * 3);
+    final int lastRow = ((row % 3) == 0) ? 9 : (firstRow + 3);
+    final int[] newDigits = aaiNewDigits[row];
+    for (int src = firstRow; src < lastRow; ++src)
+    {
+      final int srcBand = src / 3;
+      if (((usedRows & (1 << src)) != 0)
+          || (aiRowKey[src] != aiTargetRowKey[row])
+          || (((row % 3) == 0) && (((usedBands & (1 << srcBand)) != 0)
+                                   || (alBandKey[srcBand] != alTargetBandKey[row / 3])))
+          || isRepeat(src, aiRowRepeat, usedRows))
+      {
+        continue;
+      }
+      
+      // Compare the row, labeling new digits as they appear
+      int numNew = 0;
+      boolean smaller = true;
+      final int rowStart = src * 9;
+      for (int col = 0; col < 9; ++col)
+      {
+        final int digit = aiSource[rowStart + aiColumnMap[col]];
+        if (!compareCell(row * 9 + col, getLabel(digit)))
+        {
+          smaller = false;
+          break;
+        }
+        
+        if ((digit != 0) && (aiLabels[digit] == 0))
+        {
+          aiLabels[digit] = nextLabel++;
+          newDigits[numNew++] = digit;
+        }
+      }
+      
+      // Take the row, if it's no larger than the best
+      if (smaller)
+      {
+        aiRowMap[row] = src;
+        usedRows |= (1 << src);
+        usedBands |= (1 << srcBand);
+        
+        searchRow(row + 1, srcBand);
+        
+        usedRows &= ~(1 << src);
+        if ((row % 3) == 0)
+        {
+          usedBands &= ~(1 << srcBand);
+        }
+      }
+      
+      // Remove the labels added by this row
+      while (numNew > 0)
+      {
+        aiLabels[newDigits[--numNew]] = 0;
+        --nextLabel;
+      }
+    }
+  }
+  
+  
+  /**
+   * Save the current transformation as the best one.  Digits that
+   * don't appear in the grid get the unused labels, in order.
+   */
+  private void saveTransformation()
+  {
+    bTransposed = bSearchTransposed;
+    System.arraycopy(aiRowMap, 0, aiBestRowMap, 0, 9);
+    System.arraycopy(aiColumnMap, 0, aiBestColumnMap, 0, 9);
+    System.arraycopy(aiLabels, 0, aiBestLabels, 0, 10);
+    
+    int label = nextLabel;
+    for (int digit = 1; digit <= 9; ++digit)
+    {
+      if (aiBestLabels[digit] == 0)
+      {
+        aiBestLabels[digit] = label++;
+      }
+    }
+    
+    for (int digit = 0; digit <= 9; ++digit)
+    {
+      aiBestDigits[aiBestLabels[digit]] = digit;
+    }
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.sudoku;
+
+/**
+ * This enumerates the difficulty bands of a puzzle, based on
+ * what it takes to solve it.
+ * 
+ * @author Mike Wallace (mwallace at pobox.com)
+ * @version 1.0
+ */
+public enum Difficulty
+{
+  /**
+   * Solved with naked and hidden singles alone.
+   */
+  EASY("Easy"),
+  
+  /**
+   * Solved with the deduction rules, but needs more than singles.
+   */
+  MEDIUM("Medium"),
+  
+  /**
+   * The deduction rules get stuck, so it needs guessing.
+   */
+  HARD("Hard");
+  
+  
+  /**
+   * The description of the difficulty.
+   */
+  private String description = null;
+  
+  
+  /**
+   * Constructor.
+   * 
+   * @param desc the description of the difficulty
+   */
+  private Difficulty(final String desc)
+  {
+    description = desc;
+  }
+  
+  
+  /**
+   * Return the difficulty with the specified name, ignoring case.
+   * 
+   * @param name the name of the difficulty
+   * @return the matching difficulty, or null if there is no match
+   */
+  public static Difficulty getDifficulty(final String name)
+  {
+    // Check the input
+    if (name == null)
+    {
+      return null;
+    }
+    
+    // Look for a match
+    for (Difficulty level : values())
+    {
+      if (level.name().equalsIgnoreCase(name.trim()))
+      {
+        return level;
+      }
+    }
+    
+    // There is no match
+    return null;
+  }
+  
+  
+  /**
+   * Return the description of the difficulty.
+   * 
+   * @return the description of the difficulty
+   */
+  @Override
+  public String toString()
+  {
+    return description;
+  }
+}
@@ -0,0 +1,383 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.sudoku;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Rate the difficulty of puzzles.
+ * 
+ * The deduction rules already run as a ladder: the solver uses the
+ * cheapest rule that makes progress, and only moves up to a costlier
+ * one when everything below it is stuck.  So the rater solves the
+ * puzzle with the rules alone, counting the steps of each one, and
+ * the costliest rule with any steps is the hardest step the puzzle
+ * needs.  If the rules get stuck, the search finishes the puzzle and
+ * the guesses it makes are counted.
+ * 
+ * The score is 10 points for each rung of the ladder up to the
+ * hardest step (naked singles are rung 1, jellyfish rung 13), plus
+ * a point for each step beyond singles, up to 9.  A puzzle that
+ * needs guessing scores 140, plus 10 for each guess.  The bands
+ * are easy (singles only), medium (other rules) and hard (guessing).
+ * 
+ * The rater doesn't check that the solution is unique.  It's not
+ * thread-safe, so each thread needs its own instance.
+ * 
+ * @author Mike Wallace (mwallace at pobox.com)
+ * @version 1.0
+ */
+public final class DifficultyRater
+{
+  /**
+   * The points for each rung of the ladder.
+   */
+  private static final int RUNG_POINTS = 10;
+  
+  /**
+   * The most points for the number of steps beyond singles.
+   */
+  private static final int MAX_STEP_POINTS = RUNG_POINTS - 1;
+  
+  /**
+   * The strategies, in ladder order.
+   */
+  private static final Strategy[] STRATEGIES = Strategy.values();
+  
+  /**
+   * The score of a puzzle that needs guessing, before the guesses.
+   */
+  private static final int GUESS_BASE = RUNG_POINTS * (STRATEGIES.length + 1);
+  
+  /**
+   * The points for each guess.
+   */
+  private static final int GUESS_POINTS = 10;
+  
+  /**
+   * The puzzle used for rating.
+   */
+  private final Sudoku puzzle = new Sudoku();
+  
+  /**
+   * The steps taken by the deduction rules.
+   */
+  private final SolveStatistics logicStats = new SolveStatistics();
+  
+  /**
+   * The work done by the search.
+   */
+  private final SolveStatistics searchStats = new SolveStatistics();
+  
+  /**
+   * The cells of the puzzle.
+   */
+  private final int[] grid = new int[Geometry.NUM_CELLS];
+  
+  /**
+   * The hardest rule used by the last climb of the ladder, or null.
+   */
+  private Strategy hardest = null;
+  
+  /**
+   * The number of steps beyond singles in the last climb of the ladder.
+   */
+  private long stepCount = 0L;
+  
+  
+  /**
+   * Default constructor.
+   */
+  public DifficultyRater()
+  {
+    super();
+  }
+  
+  
+  /**
+   * Rate a puzzle.
+   * 
+   * @param data the puzzle, as 81 digits
+   * @return the rating
+   */
+  public DifficultyRating rate(final String data)
+  {
+    return rate(data, null);
+  }
+  
+  
+  /**
+   * Rate a puzzle, within limits on the search.
+   * 
+   * @param data the puzzle, as 81 digits
+   * @param options the limits on the search, or null for none
+   * @return the rating, or null if the search was stopped early
+   */
+  public DifficultyRating rate(final String data, final SolveOptions options)
+  {
+    puzzle.setData(data);
+    puzzle.getMatrix(grid);
+    return rate(grid, options);
+  }
+  
+  
+  /**
+   * Rate a puzzle, within limits on the search.
+   * 
+   * @param cells the 81 cells of the puzzle
+   * @param options the limits on the search, or null for none
+   * @return the rating, or null if the search was stopped early
+   */
+  DifficultyRating rate(final int[] cells, final SolveOptions options)
+  {
+    puzzle.setMatrix(cells);
+    if (!puzzle.isValid())
+    {
+      return DifficultyRating.UNSOLVABLE;
+    }
+    
+    // Climb the ladder as far as the deduction rules go
+    if (climb())
+    {
+      final int rung = ((hardest == null) ? 0 : (hardest.ordinal() + 1));
+      return new DifficultyRating((stepCount == 0L) ? Difficulty.EASY : Difficulty.MEDIUM,
+                                  hardest, 0L, (rung * RUNG_POINTS)
+                                  + (int) Math.min(stepCount, (long) MAX_STEP_POINTS));
+    }
+    
+    // The rules are stuck, so let the search finish from here
+    searchStats.reset();
+    puzzle.setStatistics(searchStats);
+    final SolveResult result = puzzle.solveWithGuess(options);
+    puzzle.setStatistics(null);
+    if (!result.isFinished())
+    {
+      return null;
+    }
+    else if (!result.isSolved())
+    {
+      return DifficultyRating.UNSOLVABLE;
+    }
+    
+    final long guesses = searchStats.getGuessCount();
+    return new DifficultyRating(Difficulty.HARD, hardest, guesses,
+        (int) Math.min(Integer.MAX_VALUE, GUESS_BASE + (guesses * GUESS_POINTS)));
+  }
+  
+  
+  /**
+   * Return the difficulty band of a puzzle that has a solution.
+   * This is quicker than a full rating, since it doesn't count the
+   * guesses of a hard puzzle.
+   * 
+   * @param cells the 81 cells of the puzzle
+   * @return the difficulty band
+   */
+  Difficulty getDifficulty(final int[] cells)
+  {
+    puzzle.setMatrix(cells);
+    if (!climb())
+    {
+      return Difficulty.HARD;
+    }
+    
+    return ((stepCount == 0L) ? Difficulty.EASY : Difficulty.MEDIUM);
+  }
+  
+  
+  /**
+   * Solve the puzzle with the deduction rules alone, and find the
+   * hardest rule used and the number of steps beyond singles.
+   * 
+   * @return whether the rules solved the puzzle
+   */
+  private boolean climb()
+  {
+    logicStats.reset();
+    puzzle.setStatistics(logicStats);
+    final boolean solved = puzzle.solve();
+    puzzle.setStatistics(null);
+    
+    hardest = null;
+    stepCount = 0L;
+    for (Strategy strategy : STRATEGIES)
+    {
+      final long count = logicStats.getSteps(strategy);
+      if (count > 0L)
+      {
+        hardest = strategy;
+        if (strategy.ordinal() > Strategy.HIDDEN_SINGLE_BLOCK.ordinal())
+        {
+          stepCount += count;
+        }
+      }
+    }
+    
+    return solved;
+  }
+  
+  
+  /**
+   * Print the usage message and exit.
+   */
+  private static void usage()
+  {
+    System.err.println("Usage: java -cp sudokustruggler.jar io.miti.sudoku.DifficultyRater"
+        + " input [output]");
+    System.exit(1);
+  }
+  
+  
+  /**
+   * Entry point to the rater.  Each puzzle in the input file is
+   * written out with its score, band, hardest step and guesses,
+   * separated by tabs.
+   * 
+   * @param args the command-line arguments
+   */
+  public static void main(final String[] args)
+  {
+    if ((args.length < 1) || (args.length > 2))
+    {
+      usage();
+    }
+    
+    // Count the puzzles in each band
+    final Difficulty[] levels = Difficulty.values();
+    long[] counts = new long[levels.length];
+    long total = 0L;
+    long unsolvable = 0L;
+    
+    DifficultyRater rater = new DifficultyRater();
+    final long start = System.nanoTime();
+    BufferedReader reader = null;
+    Writer out = null;
+    try
+    {
+      reader = new BufferedReader(new InputStreamReader(
+          new FileInputStream(args[0]), StandardCharsets.US_ASCII));
+      out = new BufferedWriter(new OutputStreamWriter((args.length < 2)
+          ? System.out : new FileOutputStream(args[1]), StandardCharsets.US_ASCII));
+      String line;
+      while ((line = reader.readLine()) != null)
+      {
+        // Skip blank lines and comments
+        line = line.trim();
+        if ((line.length() == 0) || (line.startsWith("#")))
+        {
+          continue;
+        }
+        
+        // Rate the puzzle and write it out
+        final DifficultyRating rating = rater.rate(line);
+        ++total;
+        out.write(line);
+        out.write('\t');
+        if (rating.isSolvable())
+        {
+          ++counts[rating.getDifficulty().ordinal()];
+          out.write(Integer.toString(rating.getScore()));
+          out.write('\t');
+          out.write(rating.getDifficulty().name().toLowerCase());
+          out.write('\t');
+          out.write((rating.getHardestStep() == null)
+                    ? "-" : rating.getHardestStep().toString());
+          out.write('\t');
+          out.write(Long.toString(rating.getGuessCount()));
+        }
+        else
+        {
+          ++unsolvable;
+          out.write("-1\tunsolvable\t-\t0");
+        }
+        
+        out.write('\n');
+      }
+      
+      out.flush();
+    }
+    catch (IOException ioe)
+    {
+      System.err.println("Error while rating: " + ioe.getMessage());
+      System.exit(1);
+    }
+    finally
+    {
+      closeQuietly(reader);
+      if (args.length > 1)
+      {
+        closeQuietly(out);
+      }
+    }
+    
+    // Print a summary
+    final long elapsed = (System.nanoTime() - start) / 1000000L;
+    StringBuilder sb = new StringBuilder(100);
+    sb.append("Rated ").append(total).append(" puzzles in ").append(elapsed).append(" ms:");
+    for (Difficulty level : levels)
+    {
+      sb.append(' ').append(counts[level.ordinal()]).append(' ')
+        .append(level.name().toLowerCase()).append(',');
+    }
+    
+    sb.append(' ').append(unsolvable).append(" unsolvable");
+    System.err.println(sb.toString());
+  }
+  
+  
+  /**
+   * Close a file, ignoring any error.
+   * 
+   * @param file the file to close, or null
+   */
+  private static void closeQuietly(final java.io.Closeable file)
+  {
+    if (file == null)
+    {
+      return;
+    }
+    
+    try
+    {
+      file.close();
+    }
+    catch (IOException ioe)
+    {
+      // Nothing more can be done
+    }
+  }
+}
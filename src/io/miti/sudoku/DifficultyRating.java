@@ -0,0 +1,170 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.sudoku;
+
+/**
+ * The difficulty of a puzzle, as found by the DifficultyRater: the
+ * band, the hardest deduction rule needed, the number of guesses,
+ * and a numeric score.
+ * 
+ * @author Mike Wallace (mwallace at pobox.com)
+ * @version 1.0
+ */
+public final class DifficultyRating
+{
+  /**
+   * The rating of a puzzle that is invalid or has no solution.
+   */
+  static final DifficultyRating UNSOLVABLE = new DifficultyRating(null, null, 0L, -1);
+  
+  /**
+   * The difficulty band, or null if the puzzle can't be solved.
+   */
+  private final Difficulty level;
+  
+  /**
+   * The hardest deduction rule needed, or null if none was.
+   */
+  private final Strategy hardest;
+  
+  /**
+   * The number of guesses made once the deduction rules got stuck.
+   */
+  private final long guessCount;
+  
+  /**
+   * The score, where higher is harder, or -1 if the puzzle
+   * can't be solved.
+   */
+  private final int score;
+  
+  
+  /**
+   * Constructor.
+   * 
+   * @param band the difficulty band
+   * @param hardestStep the hardest deduction rule needed
+   * @param guesses the number of guesses
+   * @param points the score
+   */
+  DifficultyRating(final Difficulty band, final Strategy hardestStep,
+                   final long guesses, final int points)
+  {
+    level = band;
+    hardest = hardestStep;
+    guessCount = guesses;
+    score = points;
+  }
+  
+  
+  /**
+   * Return whether the puzzle could be solved.
+   * 
+   * @return whether the puzzle could be solved
+   */
+  public boolean isSolvable()
+  {
+    return (level != null);
+  }
+  
+  
+  /**
+   * Return the difficulty band.
+   * 
+   * @return the difficulty band, or null if the puzzle can't be solved
+   */
+  public Difficulty getDifficulty()
+  {
+    return level;
+  }
+  
+  
+  /**
+   * Return the hardest deduction rule needed before any guessing.
+   * 
+   * @return the hardest rule, or null if none was needed
+   */
+  public Strategy getHardestStep()
+  {
+    return hardest;
+  }
+  
+  
+  /**
+   * Return the number of guesses made once the deduction rules
+   * got stuck.
+   * 
+   * @return the number of guesses
+   */
+  public long getGuessCount()
+  {
+    return guessCount;
+  }
+  
+  
+  /**
+   * Return the score.  Higher is harder.
+   * 
+   * @return the score, or -1 if the puzzle can't be solved
+   */
+  public int getScore()
+  {
+    return score;
+  }
+  
+  
+  /**
+   * Return a description of the rating.
+   * 
+   * @return a description of the rating
+   */
+  @Override
+  public String toString()
+  {
+    if (level == null)
+    {
+      return "Unsolvable";
+    }
+    
+    StringBuilder sb = new StringBuilder(60);
+    sb.append(level).append(" (score ").append(score);
+    if (hardest != null)
+    {
+      sb.append(", hardest step: ").append(hardest);
+    }
+    
+    if (guessCount > 0L)
+    {
+      sb.append(", ").append(guessCount).append((guessCount == 1L) ? " guess" : " guesses");
+    }
+    
+    sb.append(')');
+    return sb.toString();
+  }
+}
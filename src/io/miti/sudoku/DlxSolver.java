@@ -0,0 +1,576 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.sudoku;
+
+/**
+ * This class solves a Sudoku puzzle as an exact cover problem,
+ * using Knuth's Dancing Links.
+ * 
+ * There are 324 constraints (columns): each cell holds one digit,
+ * and each row, column and block holds each digit once.  There are
+ * 729 choices (rows), one per digit per cell, and each choice covers
+ * exactly four constraints.
+ * 
+ * The node arrays are built once, in the constructor.  A puzzle is
+ * solved by selecting the rows for its clues, searching, and then
+ * undoing the selections, which leaves the structure ready for the
+ * next puzzle.  An instance is not thread-safe.
+ * 
+ * @author Mike Wallace (mwallace at pobox.com)
+ * @version 1.0
+ */
+public final class DlxSolver implements SudokuSolver
+{
+  /**
+   * The number of cells in the puzzle.
+   */
+  private static final int NUM_CELLS = 81;
+  
+  /**
+   * The number of constraints (columns).
+   */
+  private static final int NUM_COLUMNS = 324;
+  
+  /**
+   * The number of choices (rows).
+   */
+  private static final int NUM_ROWS = 729;
+  
+  /**
+   * The index of the root node.  The column headers follow it.
+   */
+  private static final int ROOT = 0;
+  
+  /**
+   * The index of the first row node.
+   */
+  private static final int FIRST_NODE = NUM_COLUMNS + 1;
+  
+  /**
+   * The total number of nodes (root, headers and 4 per row).
+   */
+  private static final int NUM_NODES = FIRST_NODE + (NUM_ROWS * 4);
+  
+  /**
+   * The cancellation token and deadline are checked once every
+   * this many search nodes.
+   */
+  private static final long CHECK_INTERVAL = 256L;
+  
+  /**
+   * The node to the left of each node.
+   */
+  private int[] aiLeft = null;
+  
+  /**
+   * The node to the right of each node.
+   */
+  private int[] aiRight = null;
+  
+  /**
+   * The node above each node.
+   */
+  private int[] aiUp = null;
+  
+  /**
+   * The node below each node.
+   */
+  private int[] aiDown = null;
+  
+  /**
+   * The column header for each node.
+   */
+  private int[] aiColumn = null;
+  
+  /**
+   * The choice (location * 9 + digit - 1) for each row node.
+   */
+  private int[] aiChoice = null;
+  
+  /**
+   * The number of rows in each column, indexed by header node.
+   */
+  private int[] aiSize = null;
+  
+  /**
+   * The rows selected so far, by search depth.
+   */
+  private int[] aiSelected = null;
+  
+  /**
+   * The rows selected for the clues of the current puzzle.
+   */
+  private int[] aiClues = null;
+  
+  /**
+   * The grid being solved.
+   */
+  private int[] aiGrid = null;
+  
+  /**
+   * The limits on the current solve, or null for none.
+   */
+  private SolveOptions limits = null;
+  
+  /**
+   * The cancellation token of the current solve, or null.
+   */
+  private CancellationToken cancelToken = null;
+  
+  /**
+   * The number of search nodes visited in the current solve.
+   */
+  private long nodeCount = 0L;
+  
+  /**
+   * The limits are checked again when the node count reaches this.
+   */
+  private long nextCheck = Long.MAX_VALUE;
+  
+  /**
+   * Why the current solve was stopped, or null if it wasn't.
+   */
+  private SolveStatus stopStatus = null;
+  
+  /**
+   * The counts of the work done by the current solve, or null.
+   */
+  private SolveStatistics stats = null;
+  
+  
+  /**
+   * Default constructor.  This builds the node arrays.
+   */
+  public DlxSolver()
+  {
+    // Allocate the arrays
+    aiLeft = new int[NUM_NODES];
+    aiRight = new int[NUM_NODES];
+    aiUp = new int[NUM_NODES];
+    aiDown = new int[NUM_NODES];
+    aiColumn = new int[NUM_NODES];
+    aiChoice = new int[NUM_NODES];
+    aiSize = new int[FIRST_NODE];
+    aiSelected = new int[NUM_CELLS];
+    aiClues = new int[NUM_CELLS];
+    aiGrid = new int[NUM_CELLS];
+    
+    // Link the root and the column headers in a circle
+    for (int i = 0; i <= NUM_COLUMNS; ++i)
+    {
+      aiLeft[i] = (i == 0) ? NUM_COLUMNS : (i - 1);
+      aiRight[i] = (i == NUM_COLUMNS) ? 0 : (i + 1);
+      aiUp[i] = i;
+      aiDown[i] = i;
+      aiColumn[i] = i;
+    }
+    
+    // Add the four nodes for each choice
+    int node = FIRST_NODE;
+    for (int choice = 0; choice < NUM_ROWS; ++choice)
+    {
+      final int location = choice / 9;
+      final int digit = choice % 9;
+      final int row = Geometry.ROW[location];
+      final int col = Geometry.COLUMN[location];
+      final int block = Geometry.BLOCK[location];
+      
+      // The header for each constraint covered by this choice
+      addNode(node, 1 + location, choice);
+      addNode(node + 1, 1 + 81 + (row * 9) + digit, choice);
+      addNode(node + 2, 1 + 162 + (col * 9) + digit, choice);
+      addNode(node + 3, 1 + 243 + (block * 9) + digit, choice);
+      
+      // Link the four nodes in a circle
+      for (int i = 0; i < 4; ++i)
+      {
+        aiLeft[node + i] = node + ((i + 3) % 4);
+        aiRight[node + i] = node + ((i + 1) % 4);
+      }
+      
+      node += 4;
+    }
+  }
+  
+  
+  /**
+   * Add a node to the bottom of a column.
+   * 
+   * @param node the node to add
+   * @param column the column header
+   * @param choice the choice for the node's row
+   */
+  private void addNode(final int node, final int column, final int choice)
+  {
+    aiColumn[node] = column;
+    aiChoice[node] = choice;
+    aiUp[node] = aiUp[column];
+    aiDown[node] = column;
+    aiDown[aiUp[column]] = node;
+    aiUp[column] = node;
+    ++aiSize[column];
+  }
+  
+  
+  /**
+   * Remove a column from the header list, and remove each row
+   * in the column from the other columns.
+   * 
+   * @param column the column header
+   */
+  private void cover(final int column)
+  {
+    aiRight[aiLeft[column]] = aiRight[column];
+    aiLeft[aiRight[column]] = aiLeft[column];
+    
+    for (int i = aiDown[column]; i != column; i = aiDown[i])
+    {
+      for (int j = aiRight[i]; j != i; j = aiRight[j])
+      {
+        aiDown[aiUp[j]] = aiDown[j];
+        aiUp[aiDown[j]] = aiUp[j];
+        --aiSize[aiColumn[j]];
+      }
+    }
+  }
+  
+  
+  /**
+   * Undo cover(), in the reverse order.
+   * 
+   * @param column the column header
+   */
+  private void uncover(final int column)
+  {
+    for (int i = aiUp[column]; i != column; i = aiUp[i])
+    {
+      for (int j = aiLeft[i]; j != i; j = aiLeft[j])
+      {
+        ++aiSize[aiColumn[j]];
+        aiDown[aiUp[j]] = j;
+        aiUp[aiDown[j]] = j;
+      }
+    }
+    
+    aiRight[aiLeft[column]] = column;
+    aiLeft[aiRight[column]] = column;
+  }
+  
+  
+  /**
+   * Select a row: cover its column and every other column it
+   * touches.
+   * 
+   * @param node a node in the row
+   */
+  private void selectRow(final int node)
+  {
+    cover(aiColumn[node]);
+    for (int j = aiRight[node]; j != node; j = aiRight[j])
+    {
+      cover(aiColumn[j]);
+    }
+  }
+  
+  
+  /**
+   * Undo selectRow(), in the reverse order.
+   * 
+   * @param node a node in the row
+   */
+  private void unselectRow(final int node)
+  {
+    for (int j = aiLeft[node]; j != node; j = aiLeft[j])
+    {
+      uncover(aiColumn[j]);
+    }
+    uncover(aiColumn[node]);
+  }
+  
+  
+  /**
+   * Return whether a row is still linked into all of its columns.
+   * 
+   * @param node the first node in the row
+   * @return whether the row can be selected
+   */
+  private boolean isRowAvailable(final int node)
+  {
+    // A row is unlinked as soon as one of its columns is covered,
+    // and a column is covered by removing it from the header list
+    int j = node;
+    do
+    {
+      final int column = aiColumn[j];
+      if (aiLeft[aiRight[column]] != column)
+      {
+        return false;
+      }
+      j = aiRight[j];
+    } while (j != node);
+    
+    return true;
+  }
+  
+  
+  /**
+   * Solve a grid in place.  Each entry is 0 for an empty cell or
+   * 1-9 for a clue.  If the grid can't be solved, it is unchanged.
+   * 
+   * @param grid the 81 cells of the grid
+   * @return whether the grid was solved
+   */
+  public boolean solve(final int[] grid)
+  {
+    return solve(grid, null).isSolved();
+  }
+  
+  
+  /**
+   * Solve a grid in place, within the given limits.  If the grid
+   * isn't solved, it is unchanged.
+   * 
+   * @param grid the 81 cells of the grid
+   * @param options the limits on the solve, or null for none
+   * @return the result of the solve
+   */
+  public SolveResult solve(final int[] grid, final SolveOptions options)
+  {
+    // Set the limits
+    limits = options;
+    cancelToken = ((options == null) ? null : options.getCancellationToken());
+    nodeCount = 0L;
+    nextCheck = ((options == null) ? Long.MAX_VALUE : 0L);
+    stopStatus = null;
+    
+    // Select the row for each clue
+    int numClues = 0;
+    boolean bValid = true;
+    for (int i = 0; (i < NUM_CELLS) && (bValid); ++i)
+    {
+      final int value = grid[i];
+      if ((value >= 1) && (value <= 9))
+      {
+        final int node = FIRST_NODE + (((i * 9) + value - 1) * 4);
+        if (isRowAvailable(node))
+        {
+          selectRow(node);
+          aiClues[numClues++] = node;
+        }
+        else
+        {
+          // The clue conflicts with an earlier clue
+          bValid = false;
+        }
+      }
+    }
+    
+    // Search for a solution, writing it into our grid
+    System.arraycopy(grid, 0, aiGrid, 0, NUM_CELLS);
+    final boolean bSolved = (bValid && search(0));
+    
+    // Undo the clue selections, so the structure is ready for reuse
+    while (numClues > 0)
+    {
+      unselectRow(aiClues[--numClues]);
+    }
+    
+    // Copy out the solution
+    if (bSolved)
+    {
+      System.arraycopy(aiGrid, 0, grid, 0, NUM_CELLS);
+    }
+    
+    limits = null;
+    cancelToken = null;
+    return new SolveResult((stopStatus == null) ? SolveStatus.FINISHED : stopStatus,
+                           bSolved, nodeCount);
+  }
+  
+  
+  /**
+   * Check the limits before a new search node, and schedule the
+   * next check.  Between checks, the search only compares the
+   * node count, so the limits cost almost nothing.
+   * 
+   * @return whether the search can continue
+   */
+  private boolean checkLimits()
+  {
+    if (nodeCount >= limits.getMaxNodes())
+    {
+      stopStatus = SolveStatus.NODE_LIMIT;
+    }
+    else if ((cancelToken != null) && (cancelToken.isCancelled()))
+    {
+      stopStatus = SolveStatus.CANCELLED;
+    }
+    else if ((limits.hasDeadline()) && (System.nanoTime() - limits.getDeadline() >= 0L))
+    {
+      stopStatus = SolveStatus.TIMED_OUT;
+    }
+    
+    nextCheck = Math.min(limits.getMaxNodes(), nodeCount + CHECK_INTERVAL);
+    return (stopStatus == null);
+  }
+  
+  
+  /**
+   * Search for an exact cover of the remaining columns.
+   * 
+   * @param depth the number of rows selected so far
+   * @return whether a solution was found
+   */
+  private boolean search(final int depth)
+  {
+    // Stop if the limits have been reached, and count the node
+    if ((nodeCount >= nextCheck) && (!checkLimits()))
+    {
+      return false;
+    }
+    ++nodeCount;
+    
+    // If every column is covered, record the solution
+    if (aiRight[ROOT] == ROOT)
+    {
+      for (int i = 0; i < depth; ++i)
+      {
+        final int choice = aiChoice[aiSelected[i]];
+        aiGrid[choice / 9] = (choice % 9) + 1;
+      }
+      
+      return true;
+    }
+    
+    // Branch on the column with the fewest rows
+    int column = aiRight[ROOT];
+    for (int j = aiRight[column]; j != ROOT; j = aiRight[j])
+    {
+      if (aiSize[j] < aiSize[column])
+      {
+        column = j;
+      }
+    }
+    
+    // A column with no rows can't be covered
+    if (aiSize[column] == 0)
+    {
+      return false;
+    }
+    
+    // Try each row in the column.  Only a column with a choice
+    // of rows counts as a guess.
+    final boolean bGuess = ((stats != null) && (aiSize[column] > 1));
+    boolean bFound = false;
+    cover(column);
+    for (int i = aiDown[column]; (i != column) && (!bFound) && (stopStatus == null);
+         i = aiDown[i])
+    {
+      aiSelected[depth] = i;
+      for (int j = aiRight[i]; j != i; j = aiRight[j])
+      {
+        cover(aiColumn[j]);
+      }
+      
+      if (bGuess)
+      {
+        stats.addGuess();
+      }
+      
+      bFound = search(depth + 1);
+      if ((bGuess) && (!bFound))
+      {
+        stats.addBacktrack();
+      }
+      
+      for (int j = aiLeft[i]; j != i; j = aiLeft[j])
+      {
+        uncover(aiColumn[j]);
+      }
+    }
+    uncover(column);
+    
+    return bFound;
+  }
+  
+  
+  /**
+   * Solve the puzzle in place.
+   * 
+   * @param puzzle the puzzle to solve
+   * @return whether the puzzle was solved
+   */
+  public boolean solve(final Sudoku puzzle)
+  {
+    return solve(puzzle, null).isSolved();
+  }
+  
+  
+  /**
+   * Solve the puzzle in place, within the given limits.
+   * 
+   * @param puzzle the puzzle to solve
+   * @param options the limits on the solve, or null for none
+   * @return the result of the solve
+   */
+  public SolveResult solve(final Sudoku puzzle, final SolveOptions options)
+  {
+    // Get the puzzle data, and count the work if the puzzle asks for it
+    final int[] grid = new int[NUM_CELLS];
+    puzzle.getMatrix(grid);
+    stats = puzzle.getStatistics();
+    final long start = ((stats == null) ? 0L : System.nanoTime());
+    
+    // Solve it, and save the solution back to the puzzle
+    final SolveResult result = solve(grid, options);
+    if (result.isSolved())
+    {
+      puzzle.setMatrix(grid);
+    }
+    
+    if (stats != null)
+    {
+      stats.addSolve(System.nanoTime() - start);
+      stats = null;
+    }
+    
+    return result;
+  }
+  
+  
+  /**
+   * Return the name of this solver.
+   * 
+   * @return the name of this solver
+   */
+  public String getName()
+  {
+    return "dlx";
+  }
+}
@@ -0,0 +1,188 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.sudoku;
+
+/**
+ * This class holds lookup tables for the layout of a puzzle, so
+ * the solvers don't have to compute rows, columns and blocks.
+ * 
+ * Cells are numbered 0-80, left to right and top to bottom.
+ * Units 0-8 are the rows, 9-17 are the columns and 18-26 are the
+ * blocks.  The tables are built once and must not be modified.
+ * 
+ * @author Mike Wallace (mwallace at pobox.com)
+ * @version 1.0
+ */
+final class Geometry
+{
+  /**
+   * The number of cells in the puzzle.
+   */
+  static final int NUM_CELLS = 81;
+  
+  /**
+   * The number of units (rows, columns and blocks).
+   */
+  static final int NUM_UNITS = 27;
+  
+  /**
+   * The number of peers of each cell.
+   */
+  static final int NUM_PEERS = 20;
+  
+  /**
+   * The row number for each cell.
+   */
+  static final int[] ROW = new int[NUM_CELLS];
+  
+  /**
+   * The column number for each cell.
+   */
+  static final int[] COLUMN = new int[NUM_CELLS];
+  
+  /**
+   * The block number for each cell.
+   */
+  static final int[] BLOCK = new int[NUM_CELLS];
+  
+  /**
+   * The units holding each cell, as a bit mask of unit numbers.
+   */
+  static final int[] UNITS_OF = new int[NUM_CELLS];
+  
+  /**
+   * The nine cells in each unit.
+   */
+  static final int[][] UNIT_CELLS = new int[NUM_UNITS][9];
+  
+  /**
+   * The 20 cells that share a row, column or block with each cell.
+   */
+  static final int[][] PEERS = new int[NUM_CELLS][NUM_PEERS];
+  
+  /**
+   * The cells in each row, as a bitboard: bit N of the low word is
+   * cell N, and bit N of the high word is cell (N + 64).
+   */
+  static final long[] ROW_LOW = new long[9];
+  
+  /**
+   * The high word of the bitboard for each row.
+   */
+  static final long[] ROW_HIGH = new long[9];
+  
+  /**
+   * The low word of the bitboard for each column.
+   */
+  static final long[] COLUMN_LOW = new long[9];
+  
+  /**
+   * The high word of the bitboard for each column.
+   */
+  static final long[] COLUMN_HIGH = new long[9];
+  
+  
+  // Build the tables
+  static
+  {
+    // The row, column and block for each cell, and the cells in each unit
+    for (int location = 0; location < NUM_CELLS; ++location)
+    {
+      final int row = location / 9;
+      final int col = location % 9;
+      final int block = ((row / 3) * 3) + (col / 3);
+      ROW[location] = row;
+      COLUMN[location] = col;
+      BLOCK[location] = block;
+      UNITS_OF[location] = (1 << row) | (1 << (col + 9)) | (1 << (block + 18));
+      
+      UNIT_CELLS[row][col] = location;
+      UNIT_CELLS[col + 9][row] = location;
+      UNIT_CELLS[block + 18][((row % 3) * 3) + (col % 3)] = location;
+      
+      if (location < 64)
+      {
+        ROW_LOW[row] |= (1L << location);
+        COLUMN_LOW[col] |= (1L << location);
+      }
+      else
+      {
+        ROW_HIGH[row] |= (1L << (location - 64));
+        COLUMN_HIGH[col] |= (1L << (location - 64));
+      }
+    }
+    
+    // The peers of each cell
+    for (int location = 0; location < NUM_CELLS; ++location)
+    {
+      int numPeers = 0;
+      for (int other = 0; other < NUM_CELLS; ++other)
+      {
+        if ((other != location) &&
+            ((UNITS_OF[other] & UNITS_OF[location]) != 0))
+        {
+          PEERS[location][numPeers++] = other;
+        }
+      }
+    }
+  }
+  
+  
+  /**
+   * Return nine bits from a bitboard.
+   * 
+   * @param low the low word of the bitboard
+   * @param high the high word of the bitboard
+   * @param shift the index of the first bit
+   * @return the nine bits starting at the index
+   */
+  static int getNineBits(final long low, final long high, final int shift)
+  {
+    if (shift >= 64)
+    {
+      return (int) ((high >>> (shift - 64)) & 0x1FFL);
+    }
+    else if (shift > 55)
+    {
+      // The bits span both words
+      return (int) (((low >>> shift) | (high << (64 - shift))) & 0x1FFL);
+    }
+    
+    return (int) ((low >>> shift) & 0x1FFL);
+  }
+  
+  
+  /**
+   * Default constructor.
+   */
+  private Geometry()
+  {
+    super();
+  }
+}
@@ -0,0 +1,242 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.sudoku;
+
+/**
+ * A grid packed into six longs, 4 bits per cell.  This is used
+ * as a compact key (and value) in the solution caches, in place
+ * of the 81-character string from Sudoku.getData().
+ * 
+ * @author Mike Wallace (mwallace at pobox.com)
+ * @version 1.0
+ */
+public final class PackedGrid
+{
+  /**
+   * The number of cells in each long.
+   */
+  private static final int CELLS_PER_WORD = 16;
+  
+  /**
+   * The number of longs.
+   */
+  static final int NUM_WORDS = 6;
+  
+  /**
+   * Cells 0-15.
+   */
+  private final long word0;
+  
+  /**
+   * Cells 16-31.
+   */
+  private final long word1;
+  
+  /**
+   * Cells 32-47.
+   */
+  private final long word2;
+  
+  /**
+   * Cells 48-63.
+   */
+  private final long word3;
+  
+  /**
+   * Cells 64-79.
+   */
+  private final long word4;
+  
+  /**
+   * Cell 80.
+   */
+  private final long word5;
+  
+  /**
+   * The hash code.
+   */
+  private final int hash;
+  
+  
+  /**
+   * Constructor.
+   * 
+   * @param words the packed cells
+   */
+  private PackedGrid(final long[] words)
+  {
+    word0 = words[0];
+    word1 = words[1];
+    word2 = words[2];
+    word3 = words[3];
+    word4 = words[4];
+    word5 = words[5];
+    
+    // Mix the words into the hash code
+    long mix = word0;
+    for (int i = 1; i < NUM_WORDS; ++i)
+    {
+      mix = (mix * 0x9E3779B97F4A7C15L) ^ words[i];
+    }
+    mix ^= (mix >>> 32);
+    mix *= 0xD6E8FEB86659FD93L;
+    hash = (int) (mix ^ (mix >>> 32));
+  }
+  
+  
+  /**
+   * Pack a grid.
+   * 
+   * @param grid the 81 cell values, with zero for an empty cell
+   * @return the packed grid
+   */
+  public static PackedGrid pack(final int[] grid)
+  {
+    long[] words = new long[NUM_WORDS];
+    for (int i = 0; i < Geometry.NUM_CELLS; ++i)
+    {
+      words[i / CELLS_PER_WORD] |= ((long) grid[i]) << ((i % CELLS_PER_WORD) * 4);
+    }
+    
+    return new PackedGrid(words);
+  }
+  
+  
+  /**
+   * Pack a puzzle.
+   * 
+   * @param puzzle the puzzle
+   * @return the packed grid
+   */
+  public static PackedGrid pack(final Sudoku puzzle)
+  {
+    int[] grid = new int[Geometry.NUM_CELLS];
+    puzzle.getMatrix(grid);
+    return pack(grid);
+  }
+  
+  
+  /**
+   * Unpack the grid.
+   * 
+   * @param grid the array to fill in with the 81 cell values
+   */
+  public void unpack(final int[] grid)
+  {
+    for (int i = 0; i < Geometry.NUM_CELLS; ++i)
+    {
+      grid[i] = (int) ((getWord(i / CELLS_PER_WORD) >>> ((i % CELLS_PER_WORD) * 4)) & 0x0F);
+    }
+  }
+  
+  
+  /**
+   * Return one of the packed words.
+   * 
+   * @param index the index of the word
+   * @return the word
+   */
+  long getWord(final int index)
+  {
+    switch (index)
+    {
+      case 0:
+        return word0;
+      case 1:
+        return word1;
+      case 2:
+        return word2;
+      case 3:
+        return word3;
+      case 4:
+        return word4;
+      default:
+        return word5;
+    }
+  }
+  
+  
+  /**
+   * Return whether another object is the same grid.
+   * 
+   * @param obj the object to compare
+   * @return whether it's the same grid
+   */
+  @Override
+  public boolean equals(final Object obj)
+  {
+    if (this == obj)
+    {
+      return true;
+    }
+    else if (!(obj instanceof PackedGrid))
+    {
+      return false;
+    }
+    
+    final PackedGrid other = (PackedGrid) obj;
+    return ((hash == other.hash) && (word0 == other.word0)
+            && (word1 == other.word1) && (word2 == other.word2)
+            && (word3 == other.word3) && (word4 == other.word4)
+            && (word5 == other.word5));
+  }
+  
+  
+  /**
+   * Return the hash code for this grid.
+   * 
+   * @return the hash code
+   */
+  @Override
+  public int hashCode()
+  {
+    return hash;
+  }
+  
+  
+  /**
+   * Return the grid as 81 digits.
+   * 
+   * @return the grid as a string
+   */
+  @Override
+  public String toString()
+  {
+    int[] grid = new int[Geometry.NUM_CELLS];
+    unpack(grid);
+    
+    StringBuilder sb = new StringBuilder(Geometry.NUM_CELLS);
+    for (int i = 0; i < Geometry.NUM_CELLS; ++i)
+    {
+      sb.append((char) ('0' + grid[i]));
+    }
+    
+    return sb.toString();
+  }
+}
@@ -0,0 +1,548 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.sudoku;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * This solver splits the search across a fork/join pool.  Near
+ * the top of the search tree, each value of the branch cell is
+ * searched by its own task.  Below the split depth, each task
+ * searches its subtree sequentially.  When solving, the first
+ * solution found cancels the other tasks.  The limits on a solve
+ * are shared by all of its tasks: each sequential search starts
+ * with the nodes that are left in the budget.
+ * 
+ * @author Mike Wallace (mwallace at pobox.com)
+ * @version 1.0
+ */
+public final class ParallelSolver implements SudokuSolver
+{
+  /**
+   * The default number of guesses deep to keep forking tasks.
+   */
+  public static final int DEFAULT_SPLIT_DEPTH = 4;
+  
+  /**
+   * The pool that runs the tasks.
+   */
+  private ForkJoinPool pool = null;
+  
+  /**
+   * The depth below which the search is sequential.
+   */
+  private int splitDepth = DEFAULT_SPLIT_DEPTH;
+  
+  
+  /**
+   * Default constructor.  This uses the common pool.
+   */
+  public ParallelSolver()
+  {
+    this(ForkJoinPool.commonPool(), DEFAULT_SPLIT_DEPTH);
+  }
+  
+  
+  /**
+   * Constructor.
+   * 
+   * @param srcPool the pool that runs the tasks
+   * @param srcSplitDepth the depth below which the search is sequential
+   */
+  public ParallelSolver(final ForkJoinPool srcPool, final int srcSplitDepth)
+  {
+    pool = srcPool;
+    splitDepth = srcSplitDepth;
+  }
+  
+  
+  /**
+   * Solve the puzzle in place.
+   * 
+   * @param puzzle the puzzle to solve
+   * @return whether the puzzle was solved
+   */
+  public boolean solve(final Sudoku puzzle)
+  {
+    return solve(puzzle, null).isSolved();
+  }
+  
+  
+  /**
+   * Solve the puzzle in place, within the given limits.
+   * 
+   * @param puzzle the puzzle to solve
+   * @param options the limits on the solve, or null for none
+   * @return the result of the solve
+   */
+  public SolveResult solve(final Sudoku puzzle, final SolveOptions options)
+  {
+    // Check if it's valid
+    if (!puzzle.isValid())
+    {
+      return new SolveResult(SolveStatus.FINISHED, false, 0L);
+    }
+    
+    // Search a copy of the puzzle
+    final long start = System.nanoTime();
+    final Sudoku root = puzzle.copy();
+    root.initCandidates();
+    final SearchState state = new SearchState(options, puzzle.getStatistics());
+    pool.invoke(new SolveTask(root, 0, state));
+    if (state.stats != null)
+    {
+      state.stats.addSolve(System.nanoTime() - start);
+    }
+    
+    // Save the solution, if one was found
+    final String solution = state.solution.get();
+    final long nodes = state.nodes.get();
+    if (solution == null)
+    {
+      final SolveStatus status = state.status.get();
+      return new SolveResult((status == null) ? SolveStatus.FINISHED : status,
+                             false, nodes);
+    }
+    
+    puzzle.setData(solution);
+    return new SolveResult(SolveStatus.FINISHED, true, nodes);
+  }
+  
+  
+  /**
+   * Count the solutions of a puzzle, stopping once the limit is
+   * reached.  The puzzle is left unchanged.
+   * 
+   * @param puzzle the puzzle of interest
+   * @param limit the most solutions to count
+   * @return the number of solutions found, up to the limit
+   */
+  public int countSolutions(final Sudoku puzzle, final int limit)
+  {
+    // An invalid puzzle has no solutions
+    if ((limit < 1) || (!puzzle.isValid()))
+    {
+      return 0;
+    }
+    
+    // Count on a copy of the puzzle
+    final Sudoku root = puzzle.copy();
+    root.initCandidates();
+    final CountTask task = new CountTask(root, 0, limit, new CancellationToken(),
+                                         new AtomicInteger(0));
+    pool.invoke(task);
+    
+    return Math.min(task.total.get(), limit);
+  }
+  
+  
+  /**
+   * Return the name of this solver.
+   * 
+   * @return the name of this solver
+   */
+  public String getName()
+  {
+    return "parallel";
+  }
+  
+  
+  /**
+   * Make one copy of the puzzle for each value of the branch cell,
+   * with that value filled in.
+   * 
+   * @param puzzle the propagated puzzle
+   * @param location the branch cell
+   * @return the copies
+   */
+  private static List<Sudoku> split(final Sudoku puzzle, final int location)
+  {
+    List<Sudoku> branches = new ArrayList<Sudoku>(9);
+    int possibles = puzzle.getCandidates(location);
+    while (possibles != 0)
+    {
+      final int mask = possibles & -possibles;
+      possibles ^= mask;
+      
+      Sudoku branch = puzzle.copyState();
+      branch.placeValue(location, Integer.numberOfTrailingZeros(mask) + 1);
+      branches.add(branch);
+    }
+    
+    return branches;
+  }
+  
+  
+  /**
+   * The state shared by the tasks of one solve.
+   */
+  private static final class SearchState
+  {
+    /**
+     * The limits on the solve, or null for none.
+     */
+    private final SolveOptions options;
+    
+    /**
+     * Cancelled once any task has found a solution, or when the
+     * caller's token is cancelled.
+     */
+    private final CancellationToken stop;
+    
+    /**
+     * The first solution found.
+     */
+    private final AtomicReference<String> solution = new AtomicReference<String>(null);
+    
+    /**
+     * Why the first task to stop early was stopped.
+     */
+    private final AtomicReference<SolveStatus> status = new AtomicReference<SolveStatus>(null);
+    
+    /**
+     * The number of search nodes visited by all tasks.
+     */
+    private final AtomicLong nodes = new AtomicLong(0L);
+    
+    /**
+     * The counts of the work done by all tasks, or null to not count.
+     * Each task counts its own work, and adds it here when done.
+     */
+    private final SolveStatistics stats;
+    
+    
+    /**
+     * Constructor.
+     * 
+     * @param srcOptions the limits on the solve, or null for none
+     * @param srcStats the counts of the work done, or null to not count
+     */
+    public SearchState(final SolveOptions srcOptions, final SolveStatistics srcStats)
+    {
+      options = srcOptions;
+      stats = srcStats;
+      stop = new CancellationToken((options == null) ? null
+                                   : options.getCancellationToken());
+    }
+    
+    
+    /**
+     * Return the number of nodes left in the budget.
+     * 
+     * @return the number of nodes left
+     */
+    public long getNodesLeft()
+    {
+      return ((options == null) ? Long.MAX_VALUE
+              : (options.getMaxNodes() - nodes.get()));
+    }
+    
+    
+    /**
+     * Record that a task was stopped early.
+     * 
+     * @param reason why the task was stopped
+     */
+    public void stopped(final SolveStatus reason)
+    {
+      status.compareAndSet(null, reason);
+    }
+    
+    
+    /**
+     * Add the work done by a branch, and record why it stopped early.
+     * 
+     * @param branch the puzzle searched by a task
+     * @param depth the number of guesses made to reach the branch
+     */
+    public void addWork(final Sudoku branch, final int depth)
+    {
+      nodes.addAndGet(branch.getNodeCount());
+      if (stats != null)
+      {
+        // The branch's own counts start with the guess that made it
+        synchronized (stats)
+        {
+          stats.add(branch.getStatistics(), Math.max(depth - 1, 0));
+        }
+      }
+      
+      if (branch.getStopStatus() != null)
+      {
+        stopped(branch.getStopStatus());
+      }
+    }
+  }
+  
+  
+  /**
+   * The task that searches one branch for a solution.
+   */
+  private final class SolveTask extends RecursiveAction
+  {
+    /**
+     * Default serial version ID.
+     */
+    private static final long serialVersionUID = 1L;
+    
+    /**
+     * The puzzle for this branch.
+     */
+    private final Sudoku puzzle;
+    
+    /**
+     * The number of guesses made to reach this branch.
+     */
+    private final int depth;
+    
+    /**
+     * The state shared by all tasks.
+     */
+    private final SearchState state;
+    
+    
+    /**
+     * Constructor.
+     * 
+     * @param srcPuzzle the puzzle for this branch
+     * @param srcDepth the number of guesses made so far
+     * @param srcState the state shared by all tasks
+     */
+    public SolveTask(final Sudoku srcPuzzle, final int srcDepth,
+                     final SearchState srcState)
+    {
+      puzzle = srcPuzzle;
+      depth = srcDepth;
+      state = srcState;
+    }
+    
+    
+    /**
+     * Search this branch.
+     */
+    @Override
+    protected void compute()
+    {
+      // Stop if another task found a solution, or the caller cancelled
+      if (state.stop.isCancelled())
+      {
+        state.stopped(SolveStatus.CANCELLED);
+        return;
+      }
+      
+      // Stop if the node budget is used up
+      final long nodesLeft = state.getNodesLeft();
+      if (nodesLeft <= 0L)
+      {
+        state.stopped(SolveStatus.NODE_LIMIT);
+        return;
+      }
+      
+      // Apply the limits to this branch, and count its work
+      // starting with the guess that made it
+      puzzle.setLimits(state.options, state.stop);
+      puzzle.setMaxNodes(nodesLeft);
+      if (state.stats != null)
+      {
+        final SolveStatistics branchStats = new SolveStatistics();
+        if (depth > 0)
+        {
+          branchStats.addGuess();
+        }
+        puzzle.setStatistics(branchStats);
+      }
+      
+      // Fill in what can be deduced, and below the split depth,
+      // search the rest of the branch sequentially
+      boolean solved = false;
+      int location = -1;
+      if (puzzle.propagate())
+      {
+        location = puzzle.getBranchCell();
+        if (location < 0)
+        {
+          solved = true;
+        }
+        else if (depth >= splitDepth)
+        {
+          solved = puzzle.search();
+          location = -1;
+        }
+      }
+      state.addWork(puzzle, depth);
+      
+      if (location >= 0)
+      {
+        // Fork a task for each value of the branch cell
+        state.nodes.incrementAndGet();
+        List<SolveTask> tasks = new ArrayList<SolveTask>(9);
+        for (Sudoku branch : split(puzzle, location))
+        {
+          tasks.add(new SolveTask(branch, depth + 1, state));
+        }
+        
+        ForkJoinTask.invokeAll(tasks);
+        return;
+      }
+      else if (!solved)
+      {
+        // This branch is a dead end, or was stopped
+        return;
+      }
+      
+      // The puzzle is solved.  Keep it if it's the first solution.
+      if (state.solution.compareAndSet(null, puzzle.getData()))
+      {
+        state.stop.cancel();
+      }
+    }
+  }
+  
+  
+  /**
+   * The task that counts the solutions in one branch.
+   */
+  private final class CountTask extends RecursiveTask<Integer>
+  {
+    /**
+     * Default serial version ID.
+     */
+    private static final long serialVersionUID = 1L;
+    
+    /**
+     * The puzzle for this branch.
+     */
+    private final Sudoku puzzle;
+    
+    /**
+     * The number of guesses made to reach this branch.
+     */
+    private final int depth;
+    
+    /**
+     * The most solutions to count.
+     */
+    private final int limit;
+    
+    /**
+     * Cancelled once the limit has been reached.
+     */
+    private final CancellationToken done;
+    
+    /**
+     * The number of solutions found by all tasks.
+     */
+    private final AtomicInteger total;
+    
+    
+    /**
+     * Constructor.
+     * 
+     * @param srcPuzzle the puzzle for this branch
+     * @param srcDepth the number of guesses made so far
+     * @param srcLimit the most solutions to count
+     * @param srcDone the flag shared by all tasks
+     * @param srcTotal the count shared by all tasks
+     */
+    public CountTask(final Sudoku srcPuzzle, final int srcDepth,
+                     final int srcLimit, final CancellationToken srcDone,
+                     final AtomicInteger srcTotal)
+    {
+      puzzle = srcPuzzle;
+      depth = srcDepth;
+      limit = srcLimit;
+      done = srcDone;
+      total = srcTotal;
+    }
+    
+    
+    /**
+     * Count the solutions in this branch.
+     * 
+     * @return the number of solutions counted by this task
+     */
+    @Override
+    protected Integer compute()
+    {
+      // Stop if the limit was reached, or this is a dead end
+      if ((done.isCancelled()) || (!puzzle.propagate()))
+      {
+        return 0;
+      }
+      
+      // Count this branch
+      int count = 0;
+      final int location = puzzle.getBranchCell();
+      if (location < 0)
+      {
+        // The puzzle is solved
+        count = 1;
+      }
+      else if (depth >= splitDepth)
+      {
+        // Below the split depth, count sequentially
+        puzzle.setLimits(null, done);
+        count = puzzle.countFrom(limit);
+      }
+      else
+      {
+        // Fork a task for each value of the branch cell
+        List<CountTask> tasks = new ArrayList<CountTask>(9);
+        for (Sudoku branch : split(puzzle, location))
+        {
+          tasks.add(new CountTask(branch, depth + 1, limit, done, total));
+        }
+        
+        // The subtasks add their own counts to the total
+        int sum = 0;
+        for (CountTask task : ForkJoinTask.invokeAll(tasks))
+        {
+          sum += task.join();
+        }
+        return sum;
+      }
+      
+      // Add to the total, and stop the other tasks at the limit
+      if (total.addAndGet(count) >= limit)
+      {
+        done.cancel();
+      }
+      
+      return count;
+    }
+  }
+}
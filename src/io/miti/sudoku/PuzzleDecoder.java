@@ -0,0 +1,352 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.sudoku;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Read puzzles from a file in the binary puzzle (.sdb) format.
+ * The records are read in blocks of INDEX_INTERVAL records, found
+ * through the file's index.  Different threads can read different
+ * blocks at once.
+ * 
+ * @author Mike Wallace (mwallace at pobox.com)
+ * @version 1.0
+ */
+public final class PuzzleDecoder implements Closeable
+{
+  /**
+   * The open file.
+   */
+  private RandomAccessFile file = null;
+  
+  /**
+   * The channel used to read the blocks.
+   */
+  private FileChannel channel = null;
+  
+  /**
+   * The record encoding.
+   */
+  private int encoding = BinaryFormat.SPARSE;
+  
+  /**
+   * The number of records.
+   */
+  private int count = 0;
+  
+  /**
+   * The offset of each block of records, plus the end of the
+   * last block.
+   */
+  private long[] index = null;
+  
+  
+  /**
+   * Open a binary puzzle file, and read its index.
+   * 
+   * @param input the file
+   * @throws IOException if the file can't be read, or is not a
+   *         binary puzzle file
+   */
+  public PuzzleDecoder(final File input) throws IOException
+  {
+    file = new RandomAccessFile(input, "r");
+    channel = file.getChannel();
+    
+    try
+    {
+      readIndex();
+    }
+    catch (IOException ioe)
+    {
+      close();
+      throw ioe;
+    }
+  }
+  
+  
+  /**
+   * Read and check the header, trailer and index.
+   * 
+   * @throws IOException on a read error, or if the file is not
+   *         a binary puzzle file
+   */
+  private void readIndex() throws IOException
+  {
+    final long size = channel.size();
+    if (size < BinaryFormat.HEADER_SIZE + BinaryFormat.TRAILER_SIZE)
+    {
+      throw new IOException("Not a binary puzzle file");
+    }
+    
+    // Check the header
+    ByteBuffer header = read(0L, BinaryFormat.HEADER_SIZE);
+    if ((header.getInt() != BinaryFormat.MAGIC)
+        || (header.get() != BinaryFormat.VERSION))
+    {
+      throw new IOException("Not a binary puzzle file");
+    }
+    
+    encoding = header.get();
+    if (((encoding != BinaryFormat.PACKED) && (encoding != BinaryFormat.SPARSE))
+        || (header.getShort() != BinaryFormat.INDEX_INTERVAL))
+    {
+      throw new IOException("Unsupported binary puzzle file");
+    }
+    
+    // Check the trailer
+    final long trailerOffset = size - BinaryFormat.TRAILER_SIZE;
+    ByteBuffer trailer = read(trailerOffset, BinaryFormat.TRAILER_SIZE);
+    final long indexOffset = trailer.getLong();
+    count = trailer.getInt();
+    final int entries = (count + BinaryFormat.INDEX_INTERVAL - 1)
+                          / BinaryFormat.INDEX_INTERVAL;
+    if ((trailer.getInt() != BinaryFormat.MAGIC) || (count < 0)
+        || (indexOffset < BinaryFormat.HEADER_SIZE)
+        || (indexOffset + entries * 8L != trailerOffset))
+    {
+      throw new IOException("The binary puzzle file is incomplete");
+    }
+    
+    // Read the index, and add the end of the records.  Each block
+    // must start after the previous one, and before the index.
+    index = new long[entries + 1];
+    ByteBuffer entryBuffer = read(indexOffset, entries * 8);
+    long previous = BinaryFormat.HEADER_SIZE;
+    for (int i = 0; i < entries; ++i)
+    {
+      index[i] = entryBuffer.getLong();
+      if ((index[i] < previous) || (index[i] >= indexOffset))
+      {
+        throw new IOException("The binary puzzle file has a damaged index");
+      }
+      
+      previous = index[i];
+    }
+    index[entries] = indexOffset;
+  }
+  
+  
+  /**
+   * Read part of the file into a new buffer.
+   * 
+   * @param position the position in the file
+   * @param length the number of bytes to read
+   * @return the buffer, ready to be read
+   * @throws IOException on a read error, or the end of the file
+   */
+  private ByteBuffer read(final long position, final int length)
+    throws IOException
+  {
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    while (buffer.hasRemaining())
+    {
+      if (channel.read(buffer, position + buffer.position()) < 0)
+      {
+        throw new IOException("Unexpected end of the binary puzzle file");
+      }
+    }
+    
+    buffer.flip();
+    return buffer;
+  }
+  
+  
+  /**
+   * Return the number of records.
+   * 
+   * @return the number of records
+   */
+  public int getCount()
+  {
+    return count;
+  }
+  
+  
+  /**
+   * Return the number of blocks of records.
+   * 
+   * @return the number of blocks
+   */
+  public int getBlockCount()
+  {
+    return index.length - 1;
+  }
+  
+  
+  /**
+   * Read a run of blocks into memory.
+   * 
+   * @param firstBlock the index of the first block
+   * @param numBlocks the number of blocks
+   * @return the records in the blocks
+   * @throws IOException on a read error
+   */
+  public Records readBlocks(final int firstBlock, final int numBlocks)
+    throws IOException
+  {
+    final int lastBlock = Math.min(firstBlock + numBlocks, getBlockCount());
+    final int first = firstBlock * BinaryFormat.INDEX_INTERVAL;
+    final int last = Math.min(lastBlock * BinaryFormat.INDEX_INTERVAL, count);
+    
+    final long start = index[firstBlock];
+    final ByteBuffer buffer = read(start, (int) (index[lastBlock] - start));
+    return new Records(buffer, encoding, last - first);
+  }
+  
+  
+  /**
+   * Close the file.  Records already read can still be decoded.
+   * 
+   * @throws IOException on a close error
+   */
+  public void close() throws IOException
+  {
+    if (file != null)
+    {
+      file.close();
+      file = null;
+      channel = null;
+    }
+  }
+  
+  
+  /**
+   * A run of records read into memory.  This keeps its own read
+   * position, so it should only be read by one thread.
+   */
+  public static final class Records
+  {
+    /**
+     * The packed records.
+     */
+    private final ByteBuffer buffer;
+    
+    /**
+     * The record encoding.
+     */
+    private final int encoding;
+    
+    /**
+     * The number of records not yet decoded.
+     */
+    private int remaining;
+    
+    /**
+     * Used to fill in a puzzle.
+     */
+    private int[] grid = null;
+    
+    
+    /**
+     * Constructor.
+     * 
+     * @param srcBuffer the packed records
+     * @param nEncoding the record encoding
+     * @param nCount the number of records
+     */
+    private Records(final ByteBuffer srcBuffer, final int nEncoding,
+                    final int nCount)
+    {
+      buffer = srcBuffer;
+      encoding = nEncoding;
+      remaining = nCount;
+    }
+    
+    
+    /**
+     * Return the number of records not yet decoded.
+     * 
+     * @return the number of records left
+     */
+    public int getRemaining()
+    {
+      return remaining;
+    }
+    
+    
+    /**
+     * Decode the next record into a grid.
+     * 
+     * @param cells the array to fill in with the 81 cell values
+     * @return whether there was another record
+     * @throws IOException if the record is damaged
+     */
+    public boolean next(final int[] cells) throws IOException
+    {
+      if (remaining == 0)
+      {
+        return false;
+      }
+      
+      try
+      {
+        BinaryFormat.decode(buffer, encoding, cells);
+      }
+      catch (BufferUnderflowException bue)
+      {
+        throw new IOException("The binary puzzle file is truncated", bue);
+      }
+      
+      --remaining;
+      return true;
+    }
+    
+    
+    /**
+     * Decode the next record into a puzzle.
+     * 
+     * @param puzzle the puzzle to fill in
+     * @return whether there was another record
+     * @throws IOException if the record is damaged
+     */
+    public boolean next(final Sudoku puzzle) throws IOException
+    {
+      if (grid == null)
+      {
+        grid = new int[Geometry.NUM_CELLS];
+      }
+      
+      if (!next(grid))
+      {
+        return false;
+      }
+      
+      puzzle.setMatrix(grid);
+      return true;
+    }
+  }
+}
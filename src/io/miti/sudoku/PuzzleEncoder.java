@@ -0,0 +1,284 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.sudoku;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Write puzzles to a stream in the binary puzzle (.sdb) format.
+ * The index and trailer are written when the encoder is closed.
+ * This can also be run to convert a text file of puzzles to the
+ * binary format.
+ * 
+ * @author Mike Wallace (mwallace at pobox.com)
+ * @version 1.0
+ */
+public final class PuzzleEncoder implements Closeable
+{
+  /**
+   * The destination stream.
+   */
+  private OutputStream out = null;
+  
+  /**
+   * The record encoding.
+   */
+  private int encoding = BinaryFormat.SPARSE;
+  
+  /**
+   * The buffer used to pack each record.
+   */
+  private ByteBuffer record = ByteBuffer.allocate(BinaryFormat.MAX_RECORD_SIZE);
+  
+  /**
+   * The number of bytes written so far.
+   */
+  private long offset = 0L;
+  
+  /**
+   * The number of records written so far.
+   */
+  private int count = 0;
+  
+  /**
+   * The offsets of every INDEX_INTERVAL-th record.
+   */
+  private long[] index = new long[16];
+  
+  /**
+   * Used to copy the values out of a puzzle.
+   */
+  private int[] grid = new int[Geometry.NUM_CELLS];
+  
+  
+  /**
+   * Constructor.  This writes the header.
+   * 
+   * @param stream the destination stream
+   * @param sparse whether to use the sparse encoding, which suits
+   *        puzzles, instead of the packed one, which suits solutions
+   * @throws IOException on a write error
+   */
+  public PuzzleEncoder(final OutputStream stream, final boolean sparse)
+    throws IOException
+  {
+    out = stream;
+    encoding = (sparse ? BinaryFormat.SPARSE : BinaryFormat.PACKED);
+    
+    // Write the header
+    ByteBuffer header = ByteBuffer.allocate(BinaryFormat.HEADER_SIZE);
+    header.putInt(BinaryFormat.MAGIC);
+    header.put((byte) BinaryFormat.VERSION);
+    header.put((byte) encoding);
+    header.putShort((short) BinaryFormat.INDEX_INTERVAL);
+    write(header);
+  }
+  
+  
+  /**
+   * Write a puzzle.
+   * 
+   * @param puzzle the puzzle to write
+   * @throws IOException on a write error
+   */
+  public void write(final Sudoku puzzle) throws IOException
+  {
+    puzzle.getMatrix(grid);
+    write(grid);
+  }
+  
+  
+  /**
+   * Write a grid.
+   * 
+   * @param cells the 81 cell values, with zero for an empty cell
+   * @throws IOException on a write error
+   */
+  public void write(final int[] cells) throws IOException
+  {
+    write(cells, 0);
+  }
+  
+  
+  /**
+   * Write a grid stored in part of an array.
+   * 
+   * @param cells the cell values, with zero for an empty cell
+   * @param start the index of the first of the 81 cells in the array
+   * @throws IOException on a write error
+   */
+  public void write(final int[] cells, final int start) throws IOException
+  {
+    // Add an index entry at the start of each interval
+    if ((count % BinaryFormat.INDEX_INTERVAL) == 0)
+    {
+      final int entry = count / BinaryFormat.INDEX_INTERVAL;
+      if (entry == index.length)
+      {
+        long[] larger = new long[index.length * 2];
+        System.arraycopy(index, 0, larger, 0, index.length);
+        index = larger;
+      }
+      
+      index[entry] = offset;
+    }
+    
+    // Pack and write the record
+    record.clear();
+    BinaryFormat.encode(cells, start, encoding, record);
+    write(record);
+    ++count;
+  }
+  
+  
+  /**
+   * Return the number of puzzles written.
+   * 
+   * @return the number of puzzles written
+   */
+  public int getCount()
+  {
+    return count;
+  }
+  
+  
+  /**
+   * Write the index and trailer, and close the stream.
+   * 
+   * @throws IOException on a write error
+   */
+  public void close() throws IOException
+  {
+    if (out == null)
+    {
+      return;
+    }
+    
+    // Write the index and the trailer
+    final int entries = (count + BinaryFormat.INDEX_INTERVAL - 1)
+                          / BinaryFormat.INDEX_INTERVAL;
+    ByteBuffer tail = ByteBuffer.allocate(entries * 8 + BinaryFormat.TRAILER_SIZE);
+    final long indexOffset = offset;
+    for (int i = 0; i < entries; ++i)
+    {
+      tail.putLong(index[i]);
+    }
+    tail.putLong(indexOffset);
+    tail.putInt(count);
+    tail.putInt(BinaryFormat.MAGIC);
+    write(tail);
+    
+    out.close();
+    out = null;
+  }
+  
+  
+  /**
+   * Write the contents of a buffer, from the start to its position.
+   * 
+   * @param buffer the buffer to write
+   * @throws IOException on a write error
+   */
+  private void write(final ByteBuffer buffer) throws IOException
+  {
+    out.write(buffer.array(), 0, buffer.position());
+    offset += buffer.position();
+  }
+  
+  
+  /**
+   * Convert a text file of puzzles, in the same format as the .sud
+   * files, to the binary format.  Lines too short to be a puzzle
+   * are skipped.
+   * 
+   * @param args the input and output file names
+   */
+  public static void main(final String[] args)
+  {
+    if (args.length != 2)
+    {
+      System.err.println("Usage: java -cp sudokustruggler.jar io.miti.sudoku.PuzzleEncoder"
+          + " input.sud output" + BinaryFormat.EXTENSION);
+      System.exit(1);
+    }
+    
+    PuzzleFile input = null;
+    PuzzleEncoder encoder = null;
+    try
+    {
+      // Copy each record
+      input = new PuzzleFile(new File(args[0]));
+      encoder = new PuzzleEncoder(new BufferedOutputStream(
+          new FileOutputStream(args[1]), 1 << 16), true);
+      Sudoku puzzle = new Sudoku();
+      for (PuzzleFile.Chunk chunk : input.split(Integer.MAX_VALUE))
+      {
+        chunk.load();
+        while (chunk.nextPuzzle(puzzle))
+        {
+          encoder.write(puzzle);
+        }
+      }
+      
+      encoder.close();
+      System.err.println("Wrote " + encoder.getCount() + " puzzles");
+      encoder = null;
+    }
+    catch (IOException ioe)
+    {
+      System.err.println("Error while converting: " + ioe.getMessage());
+      System.exit(1);
+    }
+    finally
+    {
+      try
+      {
+        if (input != null)
+        {
+          input.close();
+        }
+        
+        if (encoder != null)
+        {
+          encoder.close();
+        }
+      }
+      catch (IOException ioe)
+      {
+        System.err.println("Error while closing: " + ioe.getMessage());
+      }
+    }
+  }
+}
@@ -0,0 +1,354 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.sudoku;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A file of puzzles, read through memory-mapped buffers.  The
+ * file has one puzzle per line, in the same format as the .sud
+ * files; blank lines and lines starting with '#' are skipped.
+ * 
+ * The file is split into chunks on line boundaries.  Each chunk
+ * is mapped separately, so files larger than 2 GB can be read,
+ * and different threads can parse different chunks at once.  The
+ * records are parsed straight from the mapped buffer, without
+ * creating a String for each line.
+ * 
+ * @author Mike Wallace (mwallace at pobox.com)
+ * @version 1.0
+ */
+public final class PuzzleFile implements Closeable
+{
+  /**
+   * The number of cells in a record.
+   */
+  public static final int RECORD_SIZE = 81;
+  
+  /**
+   * The number of bytes read while looking for the end of a line.
+   */
+  private static final int SCAN_SIZE = 4096;
+  
+  /**
+   * The open file.
+   */
+  private RandomAccessFile file = null;
+  
+  /**
+   * The channel used to map the chunks.
+   */
+  private FileChannel channel = null;
+  
+  /**
+   * The size of the file, in bytes.
+   */
+  private long size = 0L;
+  
+  
+  /**
+   * Open a puzzle file.
+   * 
+   * @param input the file
+   * @throws IOException if the file can't be opened
+   */
+  public PuzzleFile(final File input) throws IOException
+  {
+    file = new RandomAccessFile(input, "r");
+    channel = file.getChannel();
+    size = channel.size();
+  }
+  
+  
+  /**
+   * Return the size of the file.
+   * 
+   * @return the size of the file, in bytes
+   */
+  public long getSize()
+  {
+    return size;
+  }
+  
+  
+  /**
+   * Split the file into chunks of about the given size.  Each
+   * chunk ends at the end of a line, so no record is split
+   * between chunks.
+   * 
+   * @param chunkSize the target size of each chunk, in bytes
+   * @return the chunks, in file order
+   * @throws IOException on a read error
+   */
+  public List<Chunk> split(final long chunkSize) throws IOException
+  {
+    // A mapped buffer can't be larger than 2 GB
+    final long step = Math.max(RECORD_SIZE + 1,
+                               Math.min(chunkSize, Integer.MAX_VALUE / 2));
+    List<Chunk> chunks = new ArrayList<Chunk>((int) (size / step) + 1);
+    
+    long start = 0L;
+    while (start < size)
+    {
+      final long end = findLineEnd(Math.min(start + step, size));
+      chunks.add(new Chunk(start, end));
+      start = end;
+    }
+    
+    return chunks;
+  }
+  
+  
+  /**
+   * Find the position just after the end of the line holding
+   * the given position.
+   * 
+   * @param position a position in the file
+   * @return the start of the next line, or the end of the file
+   * @throws IOException on a read error
+   */
+  private long findLineEnd(final long position) throws IOException
+  {
+    ByteBuffer buffer = ByteBuffer.allocate(SCAN_SIZE);
+    long next = Math.max(position - 1, 0L);
+    while (next < size)
+    {
+      // Read the next block of bytes
+      buffer.clear();
+      final int count = channel.read(buffer, next);
+      if (count <= 0)
+      {
+        break;
+      }
+      
+      // Look for the newline
+      for (int i = 0; i < count; ++i)
+      {
+        if (buffer.get(i) == '\n')
+        {
+          return next + i + 1;
+        }
+      }
+      
+      next += count;
+    }
+    
+    return size;
+  }
+  
+  
+  /**
+   * Close the file.  Chunks that were already mapped can still
+   * be read.
+   * 
+   * @throws IOException on a close error
+   */
+  public void close() throws IOException
+  {
+    if (file != null)
+    {
+      file.close();
+      file = null;
+      channel = null;
+    }
+  }
+  
+  
+  /**
+   * A range of whole lines in the file.  A chunk keeps its own
+   * read position, so it should only be read by one thread.
+   */
+  public final class Chunk
+  {
+    /**
+     * The position of the chunk in the file.
+     */
+    private final long start;
+    
+    /**
+     * The position just past the end of the chunk.
+     */
+    private final long end;
+    
+    /**
+     * The mapped contents of the chunk.
+     */
+    private MappedByteBuffer buffer = null;
+    
+    /**
+     * The index of the next line in the buffer.
+     */
+    private int position = 0;
+    
+    /**
+     * The length of the last record returned, without trailing
+     * white space.
+     */
+    private int recordLength = 0;
+    
+    
+    /**
+     * Constructor.
+     * 
+     * @param nStart the position of the chunk in the file
+     * @param nEnd the position just past the end of the chunk
+     */
+    private Chunk(final long nStart, final long nEnd)
+    {
+      start = nStart;
+      end = nEnd;
+    }
+    
+    
+    /**
+     * Map the chunk, if it's not already mapped, and load its
+     * contents into memory.  This can be called ahead of time by
+     * another thread, so the thread parsing the chunk doesn't
+     * wait on the disk.
+     * 
+     * @return the mapped contents of the chunk
+     * @throws IOException on a mapping error
+     */
+    public synchronized ByteBuffer load() throws IOException
+    {
+      if (buffer == null)
+      {
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        buffer.load();
+      }
+      
+      return buffer;
+    }
+    
+    
+    /**
+     * Find the next record, skipping blank lines and comments.
+     * The chunk must have been loaded.
+     * 
+     * @return the index of the record in the buffer, or -1 at
+     *         the end of the chunk
+     */
+    public int nextRecord()
+    {
+      final int limit = buffer.limit();
+      while (position < limit)
+      {
+        // Find the end of the line
+        final int lineStart = position;
+        int lineEnd = lineStart;
+        while ((lineEnd < limit) && (buffer.get(lineEnd) != '\n'))
+        {
+          ++lineEnd;
+        }
+        position = lineEnd + 1;
+        
+        // Skip leading and trailing white space
+        int first = lineStart;
+        while ((first < lineEnd) && (buffer.get(first) <= ' '))
+        {
+          ++first;
+        }
+        
+        int last = lineEnd;
+        while ((last > first) && (buffer.get(last - 1) <= ' '))
+        {
+          --last;
+        }
+        
+        // Return the line unless it's blank or a comment
+        if ((first < last) && (buffer.get(first) != '#'))
+        {
+          recordLength = last - first;
+          return first;
+        }
+      }
+      
+      return -1;
+    }
+    
+    
+    /**
+     * Return the length of the last record returned by nextRecord,
+     * without white space.  A record shorter than RECORD_SIZE is
+     * not a complete puzzle.
+     * 
+     * @return the length of the record
+     */
+    public int getRecordLength()
+    {
+      return recordLength;
+    }
+    
+    
+    /**
+     * Return the mapped contents of the chunk.  The chunk must
+     * have been loaded.
+     * 
+     * @return the mapped contents of the chunk
+     */
+    public ByteBuffer getBuffer()
+    {
+      return buffer;
+    }
+    
+    
+    /**
+     * Fill in the puzzle from the next complete record.  Records
+     * shorter than RECORD_SIZE are skipped.  The chunk must have
+     * been loaded.
+     * 
+     * @param puzzle the puzzle to fill in
+     * @return whether a record was found
+     */
+    public boolean nextPuzzle(final Sudoku puzzle)
+    {
+      int offset = nextRecord();
+      while ((offset >= 0) && (recordLength < RECORD_SIZE))
+      {
+        offset = nextRecord();
+      }
+      
+      if (offset < 0)
+      {
+        return false;
+      }
+      
+      puzzle.setData(buffer, offset);
+      return true;
+    }
+  }
+}
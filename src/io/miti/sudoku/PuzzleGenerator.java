@@ -0,0 +1,650 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.sudoku;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Generate new puzzles, each with exactly one solution.
+ * 
+ * Each puzzle starts as a random complete grid: the three blocks
+ * on the diagonal don't share a row or column, so they're filled
+ * with random digits, and the search fills in the rest.  Then the
+ * clues are removed in a random order, and each removal is kept
+ * only if the puzzle still has one solution.  This stops at the
+ * target number of clues, or when no clue can be removed.
+ * 
+ * For a difficulty band, a removal is kept only if the puzzle can
+ * still be solved within that band, which also proves it has one
+ * solution without counting them.  A finished puzzle that is too
+ * easy, or that couldn't get down to the target number of clues,
+ * is thrown away and another is tried.  The bands are the ones
+ * given by the DifficultyRater.
+ * 
+ * The puzzles are written one per line, in the same format as
+ * the .sud files.  The work is split across threads, and each
+ * thread makes whole puzzles.
+ * 
+ * @author Mike Wallace (mwallace at pobox.com)
+ * @version 1.0
+ */
+public final class PuzzleGenerator
+{
+  /**
+   * The number of cells in a row.
+   */
+  private static final int SIZE = 9;
+  
+  /**
+   * The number of rows in a block.
+   */
+  private static final int BLOCK_SIZE = 3;
+  
+  /**
+   * The fewest clues a puzzle with one solution can have.
+   */
+  public static final int MIN_CLUES = 17;
+  
+  /**
+   * The most puzzles a thread makes and throws away while looking
+   * for one that meets the target, before giving up.
+   */
+  private static final int MAX_TRIES = 50000;
+  
+  /**
+   * The strategies used when counting solutions.  The cheap rules
+   * pay for themselves in the search; the rest cost more than they
+   * save.
+   */
+  private static final Strategy[] COUNT_STRATEGIES = {
+    Strategy.NAKED_SINGLE, Strategy.HIDDEN_SINGLE_ROW,
+    Strategy.HIDDEN_SINGLE_COLUMN, Strategy.HIDDEN_SINGLE_BLOCK};
+  
+  /**
+   * The strategies that make up the easy band.
+   */
+  private static final Strategy[] SINGLES = COUNT_STRATEGIES;
+  
+  /**
+   * The number of generator threads.
+   */
+  private int threadCount = 1;
+  
+  /**
+   * The number of clues to aim for, or 0 to remove as many as possible.
+   */
+  private int clueTarget = 0;
+  
+  /**
+   * The difficulty band of the puzzles, or null for any.
+   */
+  private Difficulty level = null;
+  
+  /**
+   * The seed for the random numbers, or null to use a random seed.
+   */
+  private Long seed = null;
+  
+  /**
+   * The number of puzzles tried and thrown away.
+   */
+  private final AtomicLong rejectCount = new AtomicLong(0L);
+  
+  
+  /**
+   * Constructor.
+   * 
+   * @param nThreads the number of generator threads
+   */
+  public PuzzleGenerator(final int nThreads)
+  {
+    threadCount = Math.max(1, nThreads);
+  }
+  
+  
+  /**
+   * Set the number of clues to aim for.  Most puzzles can't go
+   * below about 24 clues, so lower targets take many tries, and
+   * no puzzle with one solution has fewer than MIN_CLUES.
+   * 
+   * @param nClues the number of clues, or 0 to remove as many as possible
+   */
+  public void setClueTarget(final int nClues)
+  {
+    if ((nClues != 0) && (nClues < MIN_CLUES))
+    {
+      throw new IllegalArgumentException("The clue target must be at least "
+                                         + MIN_CLUES);
+    }
+    
+    clueTarget = Math.min(nClues, Geometry.NUM_CELLS);
+  }
+  
+  
+  /**
+   * Set the difficulty band of the puzzles.
+   * 
+   * @param band the difficulty, or null for any
+   */
+  public void setDifficulty(final Difficulty band)
+  {
+    level = band;
+  }
+  
+  
+  /**
+   * Set the seed for the random numbers.  Each thread uses its own
+   * seed based on this one, so with one thread the same seed always
+   * gives the same puzzles.
+   * 
+   * @param randomSeed the seed
+   */
+  public void setSeed(final long randomSeed)
+  {
+    seed = Long.valueOf(randomSeed);
+  }
+  
+  
+  /**
+   * Return the number of puzzles that were made and thrown away,
+   * because they were in the wrong band or had too many clues.
+   * 
+   * @return the number of puzzles thrown away
+   */
+  public long getRejectCount()
+  {
+    return rejectCount.get();
+  }
+  
+  
+  /**
+   * Generate puzzles and write them out, one per line.
+   * 
+   * @param count the number of puzzles to make
+   * @param out where to write the puzzles
+   * @throws IOException if the puzzles can't be written
+   * @throws IllegalStateException if a thread gives up on making
+   *         a puzzle that meets the clue target and band
+   */
+  public void generate(final long count, final Writer out) throws IOException
+  {
+    // The number of puzzles still to be started
+    final AtomicLong remaining = new AtomicLong(count);
+    final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+    final long baseSeed = ((seed == null) ? new Random().nextLong() : seed.longValue());
+    
+    // Start the threads
+    List<Thread> threads = new ArrayList<Thread>(threadCount);
+    for (int i = 0; i < threadCount; ++i)
+    {
+      final Worker worker = new Worker(new Random(baseSeed + i));
+      Thread thread = new Thread(new Runnable()
+      {
+        public void run()
+        {
+          try
+          {
+            while ((error.get() == null) && (remaining.getAndDecrement() > 0))
+            {
+              final String puzzle = worker.next();
+              synchronized (out)
+              {
+                out.write(puzzle);
+                out.write('\n');
+              }
+            }
+          }
+          catch (IOException ioe)
+          {
+            error.compareAndSet(null, ioe);
+          }
+          catch (RuntimeException re)
+          {
+            error.compareAndSet(null, re);
+          }
+        }
+      }, "puzzle-generator-" + i);
+      thread.start();
+      threads.add(thread);
+    }
+    
+    // Wait for the threads to finish
+    boolean interrupted = false;
+    for (Thread thread : threads)
+    {
+      while (thread.isAlive())
+      {
+        try
+        {
+          thread.join();
+        }
+        catch (InterruptedException ie)
+        {
+          interrupted = true;
+          error.compareAndSet(null, ie);
+        }
+      }
+    }
+    
+    if (interrupted)
+    {
+      Thread.currentThread().interrupt();
+    }
+    
+    // Report the first error
+    final Throwable cause = error.get();
+    if (cause instanceof IOException)
+    {
+      throw (IOException) cause;
+    }
+    else if (cause instanceof InterruptedException)
+    {
+      throw new IOException("Interrupted while generating puzzles");
+    }
+    else if (cause != null)
+    {
+      throw (RuntimeException) cause;
+    }
+  }
+  
+  
+  /**
+   * Print the usage message and exit.
+   */
+  private static void usage()
+  {
+    System.err.println("Usage: java -cp sudokustruggler.jar io.miti.sudoku.PuzzleGenerator"
+        + " [-threads n] [-clues n] [-level easy|medium|hard] [-seed n] count [output]");
+    System.err.println("The clue target must be 0 (as few as possible) or at least "
+        + MIN_CLUES + ", and the count can't be negative.");
+    System.exit(1);
+  }
+  
+  
+  /**
+   * Entry point to the puzzle generator.
+   * 
+   * @param args the command-line arguments
+   */
+  public static void main(final String[] args)
+  {
+    // Parse the arguments
+    int nThreads = Runtime.getRuntime().availableProcessors();
+    int nClues = 0;
+    Difficulty band = null;
+    String seedValue = null;
+    String countValue = null;
+    String outName = null;
+    for (int i = 0; i < args.length; ++i)
+    {
+      if ((args[i].equals("-threads")) && (i + 1 < args.length))
+      {
+        nThreads = Integer.parseInt(args[++i]);
+      }
+      else if ((args[i].equals("-clues")) && (i + 1 < args.length))
+      {
+        nClues = Integer.parseInt(args[++i]);
+        if ((nClues < 0) || ((nClues > 0) && (nClues < MIN_CLUES)))
+        {
+          usage();
+        }
+      }
+      else if ((args[i].equals("-level")) && (i + 1 < args.length))
+      {
+        band = Difficulty.getDifficulty(args[++i]);
+        if (band == null)
+        {
+          usage();
+        }
+      }
+      else if ((args[i].equals("-seed")) && (i + 1 < args.length))
+      {
+        seedValue = args[++i];
+      }
+      else if (countValue == null)
+      {
+        countValue = args[i];
+      }
+      else if (outName == null)
+      {
+        outName = args[i];
+      }
+      else
+      {
+        usage();
+      }
+    }
+    
+    if (countValue == null)
+    {
+      usage();
+    }
+    
+    // Generate the puzzles
+    final long count = Long.parseLong(countValue);
+    if (count < 0L)
+    {
+      usage();
+    }
+    
+    PuzzleGenerator generator = new PuzzleGenerator(nThreads);
+    generator.setClueTarget(nClues);
+    generator.setDifficulty(band);
+    if (seedValue != null)
+    {
+      generator.setSeed(Long.parseLong(seedValue));
+    }
+    
+    final long start = System.nanoTime();
+    Writer out = null;
+    try
+    {
+      out = new BufferedWriter(new OutputStreamWriter((outName == null)
+          ? System.out : new FileOutputStream(outName), StandardCharsets.US_ASCII));
+      generator.generate(count, out);
+      out.flush();
+      if (outName != null)
+      {
+        out.close();
+      }
+    }
+    catch (IOException ioe)
+    {
+      System.err.println("Error while generating: " + ioe.getMessage());
+      System.exit(1);
+    }
+    catch (IllegalStateException ise)
+    {
+      System.err.println("Error while generating: " + ise.getMessage());
+      System.exit(1);
+    }
+    
+    // Print a summary
+    final long elapsed = Math.max(1L, (System.nanoTime() - start) / 1000000L);
+    System.err.println("Generated " + count + " puzzles in " + elapsed + " ms ("
+        + ((count * 1000L) / elapsed) + " per second, "
+        + generator.getRejectCount() + " thrown away)");
+  }
+  
+  
+  /**
+   * The thread-local state of a generator thread.
+   */
+  private final class Worker
+  {
+    /**
+     * The source of random numbers.
+     */
+    private final Random random;
+    
+    /**
+     * The puzzle used to count solutions.
+     */
+    private final Sudoku counter = new Sudoku();
+    
+    /**
+     * The puzzle used to check for the easy band.
+     */
+    private final Sudoku singles = new Sudoku();
+    
+    /**
+     * The puzzle used to check for the medium band.
+     */
+    private final Sudoku logic = new Sudoku();
+    
+    /**
+     * The rater for finished puzzles.
+     */
+    private final DifficultyRater rater = new DifficultyRater();
+    
+    /**
+     * The cells of the complete grid.
+     */
+    private final int[] grid = new int[Geometry.NUM_CELLS];
+    
+    /**
+     * The cells of the puzzle being made.
+     */
+    private final int[] puzzle = new int[Geometry.NUM_CELLS];
+    
+    /**
+     * The order the clues are removed in.
+     */
+    private final int[] order = new int[Geometry.NUM_CELLS];
+    
+    /**
+     * The digits, shuffled to fill a block.
+     */
+    private final int[] digits = new int[SIZE];
+    
+    
+    /**
+     * Constructor.
+     * 
+     * @param source the source of random numbers
+     */
+    public Worker(final Random source)
+    {
+      random = source;
+      useOnly(counter, COUNT_STRATEGIES);
+      useOnly(singles, SINGLES);
+      for (int i = 0; i < Geometry.NUM_CELLS; ++i)
+      {
+        order[i] = i;
+      }
+      
+      for (int i = 0; i < SIZE; ++i)
+      {
+        digits[i] = i + 1;
+      }
+    }
+    
+    
+    /**
+     * Turn on only the listed strategies for a puzzle.
+     * 
+     * @param sudoku the puzzle
+     * @param strategies the strategies to use
+     */
+    private void useOnly(final Sudoku sudoku, final Strategy[] strategies)
+    {
+      for (Strategy strategy : Strategy.values())
+      {
+        sudoku.setStrategyEnabled(strategy, false);
+      }
+      
+      for (Strategy strategy : strategies)
+      {
+        sudoku.setStrategyEnabled(strategy, true);
+      }
+    }
+    
+    
+    /**
+     * Make the next puzzle.
+     * 
+     * @return the puzzle, as 81 digits
+     * @throws IllegalStateException if no puzzle meets the clue
+     *         target and band within MAX_TRIES tries
+     */
+    public String next()
+    {
+      for (int tries = 0; tries < MAX_TRIES; ++tries)
+      {
+        // Make a complete grid, then remove what clues we can
+        fillGrid();
+        System.arraycopy(grid, 0, puzzle, 0, Geometry.NUM_CELLS);
+        final int clues = removeClues();
+        
+        // Keep it if it has few enough clues and is in the band
+        if (((clueTarget == 0) || (clues <= clueTarget))
+            && ((level == null) || (rate() == level)))
+        {
+          StringBuilder sb = new StringBuilder(Geometry.NUM_CELLS);
+          for (int i = 0; i < Geometry.NUM_CELLS; ++i)
+          {
+            sb.append((char) ('0' + puzzle[i]));
+          }
+          
+          return sb.toString();
+        }
+        
+        rejectCount.incrementAndGet();
+      }
+      
+      throw new IllegalStateException("Gave up after " + MAX_TRIES
+          + " tries at a puzzle with " + clueTarget + " or fewer clues");
+    }
+    
+    
+    /**
+     * Fill the grid with a random complete solution.
+     */
+    private void fillGrid()
+    {
+      // The diagonal blocks are independent, so fill them at random
+      java.util.Arrays.fill(grid, 0);
+      for (int block = 0; block < SIZE; block += BLOCK_SIZE + 1)
+      {
+        shuffle(digits, digits.length);
+        final int first = (((block / BLOCK_SIZE) * BLOCK_SIZE) * SIZE)
+                          + ((block % BLOCK_SIZE) * BLOCK_SIZE);
+        for (int i = 0; i < SIZE; ++i)
+        {
+          grid[first + ((i / BLOCK_SIZE) * SIZE) + (i % BLOCK_SIZE)] = digits[i];
+        }
+      }
+      
+      // Let the search fill in the rest
+      counter.setMatrix(grid);
+      counter.solveWithGuess();
+      counter.getMatrix(grid);
+    }
+    
+    
+    /**
+     * Remove clues from the puzzle in a random order, keeping each
+     * removal only if the puzzle can still be solved in the band.
+     * 
+     * @return the number of clues left
+     */
+    private int removeClues()
+    {
+      int clues = Geometry.NUM_CELLS;
+      shuffle(order, order.length);
+      for (int i = 0; (i < order.length) && (clues > clueTarget); ++i)
+      {
+        final int location = order[i];
+        final int value = puzzle[location];
+        puzzle[location] = 0;
+        if (isSolvable())
+        {
+          --clues;
+        }
+        else
+        {
+          puzzle[location] = value;
+        }
+      }
+      
+      return clues;
+    }
+    
+    
+    /**
+     * Return whether the puzzle still has one solution that can be
+     * found within the band.  Any puzzle the deduction rules solve
+     * has only one solution, so the easier bands don't need to count.
+     * 
+     * @return whether the puzzle can be solved in the band
+     */
+    private boolean isSolvable()
+    {
+      if (level == Difficulty.EASY)
+      {
+        singles.setMatrix(puzzle);
+        return singles.solve();
+      }
+      else if (level == Difficulty.MEDIUM)
+      {
+        // Most of these are still easy, so try the cheap rules first
+        singles.setMatrix(puzzle);
+        if (singles.solve())
+        {
+          return true;
+        }
+        
+        logic.setMatrix(puzzle);
+        return logic.solve();
+      }
+      
+      counter.setMatrix(puzzle);
+      return (counter.countSolutions(2) == 1);
+    }
+    
+    
+    /**
+     * Return the difficulty band of the puzzle.
+     * 
+     * @return the difficulty of the puzzle
+     */
+    private Difficulty rate()
+    {
+      return rater.getDifficulty(puzzle);
+    }
+    
+    
+    /**
+     * Shuffle the start of an array.
+     * 
+     * @param array the array
+     * @param length the number of entries to shuffle
+     */
+    private void shuffle(final int[] array, final int length)
+    {
+      for (int i = length - 1; i > 0; --i)
+      {
+        final int j = random.nextInt(i + 1);
+        final int temp = array[i];
+        array[i] = array[j];
+        array[j] = temp;
+      }
+    }
+  }
+}
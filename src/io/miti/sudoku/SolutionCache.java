@@ -0,0 +1,391 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.sudoku;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded cache of puzzle solutions, shared by any number of
+ * threads.  The entries are split across segments by hash, each
+ * with its own lock and its own least-recently-used order, so
+ * threads working on different puzzles rarely wait on each other.
+ * 
+ * Puzzles are keyed by their packed grid.  If the cache is built
+ * to use canonical forms, equivalent puzzles (see Canonicalizer)
+ * share one entry, and the stored solution is mapped back to the
+ * layout of each puzzle.  Puzzles without a solution are cached
+ * too.
+ * 
+ * @author Mike Wallace (mwallace at pobox.com)
+ * @version 1.0
+ */
+public final class SolutionCache
+{
+  /**
+   * The value stored for a puzzle that has no solution.
+   */
+  private static final PackedGrid NO_SOLUTION = PackedGrid.pack(new int[Geometry.NUM_CELLS]);
+  
+  /**
+   * The most segments to split the cache into.
+   */
+  private static final int MAX_SEGMENTS = 64;
+  
+  /**
+   * The canonicalizer used by each thread.
+   */
+  private static final ThreadLocal<Canonicalizer> CANONICALIZER =
+    new ThreadLocal<Canonicalizer>()
+    {
+      @Override
+      protected Canonicalizer initialValue()
+      {
+        return new Canonicalizer();
+      }
+    };
+  
+  /**
+   * The segments.
+   */
+  private final Segment[] segments;
+  
+  /**
+   * Whether the keys are canonical forms.
+   */
+  private final boolean bCanonical;
+  
+  /**
+   * The number of lookups that found a solution.
+   */
+  private final AtomicLong hits = new AtomicLong(0L);
+  
+  /**
+   * The number of lookups that didn't.
+   */
+  private final AtomicLong misses = new AtomicLong(0L);
+  
+  /**
+   * The number of entries dropped to make room.
+   */
+  private final AtomicLong evictions = new AtomicLong(0L);
+  
+  
+  /**
+   * Constructor.
+   * 
+   * @param maxSize the most entries to keep
+   * @param canonical whether to key the entries by canonical form,
+   *        so equivalent puzzles share an entry
+   */
+  public SolutionCache(final int maxSize, final boolean canonical)
+  {
+    if (maxSize < 1)
+    {
+      throw new IllegalArgumentException("The cache size must be positive");
+    }
+    
+    // Use a power of two segments, each holding at least 16 entries
+    int count = 1;
+    while ((count < MAX_SEGMENTS) && (count * 32 <= maxSize))
+    {
+      count *= 2;
+    }
+    
+    segments = new Segment[count];
+    for (int i = 0; i < count; ++i)
+    {
+      final int share = (maxSize / count) + ((i < (maxSize % count)) ? 1 : 0);
+      segments[i] = new Segment(share);
+    }
+    
+    bCanonical = canonical;
+  }
+  
+  
+  /**
+   * Solve a puzzle in place, using the cached solution if there
+   * is one.  Otherwise the solver is called and its result cached.
+   * 
+   * @param puzzle the puzzle to solve
+   * @param solver the solver to call on a miss
+   * @return whether the puzzle was solved
+   */
+  public boolean solve(final Sudoku puzzle, final SudokuSolver solver)
+  {
+    return solve(puzzle, solver, null).isSolved();
+  }
+  
+  
+  /**
+   * Solve a puzzle in place within the given limits, using the
+   * cached solution if there is one.  Otherwise the solver is
+   * called, and its result is cached if the solve finished; a
+   * solve that was stopped early says nothing about the puzzle.
+   * 
+   * @param puzzle the puzzle to solve
+   * @param solver the solver to call on a miss
+   * @param options the limits on the solve, or null for none
+   * @return the result of the solve
+   */
+  public SolveResult solve(final Sudoku puzzle, final SudokuSolver solver,
+                           final SolveOptions options)
+  {
+    // Build the key
+    int[] grid = new int[Geometry.NUM_CELLS];
+    puzzle.getMatrix(grid);
+    final Canonicalizer canonicalizer = (bCanonical ? CANONICALIZER.get() : null);
+    if (canonicalizer != null)
+    {
+      canonicalizer.canonicalize(grid, grid);
+    }
+    final PackedGrid key = PackedGrid.pack(grid);
+    
+    // Check the cache
+    final Segment segment = segments[key.hashCode() & (segments.length - 1)];
+    PackedGrid solution = segment.get(key);
+    if (solution != null)
+    {
+      hits.incrementAndGet();
+      if (solution == NO_SOLUTION)
+      {
+        return new SolveResult(SolveStatus.FINISHED, false, 0L);
+      }
+      
+      // Map the solution back to the puzzle's layout
+      solution.unpack(grid);
+      if (canonicalizer != null)
+      {
+        int[] layout = new int[Geometry.NUM_CELLS];
+        canonicalizer.fromCanonical(grid, layout);
+        grid = layout;
+      }
+      
+      puzzle.setMatrix(grid);
+      return new SolveResult(SolveStatus.FINISHED, true, 0L);
+    }
+    
+    // Solve it, and cache the result if the solve finished
+    misses.incrementAndGet();
+    final SolveResult result = solver.solve(puzzle, options);
+    if (!result.isFinished())
+    {
+      return result;
+    }
+    
+    if (result.isSolved())
+    {
+      puzzle.getMatrix(grid);
+      if (canonicalizer != null)
+      {
+        int[] canonical = new int[Geometry.NUM_CELLS];
+        canonicalizer.toCanonical(grid, canonical);
+        grid = canonical;
+      }
+      
+      solution = PackedGrid.pack(grid);
+    }
+    else
+    {
+      solution = NO_SOLUTION;
+    }
+    
+    segment.put(key, solution);
+    return result;
+  }
+  
+  
+  /**
+   * Return the number of lookups that found a solution.
+   * 
+   * @return the number of hits
+   */
+  public long getHitCount()
+  {
+    return hits.get();
+  }
+  
+  
+  /**
+   * Return the number of lookups that didn't find a solution.
+   * 
+   * @return the number of misses
+   */
+  public long getMissCount()
+  {
+    return misses.get();
+  }
+  
+  
+  /**
+   * Return the number of entries dropped to make room.
+   * 
+   * @return the number of evictions
+   */
+  public long getEvictionCount()
+  {
+    return evictions.get();
+  }
+  
+  
+  /**
+   * Return the number of entries.
+   * 
+   * @return the number of entries
+   */
+  public int size()
+  {
+    int total = 0;
+    for (Segment segment : segments)
+    {
+      total += segment.size();
+    }
+    
+    return total;
+  }
+  
+  
+  /**
+   * Remove all entries.  The counters are not reset.
+   */
+  public void clear()
+  {
+    for (Segment segment : segments)
+    {
+      segment.clear();
+    }
+  }
+  
+  
+  /**
+   * Return a summary of the counters.
+   * 
+   * @return a summary of the counters
+   */
+  @Override
+  public String toString()
+  {
+    return "Cache: " + size() + " entries, " + getHitCount() + " hits, "
+        + getMissCount() + " misses, " + getEvictionCount() + " evictions";
+  }
+  
+  
+  /**
+   * One segment of the cache: a map in least-recently-used order,
+   * guarded by its own lock.
+   */
+  private final class Segment
+  {
+    /**
+     * The entries, in access order.
+     */
+    private final LinkedHashMap<PackedGrid, PackedGrid> map;
+    
+    
+    /**
+     * Constructor.
+     * 
+     * @param capacity the most entries to keep
+     */
+    public Segment(final int capacity)
+    {
+      map = new LinkedHashMap<PackedGrid, PackedGrid>(capacity * 4 / 3 + 1, 0.75f, true)
+      {
+        /**
+         * Default serial version ID.
+         */
+        private static final long serialVersionUID = 1L;
+        
+        
+        /**
+         * Drop the least recently used entry when the segment is full.
+         * 
+         * @param eldest the least recently used entry
+         * @return whether to remove it
+         */
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<PackedGrid, PackedGrid> eldest)
+        {
+          if (size() > capacity)
+          {
+            evictions.incrementAndGet();
+            return true;
+          }
+          
+          return false;
+        }
+      };
+    }
+    
+    
+    /**
+     * Look up a solution, marking it as recently used.
+     * 
+     * @param key the packed puzzle
+     * @return the packed solution, or null if it's not cached
+     */
+    public synchronized PackedGrid get(final PackedGrid key)
+    {
+      return map.get(key);
+    }
+    
+    
+    /**
+     * Add a solution.
+     * 
+     * @param key the packed puzzle
+     * @param value the packed solution
+     */
+    public synchronized void put(final PackedGrid key, final PackedGrid value)
+    {
+      map.put(key, value);
+    }
+    
+    
+    /**
+     * Return the number of entries.
+     * 
+     * @return the number of entries
+     */
+    public synchronized int size()
+    {
+      return map.size();
+    }
+    
+    
+    /**
+     * Remove all entries.
+     */
+    public synchronized void clear()
+    {
+      map.clear();
+    }
+  }
+}
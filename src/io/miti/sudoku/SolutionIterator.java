@@ -0,0 +1,212 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.sudoku;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * This class iterates over the solutions of a puzzle.  It runs the
+ * same search as Sudoku.solveWithGuess(), but keeps the search
+ * stack in arrays so it can stop after each solution and pick up
+ * where it left off.  Memory use is fixed, however many solutions
+ * there are.
+ * 
+ * @author Mike Wallace (mwallace at pobox.com)
+ * @version 1.0
+ */
+final class SolutionIterator implements Iterator<String>
+{
+  /**
+   * The maximum search depth (one guess per cell).
+   */
+  private static final int MAX_DEPTH = 81;
+  
+  /**
+   * The puzzle being searched.  This is a copy of the original.
+   */
+  private Sudoku puzzle = null;
+  
+  /**
+   * The cell guessed at each depth.
+   */
+  private int[] aiLocation = null;
+  
+  /**
+   * The size of the undo log before the guess at each depth.
+   */
+  private int[] aiMark = null;
+  
+  /**
+   * The values not yet tried at each depth, one bit per digit.
+   */
+  private int[] aiRemaining = null;
+  
+  /**
+   * The number of guesses on the search stack.
+   */
+  private int depth = 0;
+  
+  /**
+   * Whether the last change needs to be propagated.
+   */
+  private boolean bDescend = false;
+  
+  /**
+   * Whether the puzzle holds a solution that hasn't been returned.
+   */
+  private boolean bReady = false;
+  
+  /**
+   * Whether the search is finished.
+   */
+  private boolean bDone = false;
+  
+  
+  /**
+   * Constructor.
+   * 
+   * @param source the puzzle to solve
+   */
+  public SolutionIterator(final Sudoku source)
+  {
+    // Search a copy, so the original is left alone
+    puzzle = source.copy();
+    aiLocation = new int[MAX_DEPTH];
+    aiMark = new int[MAX_DEPTH];
+    aiRemaining = new int[MAX_DEPTH];
+    
+    // An invalid puzzle has no solutions
+    if (puzzle.isValid())
+    {
+      puzzle.initCandidates();
+      bDescend = true;
+    }
+    else
+    {
+      bDone = true;
+    }
+  }
+  
+  
+  /**
+   * Return whether there is another solution.
+   * 
+   * @return whether there is another solution
+   */
+  public boolean hasNext()
+  {
+    if ((!bReady) && (!bDone))
+    {
+      bReady = advance();
+      bDone = !bReady;
+    }
+    
+    return bReady;
+  }
+  
+  
+  /**
+   * Return the next solution.
+   * 
+   * @return the next solution, as a string of 81 digits
+   */
+  public String next()
+  {
+    if (!hasNext())
+    {
+      throw new NoSuchElementException("No more solutions");
+    }
+    
+    bReady = false;
+    return puzzle.getData();
+  }
+  
+  
+  /**
+   * Removing a solution is not supported.
+   */
+  public void remove()
+  {
+    throw new UnsupportedOperationException("remove");
+  }
+  
+  
+  /**
+   * Run the search until the puzzle holds the next solution.
+   * 
+   * @return whether a solution was found
+   */
+  private boolean advance()
+  {
+    while (true)
+    {
+      // Propagate the last guess, and guess again if needed
+      if (bDescend)
+      {
+        bDescend = false;
+        if (puzzle.propagate())
+        {
+          final int location = puzzle.getBranchCell();
+          if (location < 0)
+          {
+            // Every cell is filled in, so this is a solution
+            return true;
+          }
+          
+          // Push a new guess on the stack
+          aiLocation[depth] = location;
+          aiMark[depth] = puzzle.getTrailSize();
+          aiRemaining[depth] = puzzle.getCandidates(location);
+          ++depth;
+        }
+      }
+      
+      // Drop the guesses that have no values left to try
+      while ((depth > 0) && (aiRemaining[depth - 1] == 0))
+      {
+        --depth;
+      }
+      
+      // If the stack is empty, the search is over
+      if (depth == 0)
+      {
+        return false;
+      }
+      
+      // Undo back to the deepest guess and try its next value
+      final int top = depth - 1;
+      final int mask = aiRemaining[top] & -aiRemaining[top];
+      aiRemaining[top] ^= mask;
+      puzzle.undoTo(aiMark[top]);
+      puzzle.placeValue(aiLocation[top], Integer.numberOfTrailingZeros(mask) + 1);
+      bDescend = true;
+    }
+  }
+}
@@ -0,0 +1,750 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.sudoku;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * A persistent store of puzzle solutions, kept in a memory-mapped
+ * file so solved puzzles are found again after a restart.
+ * 
+ * The file is a header followed by a series of open-addressing
+ * hash tables, each twice the size of the one before.  Each slot
+ * holds a state byte, the packed puzzle and packed solution (41
+ * bytes each, as in the binary puzzle format) and a checksum.
+ * When the newest table fills up, a new one is appended; the
+ * older tables are never rewritten, and a lookup checks each
+ * table from the newest to the oldest.
+ * 
+ * A slot's contents are written before its state byte, and a
+ * slot is only used if its checksum matches, so a crash in the
+ * middle of a write leaves at most one unreadable slot.  Likewise
+ * a new table only becomes part of the store once the header
+ * records it.
+ * 
+ * Any number of threads (and processes) can read the store.  Only
+ * one process can write to it: the first to open the file takes an
+ * exclusive lock, and other processes open it read-only.  Within
+ * the writing process, writes are serialized.
+ * 
+ * @author Mike Wallace (mwallace at pobox.com)
+ * @version 1.0
+ */
+public final class SolutionStore implements Closeable
+{
+  /**
+   * The magic number at the start of the file ("SUDS").
+   */
+  private static final int MAGIC = 0x53554453;
+  
+  /**
+   * The file format version.
+   */
+  private static final int VERSION = 1;
+  
+  /**
+   * The most tables in a file.
+   */
+  private static final int MAX_TABLES = 24;
+  
+  /**
+   * The size of the header: magic, version and table count, then
+   * the entry count of each table.
+   */
+  private static final int HEADER_SIZE = 12 + 4 * MAX_TABLES;
+  
+  /**
+   * The number of slots in the first table.
+   */
+  private static final int FIRST_TABLE_SLOTS = 1 << 12;
+  
+  /**
+   * The most slots in one table, so it can be mapped in one buffer.
+   */
+  private static final int MAX_TABLE_SLOTS = 1 << 24;
+  
+  /**
+   * The size of a packed grid.
+   */
+  private static final int GRID_SIZE = BinaryFormat.PACKED_SIZE;
+  
+  /**
+   * The size of a slot: state, key, value, checksum and padding.
+   */
+  private static final int SLOT_SIZE = 88;
+  
+  /**
+   * The offset of the key in a slot.
+   */
+  private static final int KEY_OFFSET = 1;
+  
+  /**
+   * The offset of the value in a slot.
+   */
+  private static final int VALUE_OFFSET = KEY_OFFSET + GRID_SIZE;
+  
+  /**
+   * The offset of the checksum in a slot.
+   */
+  private static final int CRC_OFFSET = VALUE_OFFSET + GRID_SIZE;
+  
+  /**
+   * The state of a slot in use.
+   */
+  private static final byte FULL = 1;
+  
+  /**
+   * How full a table can get before a new one is added, in percent.
+   */
+  private static final int MAX_LOAD = 70;
+  
+  /**
+   * The open file.
+   */
+  private RandomAccessFile file = null;
+  
+  /**
+   * The file channel.
+   */
+  private FileChannel channel = null;
+  
+  /**
+   * The writer's lock on the file, or null if this is read-only.
+   */
+  private FileLock lock = null;
+  
+  /**
+   * The mapped header.
+   */
+  private MappedByteBuffer header = null;
+  
+  /**
+   * The mapped tables, oldest first.  The array is replaced, not
+   * changed, when a table is added.
+   */
+  private volatile MappedByteBuffer[] tables = new MappedByteBuffer[0];
+  
+  /**
+   * The number of lookups that found a solution.
+   */
+  private final AtomicLong hits = new AtomicLong(0L);
+  
+  /**
+   * The number of lookups that didn't.
+   */
+  private final AtomicLong misses = new AtomicLong(0L);
+  
+  
+  /**
+   * Open a store, creating the file if needed.  If another process
+   * is writing to the file, this opens it read-only.
+   * 
+   * @param storeFile the file
+   * @throws IOException if the file can't be opened, or is not a
+   *         solution store
+   */
+  public SolutionStore(final File storeFile) throws IOException
+  {
+    file = new RandomAccessFile(storeFile, "rw");
+    channel = file.getChannel();
+    
+    try
+    {
+      // Become the writer if no other process is
+      try
+      {
+        lock = channel.tryLock();
+      }
+      catch (OverlappingFileLockException ofle)
+      {
+        lock = null;
+      }
+      
+      // Set up a new file
+      final boolean isNew = (channel.size() < HEADER_SIZE);
+      if (isNew && (lock == null))
+      {
+        throw new IOException("The solution store is being created by another process");
+      }
+      
+      header = channel.map((lock == null) ? FileChannel.MapMode.READ_ONLY
+                           : FileChannel.MapMode.READ_WRITE, 0L, HEADER_SIZE);
+      if (isNew)
+      {
+        header.putInt(0, MAGIC);
+        header.putInt(4, VERSION);
+        header.putInt(8, 0);
+        addTable();
+      }
+      else if ((header.getInt(0) != MAGIC) || (header.getInt(4) != VERSION))
+      {
+        throw new IOException("Not a solution store");
+      }
+      
+      mapTables();
+    }
+    catch (IOException ioe)
+    {
+      close();
+      throw ioe;
+    }
+  }
+  
+  
+  /**
+   * Return whether this process can write to the store.
+   * 
+   * @return whether the store is writable
+   */
+  public boolean isWritable()
+  {
+    return (lock != null);
+  }
+  
+  
+  /**
+   * Solve a puzzle in place, using the stored solution if there is
+   * one.  Otherwise the solver is called, and a solution is stored
+   * if the store is writable.
+   * 
+   * @param puzzle the puzzle to solve
+   * @param solver the solver to call on a miss
+   * @return whether the puzzle was solved
+   */
+  public boolean solve(final Sudoku puzzle, final SudokuSolver solver)
+  {
+    return solve(puzzle, solver, null).isSolved();
+  }
+  
+  
+  /**
+   * Solve a puzzle in place within the given limits, using the
+   * stored solution if there is one.  Otherwise the solver is
+   * called, and a solution is stored if the store is writable.
+   * 
+   * @param puzzle the puzzle to solve
+   * @param solver the solver to call on a miss
+   * @param options the limits on the solve, or null for none
+   * @return the result of the solve
+   */
+  public SolveResult solve(final Sudoku puzzle, final SudokuSolver solver,
+                           final SolveOptions options)
+  {
+    // Pack the puzzle
+    int[] grid = new int[Geometry.NUM_CELLS];
+    puzzle.getMatrix(grid);
+    byte[] key = pack(grid);
+    
+    // Check the store
+    if (get(key, grid))
+    {
+      puzzle.setMatrix(grid);
+      return new SolveResult(SolveStatus.FINISHED, true, 0L);
+    }
+    
+    // Solve it, and store the solution
+    final SolveResult result = solver.solve(puzzle, options);
+    if (!result.isSolved())
+    {
+      return result;
+    }
+    
+    if (isWritable())
+    {
+      puzzle.getMatrix(grid);
+      try
+      {
+        putSlot(key, pack(grid));
+      }
+      catch (IOException ioe)
+      {
+        // The store is only a shortcut, so the puzzle is still solved
+        System.err.println("Error while storing a solution: " + ioe.getMessage());
+      }
+    }
+    
+    return result;
+  }
+  
+  
+  /**
+   * Look up the solution of a puzzle.
+   * 
+   * @param puzzle the 81 cell values of the puzzle
+   * @param solution the array to fill in with the solution
+   * @return whether the solution was found
+   */
+  public boolean get(final int[] puzzle, final int[] solution)
+  {
+    return get(pack(puzzle), solution);
+  }
+  
+  
+  /**
+   * Add the solution of a puzzle.  This does nothing if the store
+   * is read-only, or the puzzle is already stored.
+   * 
+   * @param puzzle the 81 cell values of the puzzle
+   * @param solution the 81 cell values of the solution
+   * @throws IOException if a new table can't be added
+   */
+  public void put(final int[] puzzle, final int[] solution) throws IOException
+  {
+    if (isWritable())
+    {
+      putSlot(pack(puzzle), pack(solution));
+    }
+  }
+  
+  
+  /**
+   * Return the number of stored solutions.
+   * 
+   * @return the number of stored solutions
+   */
+  public long size()
+  {
+    long total = 0L;
+    final int count = tables.length;
+    for (int i = 0; i < count; ++i)
+    {
+      total += header.getInt(12 + 4 * i);
+    }
+    
+    return total;
+  }
+  
+  
+  /**
+   * Return the number of lookups that found a solution.
+   * 
+   * @return the number of hits
+   */
+  public long getHitCount()
+  {
+    return hits.get();
+  }
+  
+  
+  /**
+   * Return the number of lookups that didn't find a solution.
+   * 
+   * @return the number of misses
+   */
+  public long getMissCount()
+  {
+    return misses.get();
+  }
+  
+  
+  /**
+   * Flush the changes to disk and close the file.
+   * 
+   * @throws IOException on a close error
+   */
+  public synchronized void close() throws IOException
+  {
+    if (file == null)
+    {
+      return;
+    }
+    
+    if (lock != null)
+    {
+      for (MappedByteBuffer table : tables)
+      {
+        table.force();
+      }
+      header.force();
+      lock.release();
+      lock = null;
+    }
+    
+    file.close();
+    file = null;
+    channel = null;
+  }
+  
+  
+  /**
+   * Return a summary of the store.
+   * 
+   * @return a summary of the store
+   */
+  @Override
+  public String toString()
+  {
+    return "Store: " + size() + " entries, " + getHitCount() + " hits, "
+        + getMissCount() + " misses";
+  }
+  
+  
+  /**
+   * Pack a grid into the bytes stored in a slot.
+   * 
+   * @param grid the 81 cell values
+   * @return the packed grid
+   */
+  private static byte[] pack(final int[] grid)
+  {
+    ByteBuffer buffer = ByteBuffer.allocate(GRID_SIZE);
+    BinaryFormat.encode(grid, 0, BinaryFormat.PACKED, buffer);
+    return buffer.array();
+  }
+  
+  
+  /**
+   * Return the hash of a packed key.
+   * 
+   * @param key the packed key
+   * @return the hash
+   */
+  private static long hash(final byte[] key)
+  {
+    long hash = 0xCBF29CE484222325L;
+    for (byte b : key)
+    {
+      hash = (hash ^ (b & 0xFF)) * 0x100000001B3L;
+    }
+    
+    return hash ^ (hash >>> 29);
+  }
+  
+  
+  /**
+   * Look up a packed key in each table, newest first.
+   * 
+   * @param key the packed key
+   * @param solution the array to fill in with the solution
+   * @return whether the key was found
+   */
+  private boolean get(final byte[] key, final int[] solution)
+  {
+    final long hash = hash(key);
+    boolean found = find(tables, key, hash, solution);
+    
+    // Another process may have added a table since they were mapped
+    if ((!found) && (lock == null) && (refreshTables()))
+    {
+      found = find(tables, key, hash, solution);
+    }
+    
+    if (found)
+    {
+      hits.incrementAndGet();
+    }
+    else
+    {
+      misses.incrementAndGet();
+    }
+    
+    return found;
+  }
+  
+  
+  /**
+   * Look up a packed key in the tables, newest first.
+   * 
+   * @param mapped the tables
+   * @param key the packed key
+   * @param hash the hash of the key
+   * @param solution the array to fill in with the solution, or null
+   * @return whether the key was found
+   */
+  private static boolean find(final MappedByteBuffer[] mapped,
+                              final byte[] key, final long hash,
+                              final int[] solution)
+  {
+    byte[] slot = new byte[SLOT_SIZE];
+    for (int t = mapped.length - 1; t >= 0; --t)
+    {
+      // Probe from the key's home slot to the first empty slot
+      final ByteBuffer table = mapped[t].duplicate();
+      final int mask = (table.capacity() / SLOT_SIZE) - 1;
+      for (int index = (int) hash & mask; ; index = (index + 1) & mask)
+      {
+        table.position(index * SLOT_SIZE);
+        table.get(slot);
+        if (slot[0] != FULL)
+        {
+          break;
+        }
+        
+        if (matches(slot, key) && isIntact(slot))
+        {
+          if (solution != null)
+          {
+            ByteBuffer value = ByteBuffer.wrap(slot, VALUE_OFFSET, GRID_SIZE);
+            try
+            {
+              BinaryFormat.decode(value, BinaryFormat.PACKED, solution);
+            }
+            catch (IOException ioe)
+            {
+              // Treat a bad value like a damaged slot
+              continue;
+            }
+          }
+          
+          return true;
+        }
+      }
+    }
+    
+    return false;
+  }
+  
+  
+  /**
+   * Return whether a slot holds a key.
+   * 
+   * @param slot the slot contents
+   * @param key the packed key
+   * @return whether the keys match
+   */
+  private static boolean matches(final byte[] slot, final byte[] key)
+  {
+    for (int i = 0; i < GRID_SIZE; ++i)
+    {
+      if (slot[KEY_OFFSET + i] != key[i])
+      {
+        return false;
+      }
+    }
+    
+    return true;
+  }
+  
+  
+  /**
+   * Return the checksum of a slot's key and value.
+   * 
+   * @param slot the slot contents
+   * @return the checksum
+   */
+  private static int checksum(final byte[] slot)
+  {
+    CRC32 crc = new CRC32();
+    crc.update(slot, KEY_OFFSET, 2 * GRID_SIZE);
+    return (int) crc.getValue();
+  }
+  
+  
+  /**
+   * Return whether a slot's checksum matches, so it wasn't cut off
+   * by a crash.
+   * 
+   * @param slot the slot contents
+   * @return whether the slot is intact
+   */
+  private static boolean isIntact(final byte[] slot)
+  {
+    return (ByteBuffer.wrap(slot).getInt(CRC_OFFSET) == checksum(slot));
+  }
+  
+  
+  /**
+   * Add a packed key and value to the newest table, adding a new
+   * table first if it's too full.
+   * 
+   * @param key the packed key
+   * @param value the packed value
+   * @throws IOException if a new table can't be added
+   */
+  private synchronized void putSlot(final byte[] key, final byte[] value)
+    throws IOException
+  {
+    final long hash = hash(key);
+    if ((file == null) || (find(tables, key, hash, null)))
+    {
+      return;
+    }
+    
+    // Add a table if the newest one is full
+    int newest = tables.length - 1;
+    int count = header.getInt(12 + 4 * newest);
+    if ((count + 1) * 100L > getTableSlots(newest) * (long) MAX_LOAD)
+    {
+      if (tables.length == MAX_TABLES)
+      {
+        return;
+      }
+      
+      addTable();
+      mapTables();
+      ++newest;
+      count = 0;
+    }
+    
+    // Build the slot
+    byte[] slot = new byte[SLOT_SIZE];
+    System.arraycopy(key, 0, slot, KEY_OFFSET, GRID_SIZE);
+    System.arraycopy(value, 0, slot, VALUE_OFFSET, GRID_SIZE);
+    ByteBuffer.wrap(slot).putInt(CRC_OFFSET, checksum(slot));
+    
+    // Use the first slot that's empty or was cut off by a crash
+    final ByteBuffer table = tables[newest].duplicate();
+    final int mask = getTableSlots(newest) - 1;
+    byte[] existing = new byte[SLOT_SIZE];
+    int index = (int) hash & mask;
+    while (table.get(index * SLOT_SIZE) == FULL)
+    {
+      table.position(index * SLOT_SIZE);
+      table.get(existing);
+      if (!isIntact(existing))
+      {
+        break;
+      }
+      
+      index = (index + 1) & mask;
+    }
+    
+    final int position = index * SLOT_SIZE;
+    
+    // Write the contents, then the state byte, then the count
+    table.position(position + 1);
+    table.put(slot, 1, SLOT_SIZE - 1);
+    table.put(position, FULL);
+    header.putInt(12 + 4 * newest, count + 1);
+  }
+  
+  
+  /**
+   * Append a new, empty table to the file, twice the size of the
+   * newest one.  The header's table count is updated last.
+   * 
+   * @throws IOException if the file can't be extended
+   */
+  private void addTable() throws IOException
+  {
+    final int count = header.getInt(8);
+    final long start = getTableOffset(count);
+    final int slots = getTableSlots(count);
+    
+    // Mapping past the end extends the file with zeros
+    MappedByteBuffer table = channel.map(FileChannel.MapMode.READ_WRITE,
+                                         start, (long) slots * SLOT_SIZE);
+    table.force();
+    
+    header.putInt(12 + 4 * count, 0);
+    header.putInt(8, count + 1);
+    header.force();
+  }
+  
+  
+  /**
+   * Map any tables recorded in the header that aren't mapped yet.
+   * 
+   * @throws IOException on a mapping error
+   */
+  private void mapTables() throws IOException
+  {
+    final int count = Math.min(header.getInt(8), MAX_TABLES);
+    final MappedByteBuffer[] current = tables;
+    if (count <= current.length)
+    {
+      return;
+    }
+    
+    MappedByteBuffer[] mapped = new MappedByteBuffer[count];
+    System.arraycopy(current, 0, mapped, 0, current.length);
+    for (int i = current.length; i < count; ++i)
+    {
+      mapped[i] = channel.map((lock == null) ? FileChannel.MapMode.READ_ONLY
+                              : FileChannel.MapMode.READ_WRITE,
+                              getTableOffset(i), (long) getTableSlots(i) * SLOT_SIZE);
+    }
+    
+    tables = mapped;
+  }
+  
+  
+  /**
+   * Map tables added by the writing process, if there are any.
+   * 
+   * @return whether any tables were added
+   */
+  private synchronized boolean refreshTables()
+  {
+    final int before = tables.length;
+    try
+    {
+      if (file != null)
+      {
+        mapTables();
+      }
+    }
+    catch (IOException ioe)
+    {
+      return false;
+    }
+    
+    return (tables.length > before);
+  }
+  
+  
+  /**
+   * Return the number of slots in a table.
+   * 
+   * @param index the index of the table
+   * @return the number of slots
+   */
+  private static int getTableSlots(final int index)
+  {
+    return Math.min(FIRST_TABLE_SLOTS << Math.min(index, 12), MAX_TABLE_SLOTS);
+  }
+  
+  
+  /**
+   * Return the position of a table in the file.
+   * 
+   * @param index the index of the table
+   * @return the position of the table
+   */
+  private static long getTableOffset(final int index)
+  {
+    long offset = HEADER_SIZE;
+    for (int i = 0; i < index; ++i)
+    {
+      offset += (long) getTableSlots(i) * SLOT_SIZE;
+    }
+    
+    return offset;
+  }
+}
@@ -0,0 +1,173 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.sudoku;
+
+/**
+ * The limits on a solve: a deadline, a maximum number of search
+ * nodes, and a cancellation token.  Each is optional; by default
+ * a solve runs until it finishes.  The search checks the limits
+ * as it goes, reading the clock only every few nodes, so the
+ * checks cost very little.
+ * 
+ * An instance can be shared by the solves it applies to, as long
+ * as it isn't changed while they run.
+ * 
+ * @author Mike Wallace (mwallace at pobox.com)
+ * @version 1.0
+ */
+public final class SolveOptions
+{
+  /**
+   * The deadline, from System.nanoTime().  Only used if bDeadline is set.
+   */
+  private long deadline = 0L;
+  
+  /**
+   * Whether there is a deadline.
+   */
+  private boolean bDeadline = false;
+  
+  /**
+   * The most search nodes to visit.
+   */
+  private long maxNodes = Long.MAX_VALUE;
+  
+  /**
+   * The cancellation token, or null.
+   */
+  private CancellationToken token = null;
+  
+  
+  /**
+   * Default constructor.  There are no limits.
+   */
+  public SolveOptions()
+  {
+    super();
+  }
+  
+  
+  /**
+   * Set the deadline to the given time from now.
+   * 
+   * @param millis the time allowed, in milliseconds
+   */
+  public void setTimeout(final long millis)
+  {
+    setDeadline(System.nanoTime() + (millis * 1000000L));
+  }
+  
+  
+  /**
+   * Set the deadline.
+   * 
+   * @param nanoTime the deadline, as a value of System.nanoTime()
+   */
+  public void setDeadline(final long nanoTime)
+  {
+    deadline = nanoTime;
+    bDeadline = true;
+  }
+  
+  
+  /**
+   * Remove the deadline.
+   */
+  public void clearDeadline()
+  {
+    bDeadline = false;
+  }
+  
+  
+  /**
+   * Return whether there is a deadline.
+   * 
+   * @return whether there is a deadline
+   */
+  public boolean hasDeadline()
+  {
+    return bDeadline;
+  }
+  
+  
+  /**
+   * Return the deadline.  Only meaningful if hasDeadline() is true.
+   * 
+   * @return the deadline, as a value of System.nanoTime()
+   */
+  public long getDeadline()
+  {
+    return deadline;
+  }
+  
+  
+  /**
+   * Set the most search nodes to visit.  Each node is one step of
+   * the search: one round of deductions after a guess.
+   * 
+   * @param nodes the most nodes to visit
+   */
+  public void setMaxNodes(final long nodes)
+  {
+    maxNodes = nodes;
+  }
+  
+  
+  /**
+   * Return the most search nodes to visit.
+   * 
+   * @return the most nodes to visit
+   */
+  public long getMaxNodes()
+  {
+    return maxNodes;
+  }
+  
+  
+  /**
+   * Set the cancellation token.
+   * 
+   * @param srcToken the token, or null for none
+   */
+  public void setCancellationToken(final CancellationToken srcToken)
+  {
+    token = srcToken;
+  }
+  
+  
+  /**
+   * Return the cancellation token.
+   * 
+   * @return the token, or null
+   */
+  public CancellationToken getCancellationToken()
+  {
+    return token;
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.sudoku;
+
+/**
+ * The outcome of a solve: how it ended, whether the puzzle was
+ * solved, and how much work was done.
+ * 
+ * @author Mike Wallace (mwallace at pobox.com)
+ * @version 1.0
+ */
+public final class SolveResult
+{
+  /**
+   * How the solve ended.
+   */
+  private final SolveStatus status;
+  
+  /**
+   * Whether the puzzle was solved.
+   */
+  private final boolean bSolved;
+  
+  /**
+   * The number of search nodes visited.
+   */
+  private final long nodeCount;
+  
+  
+  /**
+   * Constructor.
+   * 
+   * @param srcStatus how the solve ended
+   * @param solved whether the puzzle was solved
+   * @param nodes the number of search nodes visited
+   */
+  public SolveResult(final SolveStatus srcStatus, final boolean solved,
+                     final long nodes)
+  {
+    status = srcStatus;
+    bSolved = solved;
+    nodeCount = nodes;
+  }
+  
+  
+  /**
+   * Return how the solve ended.
+   * 
+   * @return how the solve ended
+   */
+  public SolveStatus getStatus()
+  {
+    return status;
+  }
+  
+  
+  /**
+   * Return whether the solve finished.  If it did, and the puzzle
+   * wasn't solved, the puzzle has no solution.
+   * 
+   * @return whether the solve finished
+   */
+  public boolean isFinished()
+  {
+    return (status == SolveStatus.FINISHED);
+  }
+  
+  
+  /**
+   * Return whether the puzzle was solved.
+   * 
+   * @return whether the puzzle was solved
+   */
+  public boolean isSolved()
+  {
+    return bSolved;
+  }
+  
+  
+  /**
+   * Return the number of search nodes visited.
+   * 
+   * @return the number of nodes
+   */
+  public long getNodeCount()
+  {
+    return nodeCount;
+  }
+  
+  
+  /**
+   * Return a description of the result.
+   * 
+   * @return a description of the result
+   */
+  @Override
+  public String toString()
+  {
+    return (bSolved ? "solved" : "not solved") + " (" + status
+           + ", " + nodeCount + " nodes)";
+  }
+}
@@ -0,0 +1,514 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.sudoku;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Solve puzzles over HTTP, without the GUI.  A puzzle is sent by
+ * POSTing its 81 cells to /solve, as digits with '0' or '.' for
+ * an empty cell; anything else in the body is ignored.  The reply
+ * is a JSON object with whether the puzzle is valid, whether it
+ * was solved, the solution, how the solve ended, the number of
+ * search nodes, and the solve time in microseconds.
+ * 
+ * Each request has a deadline, counted from when it arrives, and
+ * optionally a limit on the search nodes, so no puzzle can hold
+ * a solver thread for long.
+ * 
+ * Each request is handled on its own thread (a virtual thread on
+ * Java 21 and later), which only reads the request, waits, and
+ * writes the reply.  The solving is done by a fixed pool of
+ * threads, one per core, so slow clients never hold up solving.
+ * When the pool's queue is full, the request is turned away with
+ * a 503 rather than queued without bound.
+ * 
+ * @author Mike Wallace (mwallace at pobox.com)
+ * @version 1.0
+ */
+public final class SolveServer implements HttpHandler
+{
+  /**
+   * The default port.
+   */
+  private static final int DEFAULT_PORT = 8080;
+  
+  /**
+   * The default time allowed for each request, in milliseconds.
+   */
+  private static final long DEFAULT_TIMEOUT = 10000L;
+  
+  /**
+   * The path that puzzles are POSTed to.
+   */
+  private static final String PATH = "/solve";
+  
+  /**
+   * The most bytes read from a request body.
+   */
+  private static final int MAX_BODY_SIZE = 4096;
+  
+  /**
+   * The number of puzzles that can wait for a solver, per solver thread.
+   */
+  private static final int QUEUE_DEPTH = 64;
+  
+  /**
+   * How long to wait for requests in progress when stopping, in seconds.
+   */
+  private static final int STOP_SECONDS = 2;
+  
+  /**
+   * The HTTP server.
+   */
+  private HttpServer server = null;
+  
+  /**
+   * The threads that handle the requests.
+   */
+  private ExecutorService requestPool = null;
+  
+  /**
+   * The threads that solve the puzzles.
+   */
+  private ThreadPoolExecutor solverPool = null;
+  
+  /**
+   * The solver and puzzle for each solver thread.
+   */
+  private final ThreadLocal<Worker> workers;
+  
+  /**
+   * The time allowed for each request, in milliseconds, or 0 for no limit.
+   */
+  private long timeoutMillis = DEFAULT_TIMEOUT;
+  
+  /**
+   * The most search nodes for each puzzle.
+   */
+  private long maxNodes = Long.MAX_VALUE;
+  
+  
+  /**
+   * Constructor.
+   * 
+   * @param port the port to listen on
+   * @param nThreads the number of solver threads
+   * @param type the type of solver to use
+   * @throws IOException if the port can't be opened
+   */
+  public SolveServer(final int port, final int nThreads, final SolverType type)
+    throws IOException
+  {
+    final int threads = Math.max(1, nThreads);
+    workers = ThreadLocal.withInitial(() -> new Worker(type.createSolver()));
+    solverPool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                   new ArrayBlockingQueue<Runnable>(QUEUE_DEPTH * threads));
+    requestPool = createRequestPool();
+    
+    server = HttpServer.create(new InetSocketAddress(port), 0);
+    server.createContext(PATH, this);
+    server.setExecutor(requestPool);
+  }
+  
+  
+  /**
+   * Create the executor for the requests.  Virtual threads are
+   * used when the JVM has them; this is done by reflection so the
+   * code still builds and runs on older versions of Java.
+   * 
+   * @return the executor for the requests
+   */
+  private static ExecutorService createRequestPool()
+  {
+    try
+    {
+      final Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService) method.invoke(null);
+    }
+    catch (ReflectiveOperationException roe)
+    {
+      // Fall back to platform threads
+      return Executors.newCachedThreadPool();
+    }
+  }
+  
+  
+  /**
+   * Set the time allowed for each request, counted from when it
+   * arrives.  This must be called before start.
+   * 
+   * @param millis the time allowed, in milliseconds, or 0 for no limit
+   */
+  public void setTimeout(final long millis)
+  {
+    timeoutMillis = millis;
+  }
+  
+  
+  /**
+   * Set the most search nodes for each puzzle.  This must be
+   * called before start.
+   * 
+   * @param nodes the most nodes to visit
+   */
+  public void setMaxNodes(final long nodes)
+  {
+    maxNodes = nodes;
+  }
+  
+  
+  /**
+   * Start accepting requests.
+   */
+  public void start()
+  {
+    server.start();
+  }
+  
+  
+  /**
+   * Stop accepting requests, and shut down the threads.
+   */
+  public void stop()
+  {
+    server.stop(STOP_SECONDS);
+    requestPool.shutdown();
+    solverPool.shutdown();
+  }
+  
+  
+  /**
+   * Return the port the server is listening on.
+   * 
+   * @return the port
+   */
+  public int getPort()
+  {
+    return server.getAddress().getPort();
+  }
+  
+  
+  /**
+   * Handle a request.
+   * 
+   * @param exchange the request and response
+   * @throws IOException if the request can't be read or answered
+   */
+  @Override
+  public void handle(final HttpExchange exchange) throws IOException
+  {
+    // Set the limits now, so time spent waiting for a solver counts
+    final SolveOptions options = new SolveOptions();
+    options.setMaxNodes(maxNodes);
+    if (timeoutMillis > 0L)
+    {
+      options.setTimeout(timeoutMillis);
+    }
+    
+    try
+    {
+      // Only accept puzzles sent by POST
+      if (!exchange.getRequestMethod().equalsIgnoreCase("POST"))
+      {
+        exchange.getResponseHeaders().set("Allow", "POST");
+        reply(exchange, 405, error("use POST"));
+        return;
+      }
+      
+      // Read the puzzle
+      final String cells = parseCells(exchange.getRequestBody());
+      if (cells == null)
+      {
+        reply(exchange, 400, error("expected 81 cells"));
+        return;
+      }
+      
+      // Solve it on the solver pool, and wait for the answer
+      final Future<String> result;
+      try
+      {
+        result = solverPool.submit(() -> workers.get().solve(cells, options));
+      }
+      catch (RejectedExecutionException ree)
+      {
+        reply(exchange, 503, error("too busy"));
+        return;
+      }
+      
+      reply(exchange, 200, result.get());
+    }
+    catch (InterruptedException ie)
+    {
+      Thread.currentThread().interrupt();
+      reply(exchange, 503, error("interrupted"));
+    }
+    catch (ExecutionException ee)
+    {
+      // Keep the details on the server, out of the reply
+      System.err.println("Error while solving:");
+      ee.getCause().printStackTrace();
+      reply(exchange, 500, error("internal error"));
+    }
+    finally
+    {
+      exchange.close();
+    }
+  }
+  
+  
+  /**
+   * Read the cells of a puzzle from a request body.  Digits are
+   * cells, and '.' is an empty cell; everything else is skipped.
+   * 
+   * @param in the request body
+   * @return the 81 cells, or null if there aren't exactly 81
+   * @throws IOException if the body can't be read
+   */
+  private static String parseCells(final InputStream in) throws IOException
+  {
+    final char[] cells = new char[Geometry.NUM_CELLS];
+    int count = 0;
+    final byte[] buffer = new byte[MAX_BODY_SIZE];
+    int total = 0;
+    int len;
+    while ((total < MAX_BODY_SIZE)
+           && ((len = in.read(buffer, 0, MAX_BODY_SIZE - total)) > 0))
+    {
+      total += len;
+      for (int i = 0; i < len; ++i)
+      {
+        final byte ch = buffer[i];
+        if ((ch == '.') || ((ch >= '0') && (ch <= '9')))
+        {
+          if (count == cells.length)
+          {
+            // Too many cells
+            return null;
+          }
+          
+          cells[count++] = ((ch == '.') ? '0' : (char) ch);
+        }
+      }
+    }
+    
+    return ((count == cells.length) ? new String(cells) : null);
+  }
+  
+  
+  /**
+   * Send a JSON reply.
+   * 
+   * @param exchange the request and response
+   * @param status the HTTP status code
+   * @param json the body of the reply
+   * @throws IOException if the reply can't be sent
+   */
+  private static void reply(final HttpExchange exchange, final int status,
+                            final String json) throws IOException
+  {
+    final byte[] body = json.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "application/json");
+    exchange.sendResponseHeaders(status, body.length);
+    final OutputStream out = exchange.getResponseBody();
+    out.write(body);
+    out.close();
+  }
+  
+  
+  /**
+   * Return the JSON reply for an error.  Quotes and backslashes
+   * in the message are replaced, so it never needs escaping.
+   * 
+   * @param message the error message
+   * @return the JSON reply
+   */
+  private static String error(final String message)
+  {
+    return "{\"error\":\"" + message.replace('"', '\'').replace('\\', '/') + "\"}";
+  }
+  
+  
+  /**
+   * Write the usage statement and exit.
+   */
+  private static void usage()
+  {
+    System.err.println("Usage: java -cp sudokustruggler.jar io.miti.sudoku.SolveServer"
+        + " [-port n] [-threads n] [-solver logic|dlx|parallel] [-timeout ms] [-nodes n]");
+    System.exit(1);
+  }
+  
+  
+  /**
+   * Entry point to the solve server.
+   * 
+   * @param args the command-line arguments
+   */
+  public static void main(final String[] args)
+  {
+    // Parse the arguments
+    int port = DEFAULT_PORT;
+    int nThreads = Runtime.getRuntime().availableProcessors();
+    SolverType type = SolverType.LOGIC;
+    long timeout = DEFAULT_TIMEOUT;
+    long nodes = Long.MAX_VALUE;
+    for (int i = 0; i < args.length; ++i)
+    {
+      if ((args[i].equals("-port")) && (i + 1 < args.length))
+      {
+        port = Integer.parseInt(args[++i]);
+      }
+      else if ((args[i].equals("-threads")) && (i + 1 < args.length))
+      {
+        nThreads = Integer.parseInt(args[++i]);
+      }
+      else if ((args[i].equals("-solver")) && (i + 1 < args.length))
+      {
+        type = SolverType.getSolverType(args[++i]);
+      }
+      else if ((args[i].equals("-timeout")) && (i + 1 < args.length))
+      {
+        timeout = Long.parseLong(args[++i]);
+      }
+      else if ((args[i].equals("-nodes")) && (i + 1 < args.length))
+      {
+        nodes = Long.parseLong(args[++i]);
+      }
+      else
+      {
+        usage();
+      }
+    }
+    
+    // Start the server, and stop it cleanly on exit
+    try
+    {
+      final SolveServer solveServer = new SolveServer(port, nThreads, type);
+      solveServer.setTimeout(timeout);
+      solveServer.setMaxNodes(nodes);
+      Runtime.getRuntime().addShutdownHook(new Thread(solveServer::stop));
+      solveServer.start();
+      System.err.println("Listening on port " + solveServer.getPort()
+          + " with " + nThreads + " solver threads");
+    }
+    catch (IOException ioe)
+    {
+      System.err.println("Unable to start the server: " + ioe.getMessage());
+      System.exit(1);
+    }
+  }
+  
+  
+  /**
+   * The state of a solver thread.
+   */
+  private static final class Worker
+  {
+    /**
+     * The solver.
+     */
+    private final SudokuSolver solver;
+    
+    /**
+     * The puzzle being solved.
+     */
+    private final Sudoku puzzle = new Sudoku();
+    
+    /**
+     * Used to build the reply.
+     */
+    private final StringBuilder json = new StringBuilder(160);
+    
+    
+    /**
+     * Constructor.
+     * 
+     * @param srcSolver the solver
+     */
+    public Worker(final SudokuSolver srcSolver)
+    {
+      solver = srcSolver;
+    }
+    
+    
+    /**
+     * Solve a puzzle and return the JSON reply.
+     * 
+     * @param cells the 81 cells of the puzzle
+     * @param options the limits on the solve
+     * @return the JSON reply
+     */
+    public String solve(final String cells, final SolveOptions options)
+    {
+      final long start = System.nanoTime();
+      puzzle.setData(cells);
+      final boolean valid = puzzle.isValid();
+      final SolveResult result = (valid ? solver.solve(puzzle, options)
+                                  : new SolveResult(SolveStatus.FINISHED, false, 0L));
+      final boolean solved = result.isSolved();
+      final long micros = (System.nanoTime() - start) / 1000L;
+      
+      json.setLength(0);
+      json.append("{\"valid\":").append(valid)
+          .append(",\"solved\":").append(solved)
+          .append(",\"status\":\"").append(result.getStatus()).append('"')
+          .append(",\"nodes\":").append(result.getNodeCount())
+          .append(",\"solution\":");
+      if (solved)
+      {
+        json.append('"').append(puzzle.getData()).append('"');
+      }
+      else
+      {
+        json.append("null");
+      }
+      
+      json.append(",\"micros\":").append(micros).append('}');
+      return json.toString();
+    }
+  }
+}
@@ -0,0 +1,331 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.sudoku;
+
+import java.util.Arrays;
+
+/**
+ * Counts of the work done by the solver: the time spent, the
+ * propagation passes, the progress made by each strategy, and the
+ * shape of the search.  Attach an instance to a puzzle with
+ * Sudoku.setStatistics() before solving it; without one, nothing
+ * is counted.
+ * 
+ * The counts add up over every solve until reset() is called, so
+ * one instance can total a whole batch.  An instance is not
+ * thread-safe.
+ * 
+ * @author Mike Wallace (mwallace at pobox.com)
+ * @version 1.0
+ */
+public final class SolveStatistics
+{
+  /**
+   * The strategies, in order.
+   */
+  private static final Strategy[] STRATEGIES = Strategy.values();
+  
+  /**
+   * The number of solves.
+   */
+  private long solveCount = 0L;
+  
+  /**
+   * The total time spent solving, in nanoseconds.
+   */
+  private long wallNanos = 0L;
+  
+  /**
+   * The number of passes through the propagation loop.
+   */
+  private long passCount = 0L;
+  
+  /**
+   * The progress made by each strategy, indexed by ordinal.
+   */
+  private final long[] alSteps = new long[STRATEGIES.length];
+  
+  /**
+   * The number of guesses made by the search.
+   */
+  private long guessCount = 0L;
+  
+  /**
+   * The number of guesses that were undone.
+   */
+  private long backtrackCount = 0L;
+  
+  /**
+   * The number of guesses on the current search path.
+   */
+  private int depth = 0;
+  
+  /**
+   * The most guesses on any search path.
+   */
+  private int maxDepth = 0;
+  
+  
+  /**
+   * Default constructor.
+   */
+  public SolveStatistics()
+  {
+    super();
+  }
+  
+  
+  /**
+   * Set all of the counts back to zero.
+   */
+  public void reset()
+  {
+    solveCount = 0L;
+    wallNanos = 0L;
+    passCount = 0L;
+    Arrays.fill(alSteps, 0L);
+    guessCount = 0L;
+    backtrackCount = 0L;
+    depth = 0;
+    maxDepth = 0;
+  }
+  
+  
+  /**
+   * Record a finished solve.
+   * 
+   * @param nanos the time it took, in nanoseconds
+   */
+  void addSolve(final long nanos)
+  {
+    ++solveCount;
+    wallNanos += nanos;
+    depth = 0;
+  }
+  
+  
+  /**
+   * Record a pass through the propagation loop.
+   */
+  void addPass()
+  {
+    ++passCount;
+  }
+  
+  
+  /**
+   * Record progress by a strategy: a value placed by one of the
+   * single rules, or candidates removed by one of the others.
+   * 
+   * @param strategy the strategy
+   */
+  void addStep(final Strategy strategy)
+  {
+    ++alSteps[strategy.ordinal()];
+  }
+  
+  
+  /**
+   * Record a guess, one level deeper than the last.
+   */
+  void addGuess()
+  {
+    ++guessCount;
+    if (++depth > maxDepth)
+    {
+      maxDepth = depth;
+    }
+  }
+  
+  
+  /**
+   * Record that the last guess was undone.
+   */
+  void addBacktrack()
+  {
+    ++backtrackCount;
+    --depth;
+  }
+  
+  
+  /**
+   * Add the counts from a part of the search that was done
+   * separately, such as a branch of the parallel search.
+   * 
+   * @param other the counts to add
+   * @param depthOffset the number of guesses made before the part began
+   */
+  void add(final SolveStatistics other, final int depthOffset)
+  {
+    passCount += other.passCount;
+    for (int i = 0; i < alSteps.length; ++i)
+    {
+      alSteps[i] += other.alSteps[i];
+    }
+    
+    guessCount += other.guessCount;
+    backtrackCount += other.backtrackCount;
+    maxDepth = Math.max(maxDepth, other.maxDepth + depthOffset);
+  }
+  
+  
+  /**
+   * Add all of the counts from another instance, such as the
+   * counts from another thread.
+   * 
+   * @param other the counts to add
+   */
+  public void add(final SolveStatistics other)
+  {
+    add(other, 0);
+    solveCount += other.solveCount;
+    wallNanos += other.wallNanos;
+  }
+  
+  
+  /**
+   * Return the number of solves.
+   * 
+   * @return the number of solves
+   */
+  public long getSolveCount()
+  {
+    return solveCount;
+  }
+  
+  
+  /**
+   * Return the total time spent solving.
+   * 
+   * @return the time, in nanoseconds
+   */
+  public long getWallNanos()
+  {
+    return wallNanos;
+  }
+  
+  
+  /**
+   * Return the number of passes through the propagation loop.
+   * 
+   * @return the number of passes
+   */
+  public long getPassCount()
+  {
+    return passCount;
+  }
+  
+  
+  /**
+   * Return the progress made by a strategy: for the single rules,
+   * the number of values placed; for the others, the number of
+   * times the rule removed candidates.
+   * 
+   * @param strategy the strategy
+   * @return the number of steps
+   */
+  public long getSteps(final Strategy strategy)
+  {
+    return alSteps[strategy.ordinal()];
+  }
+  
+  
+  /**
+   * Return the number of guesses made by the search.
+   * 
+   * @return the number of guesses
+   */
+  public long getGuessCount()
+  {
+    return guessCount;
+  }
+  
+  
+  /**
+   * Return the number of guesses that were undone.
+   * 
+   * @return the number of backtracks
+   */
+  public long getBacktrackCount()
+  {
+    return backtrackCount;
+  }
+  
+  
+  /**
+   * Return the most guesses on any search path.
+   * 
+   * @return the maximum search depth
+   */
+  public int getMaxDepth()
+  {
+    return maxDepth;
+  }
+  
+  
+  /**
+   * Return a one-line summary of the search.
+   * 
+   * @return a summary of the search
+   */
+  public String getSummary()
+  {
+    return guessCount + " guesses, " + backtrackCount + " backtracks, depth "
+           + maxDepth + ", " + passCount + " passes";
+  }
+  
+  
+  /**
+   * Return all of the counts, one per line.  Strategies that made
+   * no progress are left out.
+   * 
+   * @return the counts
+   */
+  @Override
+  public String toString()
+  {
+    StringBuilder sb = new StringBuilder(400);
+    sb.append("Solves: ").append(solveCount).append('\n');
+    sb.append("Time: ").append(wallNanos / 1000L).append(" us\n");
+    sb.append("Propagation passes: ").append(passCount).append('\n');
+    for (Strategy strategy : STRATEGIES)
+    {
+      final long steps = alSteps[strategy.ordinal()];
+      if (steps > 0L)
+      {
+        sb.append(strategy).append(": ").append(steps).append('\n');
+      }
+    }
+    
+    sb.append("Guesses: ").append(guessCount).append('\n');
+    sb.append("Backtracks: ").append(backtrackCount).append('\n');
+    sb.append("Maximum depth: ").append(maxDepth);
+    return sb.toString();
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.sudoku;
+
+/**
+ * The hooks that record Java Flight Recorder events for the solver:
+ * one for each solve, each round of propagation, and each guess.
+ * 
+ * This is the Java 8 version, which records nothing; the calls
+ * are empty, so they cost nothing once inlined.  The jar also has
+ * a Java 11 version of this class (built from the src11 folder),
+ * which records the events whenever a recording has them turned on.
+ * 
+ * Each begin method returns a handle to pass to the matching end
+ * method, or null if the event isn't being recorded.
+ * 
+ * @author Mike Wallace (mwallace at pobox.com)
+ * @version 1.0
+ */
+final class SolverEvents
+{
+  /**
+   * Default constructor.  Not used.
+   */
+  private SolverEvents()
+  {
+    super();
+  }
+  
+  
+  /**
+   * Start timing a solve.
+   * 
+   * @param puzzle the puzzle, before it's solved
+   * @return the event handle, or null
+   */
+  static Object beginSolve(final Sudoku puzzle)
+  {
+    return null;
+  }
+  
+  
+  /**
+   * Finish timing a solve.
+   * 
+   * @param event the event handle, or null
+   * @param result the result of the solve
+   */
+  static void endSolve(final Object event, final SolveResult result)
+  {
+    // Nothing to record
+  }
+  
+  
+  /**
+   * Start timing a round of propagation.
+   * 
+   * @param puzzle the puzzle
+   * @return the event handle, or null
+   */
+  static Object beginPropagate(final Sudoku puzzle)
+  {
+    return null;
+  }
+  
+  
+  /**
+   * Finish timing a round of propagation.
+   * 
+   * @param event the event handle, or null
+   * @param puzzle the puzzle
+   * @param consistent false if the round reached a dead end
+   */
+  static void endPropagate(final Object event, final Sudoku puzzle,
+                           final boolean consistent)
+  {
+    // Nothing to record
+  }
+  
+  
+  /**
+   * Start timing a guess, and the search below it.
+   * 
+   * @param location the cell guessed
+   * @param value the value guessed
+   * @return the event handle, or null
+   */
+  static Object beginGuess(final int location, final int value)
+  {
+    return null;
+  }
+  
+  
+  /**
+   * Finish timing a guess.
+   * 
+   * @param event the event handle, or null
+   * @param solved whether the guess led to a solution
+   */
+  static void endGuess(final Object event, final boolean solved)
+  {
+    // Nothing to record
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.sudoku;
+
+/**
+ * This enumerates the available solvers.
+ * 
+ * @author Mike Wallace (mwallace at pobox.com)
+ * @version 1.0
+ */
+public enum SolverType
+{
+  /**
+   * The rule-based solver in the Sudoku class.
+   */
+  LOGIC
+  {
+    public SudokuSolver createSolver()
+    {
+      return new LogicSolver();
+    }
+  },
+  
+  /**
+   * The Dancing Links exact-cover solver.
+   */
+  DLX
+  {
+    public SudokuSolver createSolver()
+    {
+      return new DlxSolver();
+    }
+  },
+  
+  /**
+   * The rule-based solver, with the search split across cores.
+   */
+  PARALLEL
+  {
+    public SudokuSolver createSolver()
+    {
+      return new ParallelSolver();
+    }
+  };
+  
+  
+  /**
+   * Create a new instance of this solver.  Solvers are not
+   * thread-safe, so each thread needs its own instance.
+   * 
+   * @return a new solver
+   */
+  public abstract SudokuSolver createSolver();
+  
+  
+  /**
+   * Return the solver type with the specified name, ignoring case.
+   * 
+   * @param name the name of the solver
+   * @return the matching solver type, or LOGIC if there is no match
+   */
+  public static SolverType getSolverType(final String name)
+  {
+    // Check the input
+    if (name == null)
+    {
+      return LOGIC;
+    }
+    
+    // Look for a match
+    for (SolverType type : values())
+    {
+      if (type.name().equalsIgnoreCase(name.trim()))
+      {
+        return type;
+      }
+    }
+    
+    // The default is the logic solver
+    return LOGIC;
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.sudoku;
+
+/**
+ * A solver that checks a persistent solution store before calling
+ * another solver, and stores the solutions it finds.
+ * 
+ * @author Mike Wallace (mwallace at pobox.com)
+ * @version 1.0
+ */
+public final class StoredSolver implements SudokuSolver
+{
+  /**
+   * The solver called when the store doesn't have the solution.
+   */
+  private SudokuSolver solver = null;
+  
+  /**
+   * The store.
+   */
+  private SolutionStore store = null;
+  
+  
+  /**
+   * Constructor.
+   * 
+   * @param srcSolver the solver called when the store doesn't have
+   *        the solution
+   * @param srcStore the store
+   */
+  public StoredSolver(final SudokuSolver srcSolver, final SolutionStore srcStore)
+  {
+    solver = srcSolver;
+    store = srcStore;
+  }
+  
+  
+  /**
+   * Solve the puzzle in place.
+   * 
+   * @param puzzle the puzzle to solve
+   * @return whether the puzzle was solved
+   */
+  public boolean solve(final Sudoku puzzle)
+  {
+    return store.solve(puzzle, solver);
+  }
+  
+  
+  /**
+   * Solve the puzzle in place, within the given limits.
+   * 
+   * @param puzzle the puzzle to solve
+   * @param options the limits on the solve, or null for none
+   * @return the result of the solve
+   */
+  public SolveResult solve(final Sudoku puzzle, final SolveOptions options)
+  {
+    return store.solve(puzzle, solver, options);
+  }
+  
+  
+  /**
+   * Return the name of this solver.
+   * 
+   * @return the name of this solver
+   */
+  public String getName()
+  {
+    return "stored " + solver.getName();
+  }
+}
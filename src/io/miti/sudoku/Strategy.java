@@ -0,0 +1,149 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.sudoku;
+
+/**
+ * This enumerates the deduction rules used by the Sudoku class,
+ * in order of increasing cost.  Each one can be turned on or off.
+ * 
+ * @author Mike Wallace (mwallace at pobox.com)
+ * @version 1.0
+ */
+public enum Strategy
+{
+  /**
+   * A cell with only one candidate.
+   */
+  NAKED_SINGLE("Naked single"),
+  
+  /**
+   * A digit with only one possible cell in a row.
+   */
+  HIDDEN_SINGLE_ROW("Hidden single (row)"),
+  
+  /**
+   * A digit with only one possible cell in a column.
+   */
+  HIDDEN_SINGLE_COLUMN("Hidden single (column)"),
+  
+  /**
+   * A digit with only one possible cell in a block.
+   */
+  HIDDEN_SINGLE_BLOCK("Hidden single (block)"),
+  
+  /**
+   * A digit confined to one row or column of a block, so it
+   * can be removed from the rest of that row or column.
+   */
+  POINTING("Pointing pair/triple"),
+  
+  /**
+   * A digit confined to one block within a row or column, so it
+   * can be removed from the rest of that block.
+   */
+  CLAIMING("Box-line reduction"),
+  
+  /**
+   * Two cells in a unit with the same two candidates.
+   */
+  NAKED_PAIR("Naked pair"),
+  
+  /**
+   * Two digits confined to the same two cells of a unit.
+   */
+  HIDDEN_PAIR("Hidden pair"),
+  
+  /**
+   * Three cells in a unit with only three candidates between them.
+   */
+  NAKED_TRIPLE("Naked triple"),
+  
+  /**
+   * Three digits confined to the same three cells of a unit.
+   */
+  HIDDEN_TRIPLE("Hidden triple"),
+  
+  /**
+   * A digit whose cells in two rows (or columns) are in the
+   * same two columns (or rows).
+   */
+  X_WING("X-Wing"),
+  
+  /**
+   * A digit whose cells in three rows (or columns) are in the
+   * same three columns (or rows).
+   */
+  SWORDFISH("Swordfish"),
+  
+  /**
+   * A digit whose cells in four rows (or columns) are in the
+   * same four columns (or rows).
+   */
+  JELLYFISH("Jellyfish");
+  
+  
+  /**
+   * The description of the strategy.
+   */
+  private String description = null;
+  
+  
+  /**
+   * Constructor.
+   * 
+   * @param desc the description of the strategy
+   */
+  private Strategy(final String desc)
+  {
+    description = desc;
+  }
+  
+  
+  /**
+   * Return the bit for this strategy in a set of strategies.
+   * 
+   * @return the bit mask for this strategy
+   */
+  int getMask()
+  {
+    return (1 << ordinal());
+  }
+  
+  
+  /**
+   * Return the description of the strategy.
+   * 
+   * @return the description of the strategy
+   */
+  @Override
+  public String toString()
+  {
+    return description;
+  }
+}
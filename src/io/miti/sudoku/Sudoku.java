@@ -28,9 +28,12 @@
 
 package io.miti.sudoku;
 
-import java.util.List;
-import java.util.ArrayList;
-import java.awt.Point;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * This class encapsulates a Sudoku puzzle.
@@ -55,11 +58,195 @@ public final class Sudoku
    */
   private static final int NUM_CELLS = 81;
   
+  /**
+   * The size of the undo log.  Each cell can lose candidates at
+   * most nine times and be solved once.
+   */
+  private static final int TRAIL_SIZE = NUM_CELLS * 10;
+  
+  /**
+   * The flag in a trail entry that marks the cell as solved by
+   * the change.
+   */
+  private static final int TRAIL_PLACED = 0x80;
+  
+  /**
+   * The bit mask with all 27 units set.
+   */
+  private static final int ALL_UNITS = (1 << 27) - 1;
+  
+  /**
+   * The bit mask with all nine digits set.  Digit N is stored
+   * in bit (N - 1).
+   */
+  private static final int ALL_DIGITS = 0x1FF;
+  
+  /**
+   * The cancellation token and deadline are checked once every
+   * this many search nodes.
+   */
+  private static final long CHECK_INTERVAL = 256L;
+  
+  /**
+   * The cancellation token and deadline are checked once every
+   * this many propagation passes, plus one.
+   */
+  private static final int CHECK_MASK = 0xFF;
+  
   /**
    * The puzzle data.
    */
   private int[] aiMatrix = null;
   
+  /**
+   * The digits placed in each row, one bit per digit.
+   */
+  private int[] aiRowMasks = null;
+  
+  /**
+   * The digits placed in each column, one bit per digit.
+   */
+  private int[] aiColumnMasks = null;
+  
+  /**
+   * The digits placed in each block, one bit per digit.
+   */
+  private int[] aiBlockMasks = null;
+  
+  /**
+   * The digits still possible for each unsolved cell, one bit
+   * per digit.  Solved cells have no candidates.
+   */
+  private int[] aiCandidates = null;
+  
+  /**
+   * The undo log.  Each entry holds a cell's old candidates in the
+   * upper bits and its location in the low 7 bits, plus TRAIL_PLACED
+   * if the cell was solved.
+   */
+  private int[] aiTrail = null;
+  
+  /**
+   * The number of entries in the undo log.
+   */
+  private int trailSize = 0;
+  
+  /**
+   * The unsolved cells 0-63, bucketed by their number of candidates.
+   * Bit N of entry C is set if cell N has C candidates.
+   */
+  private long[] alBucketLow = null;
+  
+  /**
+   * The unsolved cells 64-80, bucketed by their number of candidates.
+   * Bit N of entry C is set if cell (N + 64) has C candidates.
+   */
+  private long[] alBucketHigh = null;
+  
+  /**
+   * The number of unsolved cells that share a unit with each cell.
+   */
+  private int[] aiOpenPeers = null;
+  
+  /**
+   * The units (bit N for unit N) whose candidates have changed
+   * since they were last checked for eliminations.
+   */
+  private int unitQueue = 0;
+  
+  /**
+   * The strategies that are turned on (see Strategy.getMask()).
+   */
+  private int strategyMask = -1;
+  
+  /**
+   * Work space for the possible cells of each digit in a unit.
+   */
+  private int[] aiPositions = null;
+  
+  /**
+   * The possible cells for each digit, as a bitboard: bit N is
+   * cell N (low word) or cell (N + 64) (high word).
+   */
+  private long[] alDigitLow = null;
+  
+  /**
+   * The high words of the bitboard for each digit.
+   */
+  private long[] alDigitHigh = null;
+  
+  /**
+   * The transposed bitboard for each digit, where bit (col * 9 + row)
+   * is the cell at (row, col), so each column is nine consecutive bits.
+   */
+  private long[] alDigitTransposedLow = null;
+  
+  /**
+   * The high words of the transposed bitboard for each digit.
+   */
+  private long[] alDigitTransposedHigh = null;
+  
+  /**
+   * If set, the search stops as soon as this is cancelled.  Used
+   * by the caller to stop a solve, and by the parallel search to
+   * cancel the other branches.
+   */
+  private CancellationToken cancelToken = null;
+  
+  /**
+   * The search stops at this time, from System.nanoTime(), if
+   * bDeadline is set.
+   */
+  private long deadline = 0L;
+  
+  /**
+   * Whether the search has a deadline.
+   */
+  private boolean bDeadline = false;
+  
+  /**
+   * The most search nodes to visit.
+   */
+  private long maxNodes = Long.MAX_VALUE;
+  
+  /**
+   * Whether there is a cancellation token or deadline to check.
+   */
+  private boolean bWatched = false;
+  
+  /**
+   * The number of search nodes visited since the limits were set.
+   */
+  private long nodeCount = 0L;
+  
+  /**
+   * The limits are checked again when the node count reaches this.
+   * Without any limits, this is never reached.
+   */
+  private long nextCheck = Long.MAX_VALUE;
+  
+  /**
+   * The number of propagation passes, used to spread out the
+   * checks of the limits.
+   */
+  private int passCount = 0;
+  
+  /**
+   * Why the search was stopped, or null if it wasn't.
+   */
+  private SolveStatus stopStatus = null;
+  
+  /**
+   * The counts of the work done by the solver, or null to not count.
+   */
+  private SolveStatistics stats = null;
+  
+  /**
+   * Whether the puzzle has reached a state with no solution, such
+   * as a cell with no candidates.
+   */
+  private boolean bDeadEnd = false;
+  
   
   /**
    * Default constructor.
@@ -68,6 +255,109 @@ public final class Sudoku
   {
     aiMatrix = new int[NUM_CELLS];
     java.util.Arrays.fill(aiMatrix, 0);
+    
+    // Allocate the candidate masks once, so solving doesn't allocate
+    aiRowMasks = new int[9];
+    aiColumnMasks = new int[9];
+    aiBlockMasks = new int[9];
+    aiCandidates = new int[NUM_CELLS];
+    aiTrail = new int[TRAIL_SIZE];
+    alBucketLow = new long[10];
+    alBucketHigh = new long[10];
+    aiOpenPeers = new int[NUM_CELLS];
+    aiPositions = new int[9];
+    alDigitLow = new long[9];
+    alDigitHigh = new long[9];
+    alDigitTransposedLow = new long[9];
+    alDigitTransposedHigh = new long[9];
+  }
+  
+  
+  /**
+   * Turn a strategy on or off.  All strategies are on by default.
+   * 
+   * @param strategy the strategy
+   * @param enabled whether to use the strategy
+   */
+  public void setStrategyEnabled(final Strategy strategy, final boolean enabled)
+  {
+    if (enabled)
+    {
+      strategyMask |= strategy.getMask();
+    }
+    else
+    {
+      strategyMask &= ~strategy.getMask();
+    }
+  }
+  
+  
+  /**
+   * Return whether a strategy is turned on.
+   * 
+   * @param strategy the strategy
+   * @return whether the strategy is used
+   */
+  public boolean isStrategyEnabled(final Strategy strategy)
+  {
+    return isEnabled(strategy);
+  }
+  
+  
+  /**
+   * Set the object that counts the work done when solving this
+   * puzzle.  The counts add up over each solve.
+   * 
+   * @param statistics the counts, or null to not count
+   */
+  public void setStatistics(final SolveStatistics statistics)
+  {
+    stats = statistics;
+  }
+  
+  
+  /**
+   * Return the object that counts the work done when solving
+   * this puzzle.
+   * 
+   * @return the counts, or null if they aren't kept
+   */
+  public SolveStatistics getStatistics()
+  {
+    return stats;
+  }
+  
+  
+  /**
+   * Return whether a strategy is turned on.
+   * 
+   * @param strategy the strategy
+   * @return whether the strategy is used
+   */
+  private boolean isEnabled(final Strategy strategy)
+  {
+    return ((strategyMask & strategy.getMask()) != 0);
+  }
+  
+  
+  /**
+   * Return the hidden single strategy for a type of unit.
+   * 
+   * @param unit the unit of interest
+   * @return the matching strategy
+   */
+  private static Strategy getHiddenSingleStrategy(final int unit)
+  {
+    if (unit < 9)
+    {
+      return Strategy.HIDDEN_SINGLE_ROW;
+    }
+    else if (unit < 18)
+    {
+      return Strategy.HIDDEN_SINGLE_COLUMN;
+    }
+    
+    return Strategy.HIDDEN_SINGLE_BLOCK;
   }
   
   
@@ -103,6 +393,33 @@ public final class Sudoku
   }
   
   
+  /**
+   * Fill in the puzzle from a buffer of ASCII digits.  The
+   * buffer's position is not changed.
+   * 
+   * @param data the buffer
+   * @param offset the index of the first cell in the buffer
+   */
+  public void setData(final ByteBuffer data, final int offset)
+  {
+    // Check the data
+    if (data == null)
+    {
+      return;
+    }
+    
+    // Save the length
+    final int nLen = Math.min(data.limit() - offset, NUM_CELLS);
+    
+    // Iterate over the cells, treating anything but 1-9 as empty
+    for (int i = 0; i < nLen; ++i)
+    {
+      final int value = data.get(offset + i) - '0';
+      aiMatrix[i] = (((value >= 1) && (value <= 9)) ? value : 0);
+    }
+  }
+  
+  
   /**
    * Return the puzzle.
    * 
@@ -122,1213 +439,1535 @@ public final class Sudoku
   
   
   /**
-   * Return the cell at the specified location.
+   * Copy the puzzle data into an array.
    * 
-   * @param row the row of interest
-   * @param col the column of interest
-   * @return the cell at (row, col)
+   * @param grid the array to hold the 81 cells
    */
-  private Cell getCellAt(final int row, final int col)
+  void getMatrix(final int[] grid)
   {
-    final int location = getLocation(row, col);
-    return new Cell(location, aiMatrix[location]);
+    System.arraycopy(aiMatrix, 0, grid, 0, NUM_CELLS);
   }
   
   
   /**
-   * Return the list of cells in the specified row.
+   * Fill in the puzzle from an array.
    * 
-   * @param row the row of interest
-   * @return the cells in the specified row
+   * @param grid the array holding the 81 cells
    */
-  private List<Cell> getRow(final int row)
+  void setMatrix(final int[] grid)
   {
-    // Check the input
-    if ((row < 0) || (row > 8))
+    System.arraycopy(grid, 0, aiMatrix, 0, NUM_CELLS);
+  }
+  
+  
+  /**
+   * Return the bit mask for a digit.
+   * 
+   * @param value the digit (1-9)
+   * @return the bit mask for the digit
+   */
+  private static int getDigitMask(final int value)
+  {
+    return (1 << (value - 1));
+  }
+  
+  
+  /**
+   * Return the lowest digit set in a bit mask.
+   * 
+   * @param mask the bit mask (must be non-zero)
+   * @return the lowest digit in the mask
+   */
+  private static int getDigit(final int mask)
+  {
+    return (Integer.numberOfTrailingZeros(mask) + 1);
+  }
+  
+  
+  /**
+   * Return whether a bit mask has exactly one digit set.
+   * 
+   * @param mask the bit mask
+   * @return whether the mask holds a single digit
+   */
+  private static boolean isSingleDigit(final int mask)
+  {
+    return ((mask != 0) && ((mask & (mask - 1)) == 0));
+  }
+  
+  
+  /**
+   * Rebuild the row, column and block masks and the candidates
+   * for each cell from the puzzle data.  This also clears the
+   * undo log.
+   */
+  void initCandidates()
+  {
+    // Start over with an empty undo log, and check every unit
+    trailSize = 0;
+    bDeadEnd = false;
+    unitQueue = ALL_UNITS;
+    
+    // Clear the unit masks, the buckets and the peer counts
+    java.util.Arrays.fill(aiRowMasks, 0);
+    java.util.Arrays.fill(aiColumnMasks, 0);
+    java.util.Arrays.fill(aiBlockMasks, 0);
+    java.util.Arrays.fill(alBucketLow, 0L);
+    java.util.Arrays.fill(alBucketHigh, 0L);
+    java.util.Arrays.fill(aiOpenPeers, 20);
+    
+    // Record the digits already placed in each unit
+    for (int i = 0; i < NUM_CELLS; ++i)
     {
-      throw new RuntimeException("Illegal row value in getRow");
+      if (aiMatrix[i] != 0)
+      {
+        final int mask = getDigitMask(aiMatrix[i]);
+        aiRowMasks[Geometry.ROW[i]] |= mask;
+        aiColumnMasks[Geometry.COLUMN[i]] |= mask;
+        aiBlockMasks[Geometry.BLOCK[i]] |= mask;
+        adjustOpenPeers(i, -1);
+      }
     }
     
-    List<Cell> cells = new ArrayList<Cell>(9);
-    for (int i = 0; i < 9; ++i)
+    // An unsolved cell can hold any digit not in its row, column or block
+    for (int i = 0; i < NUM_CELLS; ++i)
     {
-      final int location = (row * 9) + i;
-      cells.add(new Cell(location, aiMatrix[location]));
+      if (aiMatrix[i] == 0)
+      {
+        aiCandidates[i] = ALL_DIGITS & ~(aiRowMasks[Geometry.ROW[i]] |
+                                         aiColumnMasks[Geometry.COLUMN[i]] |
+                                         aiBlockMasks[Geometry.BLOCK[i]]);
+        if (aiCandidates[i] == 0)
+        {
+          bDeadEnd = true;
+        }
+        addToBucket(i, aiCandidates[i]);
+      }
+      else
+      {
+        aiCandidates[i] = 0;
+      }
     }
-    
-    return cells;
   }
   
   
   /**
-   * Return the list of unsolved cells in the specified row.
+   * Put a value in a cell, and remove it from the candidates of
+   * every other cell in the same row, column and block.  The value
+   * must be one of the cell's candidates.
    * 
-   * @param row the row of interest
-   * @return the unsolved cells in the specified row
+   * @param location the cell location
+   * @param value the value to place
    */
-  private List<Cell> getRowsUnsolvedCells(final int row)
+  void placeValue(final int location, final int value)
   {
-    // Check the input
-    if ((row < 0) || (row > 8))
+    final int mask = getDigitMask(value);
+    
+    // Log the change so it can be undone
+    aiTrail[trailSize++] = (aiCandidates[location] << 8) | TRAIL_PLACED | location;
+    
+    // Update the cell and the unit masks
+    unitQueue |= Geometry.UNITS_OF[location];
+    removeFromBucket(location, aiCandidates[location]);
+    adjustOpenPeers(location, -1);
+    aiMatrix[location] = value;
+    aiCandidates[location] = 0;
+    aiRowMasks[Geometry.ROW[location]] |= mask;
+    aiColumnMasks[Geometry.COLUMN[location]] |= mask;
+    aiBlockMasks[Geometry.BLOCK[location]] |= mask;
+    
+    // Remove the value from the cells that share a unit with this one
+    final int[] peers = Geometry.PEERS[location];
+    for (int i = 0; i < Geometry.NUM_PEERS; ++i)
     {
-      throw new RuntimeException("Illegal row value");
+      removeCandidates(peers[i], mask);
     }
-    
-    // Declare the list of cells that we'll return
-    List<Cell> cells = new ArrayList<Cell>(9);
-    
-    // Compute the 9 locations for the cells we're interested in
-    for (int i = 0; i < 9; ++i)
+  }
+  
+  
+  /**
+   * Remove digits from the candidates of a cell, logging the
+   * change if there was one.
+   * 
+   * @param location the cell location
+   * @param mask the digits to remove
+   */
+  private void removeCandidates(final int location, final int mask)
+  {
+    final int candidates = aiCandidates[location];
+    if ((candidates & mask) != 0)
     {
-      // Compute the location for the current cell
-      final int location = (row * 9) + i;
+      // Log the old candidates, then remove the digits
+      aiTrail[trailSize++] = (candidates << 8) | location;
+      aiCandidates[location] = candidates & ~mask;
+      removeFromBucket(location, candidates);
+      addToBucket(location, aiCandidates[location]);
       
-      // Check if it's solved
-      if (aiMatrix[location] == 0)
+      // The cell's units need to be checked again
+      unitQueue |= Geometry.UNITS_OF[location];
+      
+      // An unsolved cell with nothing left means this is a dead end
+      if (aiCandidates[location] == 0)
       {
-        // It's not solved, so add it to the list
-        cells.add(new Cell(location, 0));
+        bDeadEnd = true;
       }
     }
-    
-    // Return the list of unsolved cells
-    return cells;
   }
   
   
   /**
-   * Return the column of cells in the specified column.
+   * Undo changes until the undo log is back to the specified size.
    * 
-   * @param column the column of interest
-   * @return the cells in the specified column
+   * @param mark the size of the undo log to roll back to
    */
-  private List<Cell> getColumn(final int column)
+  void undoTo(final int mark)
   {
-    // Check the input
-    if ((column < 0) || (column > 8))
+    while (trailSize > mark)
     {
-      throw new RuntimeException("Illegal column value in getColumn");
-    }
-    
-    List<Cell> cells = new ArrayList<Cell>(9);
-    for (int i = 0; i < 9; ++i)
-    {
-      final int location = column + (i * 9);
-      cells.add(new Cell(location, aiMatrix[location]));
+      final int entry = aiTrail[--trailSize];
+      final int location = entry & 0x7F;
+      
+      // If the cell was solved by this change, clear it
+      if ((entry & TRAIL_PLACED) != 0)
+      {
+        final int mask = ~getDigitMask(aiMatrix[location]);
+        aiRowMasks[Geometry.ROW[location]] &= mask;
+        aiColumnMasks[Geometry.COLUMN[location]] &= mask;
+        aiBlockMasks[Geometry.BLOCK[location]] &= mask;
+        aiMatrix[location] = 0;
+        adjustOpenPeers(location, 1);
+      }
+      else
+      {
+        removeFromBucket(location, aiCandidates[location]);
+      }
+      
+      // Restore the candidates
+      aiCandidates[location] = entry >>> 8;
+      addToBucket(location, aiCandidates[location]);
     }
     
-    return cells;
+    // Anything we rolled back to was fully propagated
+    bDeadEnd = false;
+    unitQueue = 0;
   }
   
   
   /**
-   * Return the list of unsolved cells in the specified column.
+   * Add an unsolved cell to the bucket for its number of candidates.
    * 
-   * @param column the column of interest
-   * @return the unsolved cells in the specified column
+   * @param location the cell location
+   * @param candidates the cell's candidates
    */
-  private List<Cell> getColumnsUnsolvedCells(final int column)
+  private void addToBucket(final int location, final int candidates)
   {
-    // Check the input
-    if ((column < 0) || (column > 8))
+    final int count = Integer.bitCount(candidates);
+    if (location < 64)
     {
-      throw new RuntimeException("Illegal column value");
+      alBucketLow[count] |= (1L << location);
     }
-    
-    // Declare the list of cells that we'll return
-    List<Cell> cells = new ArrayList<Cell>(9);
-    
-    // Compute the 9 locations for the cells we're interested in
-    for (int i = 0; i < 9; ++i)
+    else
     {
-      // Compute the location for the current cell
-      final int location = column + (i * 9);
-      
-      // Check if it's solved
-      if (aiMatrix[location] == 0)
-      {
-        // It's not solved, so add it to the list
-        cells.add(new Cell(location, 0));
-      }
+      alBucketHigh[count] |= (1L << (location - 64));
     }
-    
-    // Return the list of unsolved cells
-    return cells;
   }
   
   
   /**
-   * Return the integer location for the specified row and column.
+   * Remove an unsolved cell from the bucket for its number of
+   * candidates.
    * 
-   * @param row the row of interest
-   * @param col the column of interest
-   * @return the location corresponding to the specified row and column
+   * @param location the cell location
+   * @param candidates the cell's candidates
    */
-  private static int getLocation(final int row, final int col)
+  private void removeFromBucket(final int location, final int candidates)
   {
-    // Check the inputs
-    if ((row < 0) || (row > 8) || (col < 0) || (col > 8))
+    final int count = Integer.bitCount(candidates);
+    if (location < 64)
     {
-      throw new RuntimeException("Illegal value in getLocation()");
+      alBucketLow[count] &= ~(1L << location);
+    }
+    else
+    {
+      alBucketHigh[count] &= ~(1L << (location - 64));
     }
-    
-    return ((row * 9) + col);
   }
   
   
   /**
-   * Return the row and column for the specified location.
+   * Add a value to the unsolved-peer count of each of the 20 cells
+   * that share a unit with a cell.
    * 
-   * @param location the location of interest
-   * @return the row and column wrapped in a Point
+   * @param location the cell location
+   * @param delta the value to add
    */
-  private static java.awt.Point getRowColumn(final int location)
+  private void adjustOpenPeers(final int location, final int delta)
   {
-    // Check the inputs
-    if ((location < 0) || (location > 80))
+    final int[] peers = Geometry.PEERS[location];
+    for (int i = 0; i < Geometry.NUM_PEERS; ++i)
     {
-      throw new RuntimeException("Illegal value in getRowColumn()");
+      aiOpenPeers[peers[i]] += delta;
     }
-    
-    // Compute the row and column
-    final int row = location / 9;
-    final int col = location % 9;
-    
-    // Return a point with the row and column values
-    return new Point(row, col);
   }
   
   
   /**
-   * Return the list of cells in the specified block.
+   * Return the first cell in a bucket.
    * 
-   * @param block the block number
-   * @return the cells in the specified block
+   * @param count the number of candidates
+   * @return the cell location, or -1 if the bucket is empty
    */
-  private List<Cell> getBlock(final int block)
+  private int getFirstInBucket(final int count)
   {
-    // Check the input
-    if ((block < 0) || (block > 8))
+    if (alBucketLow[count] != 0L)
     {
-      throw new RuntimeException("Illegal block value in getBlock");
+      return Long.numberOfTrailingZeros(alBucketLow[count]);
     }
-    
-    // Declare the list of cells for this block
-    List<Cell> cells = new ArrayList<Cell>(9);
-    
-    // Get the cells in the specified block
-    final int rowStart = (block / 3) * 3;
-    final int colStart = (block % 3) * 3;
-    for (int rowIndex = 0; rowIndex < 3; ++rowIndex)
+    else if (alBucketHigh[count] != 0L)
     {
-      int row = rowStart + rowIndex;
-      for (int colIndex = 0; colIndex < 3; ++colIndex)
-      {
-        int col = colStart + colIndex;
-        cells.add(getCellAt(row, col));
-      }
+      return (Long.numberOfTrailingZeros(alBucketHigh[count]) + 64);
     }
     
-    // Return the cells
-    return cells;
+    return -1;
   }
   
   
   /**
-   * Return the list of unsolved cells in the specified block.
+   * Return the unsolved cell to branch on: the one with the fewest
+   * candidates, and of those, the one with the most unsolved peers.
    * 
-   * @param block the block number
-   * @return the unsolved cells in the specified block
+   * @return the cell location, or -1 if all cells are solved
    */
-  private List<Cell> getBlocksUnsolvedCells(final int block)
+  int getBranchCell()
   {
-    // Check the input
-    if ((block < 0) || (block > 8))
+    // Find the first non-empty bucket
+    for (int count = 1; count <= 9; ++count)
     {
-      throw new RuntimeException("Illegal block value");
-    }
-    
-    // Declare the list of cells for this block
-    List<Cell> cells = new ArrayList<Cell>(9);
-    
-    // Get the cells in the specified block
-    final int rowStart = (block / 3) * 3;
-    final int colStart = (block % 3) * 3;
-    for (int rowIndex = 0; rowIndex < 3; ++rowIndex)
-    {
-      int row = rowStart + rowIndex;
-      for (int colIndex = 0; colIndex < 3; ++colIndex)
+      long low = alBucketLow[count];
+      long high = alBucketHigh[count];
+      if ((low | high) == 0L)
       {
-        int col = colStart + colIndex;
-        
-        // Get the cell
-        Cell cell = getCellAt(row, col);
-        
-        // Check if it's solved
-        if (cell.getValue() == 0)
+        continue;
+      }
+      
+      // Pick the cell in this bucket with the most unsolved peers
+      int best = -1;
+      while (low != 0L)
+      {
+        final int location = Long.numberOfTrailingZeros(low);
+        low &= (low - 1L);
+        if ((best < 0) || (aiOpenPeers[location] > aiOpenPeers[best]))
+        {
+          best = location;
+        }
+      }
+      
+      while (high != 0L)
+      {
+        final int location = Long.numberOfTrailingZeros(high) + 64;
+        high &= (high - 1L);
+        if ((best < 0) || (aiOpenPeers[location] > aiOpenPeers[best]))
         {
-          // It's not solved, so save it
-          cells.add(cell);
+          best = location;
         }
       }
+      
+      return best;
     }
     
-    // Return the cells
-    return cells;
+    // There are no unsolved cells
+    return -1;
   }
   
   
   /**
-   * Return whether any of the cells in the list contain the
-   * value of interest.
+   * Return the number of entries in the undo log.
    * 
-   * @param cells the list of cells
-   * @param value the value to look for
-   * @return whether any of the cells in the list contain value
+   * @return the size of the undo log
    */
-  private boolean cellListHasValue(final List<Cell> cells, final int value)
+  int getTrailSize()
   {
-    // Check the input
-    if ((cells == null) || (cells.size() < 1))
-    {
-      return false;
-    }
-    
-    // This is the value we'll return
-    boolean bFound = false;
-    
-    // Iterate over the list of cells
-    for (Cell cell : cells)
-    {
-      // See if the values match
-      if (cell.getValue() == value)
-      {
-        // They do, so update the boolean and break out of the loop
-        bFound = true;
-        break;
-      }
-    }
-    
-    // Return whether the value was found
-    return bFound;
+    return trailSize;
   }
   
   
   /**
-   * Whether the row for the specified location has
-   * the specified value.
+   * Return the candidates for a cell.
    * 
-   * @param location the location of the row to check
-   * @param value the value to check
-   * @return whether the row has the value
+   * @param location the cell location
+   * @return the candidates, one bit per digit
    */
-  private boolean rowHasValueByLocation(final int location, final int value)
+  int getCandidates(final int location)
   {
-    // Check the input
-    if ((location < 0) || (location >= NUM_CELLS))
+    return aiCandidates[location];
+  }
+  
+  
+  /**
+   * Return the digits placed in a unit.
+   * 
+   * @param unit the unit of interest
+   * @return the digits placed in the unit
+   */
+  private int getUnitMask(final int unit)
+  {
+    if (unit < 9)
     {
-      return false;
+      return aiRowMasks[unit];
     }
-    else if ((value < 1) || (value > 9))
+    else if (unit < 18)
     {
-      return false;
+      return aiColumnMasks[unit - 9];
     }
     
-    List<Cell> cells = getRowByLocation(location);
-    return (cellListHasValue(cells, value));
+    return aiBlockMasks[unit - 18];
   }
   
   
   /**
-   * Whether the column for the specified location has
-   * the specified value.
+   * Return whether the puzzle is solved.
    * 
-   * @param location the location of the column to check
-   * @param value the value to check
-   * @return whether the column has the value
+   * @return whether the puzzle is solved
    */
-  private boolean columnHasValueByLocation(final int location, final int value)
+  public boolean isSolved()
   {
-    // Check the input
-    if ((location < 0) || (location >= NUM_CELLS))
-    {
-      return false;
-    }
-    else if ((value < 1) || (value > 9))
+    boolean isSolved = true;
+    
+    // Iterate over the list
+    for (int i = 0; (i < NUM_CELLS) && (isSolved); ++i)
     {
-      return false;
+      if (aiMatrix[i] == 0)
+      {
+        isSolved = false;
+      }
     }
     
-    List<Cell> cells = getColumnByLocation(location);
-    return (cellListHasValue(cells, value));
+    return isSolved;
   }
   
   
   /**
-   * Whether the block for the specified location has
-   * the specified value.
+   * Return the number of unsolved cells.
    * 
-   * @param location the location of the block to check
-   * @param value the value to check
-   * @return whether the row has the value
+   * @return the number of unsolved cells
    */
-  private boolean blockHasValueByLocation(final int location, final int value)
+  int getNumberOfUnsolvedCells()
   {
-    // Check the input
-    if ((location < 0) || (location >= NUM_CELLS))
-    {
-      return false;
-    }
-    else if ((value < 1) || (value > 9))
+    int nNum = 0;
+    
+    // Iterate over the list
+    for (int i = 0; i < NUM_CELLS; ++i)
     {
-      return true;
+      if (aiMatrix[i] == 0)
+      {
+        ++nNum;
+      }
     }
     
-    List<Cell> cells = getBlockByLocation(location);
-    return (cellListHasValue(cells, value));
+    return nNum;
   }
   
   
   /**
-   * Return the row number for the specified location.
+   * Check a unit (row, column or block) to see if any missing
+   * value can only be in one empty slot.
    * 
-   * @param location the location of interest
-   * @return the row number for the location
+   * @param unit the unit of interest
+   * @return whether the puzzle was changed
    */
-  private int getRowNumber(final int location)
+  private boolean checkUnitForElimination(final int unit)
   {
-    // Return the row number for this location
-    return getRowColumn(location).x;
+    // Find the digits that are a candidate in exactly one cell
+    int seenOnce = 0;
+    int seenTwice = 0;
+    for (int i = 0; i < 9; ++i)
+    {
+      final int candidates = aiCandidates[Geometry.UNIT_CELLS[unit][i]];
+      seenTwice |= (seenOnce & candidates);
+      seenOnce |= candidates;
+    }
+    
+    // A missing digit with no possible spot means this is a dead end
+    if ((ALL_DIGITS & ~(getUnitMask(unit) | seenOnce)) != 0)
+    {
+      bDeadEnd = true;
+      return false;
+    }
+    
+    // Check if this rule is turned on for this type of unit
+    if (!isEnabled(getHiddenSingleStrategy(unit)))
+    {
+      return false;
+    }
+    
+    // This is the variable we'll return at the end
+    boolean bChanged = false;
+    
+    // Iterate over the digits with only one possible spot
+    int singles = seenOnce & ~seenTwice;
+    while (singles != 0)
+    {
+      // Take the lowest remaining digit
+      final int mask = singles & -singles;
+      singles ^= mask;
+      
+      // Find the cell that can hold it.  An earlier placement in
+      // this loop may have removed it, in which case nothing happens.
+      for (int i = 0; i < 9; ++i)
+      {
+        final int location = Geometry.UNIT_CELLS[unit][i];
+        if ((aiCandidates[location] & mask) != 0)
+        {
+          placeValue(location, getDigit(mask));
+          bChanged = true;
+          if (stats != null)
+          {
+            stats.addStep(getHiddenSingleStrategy(unit));
+          }
+          break;
+        }
+      }
+    }
+    
+    // Return whether any changes were made
+    return bChanged;
   }
   
   
   /**
-   * Return the column number for the specified location.
+   * Apply the strategies beyond singles, cheapest first, stopping
+   * at the first one that removes a candidate.
    * 
-   * @param location the location of interest
-   * @return the column number for the location
+   * @return whether any candidates were removed
    */
-  private int getColumnNumber(final int location)
+  private boolean applyStrategies()
   {
-    // Return the column number for this location
-    return getRowColumn(location).y;
+    if ((isEnabled(Strategy.POINTING)) && (checkPointing()))
+    {
+      return applied(Strategy.POINTING);
+    }
+    else if ((isEnabled(Strategy.CLAIMING)) && (checkClaiming()))
+    {
+      return applied(Strategy.CLAIMING);
+    }
+    else if ((isEnabled(Strategy.NAKED_PAIR)) && (checkNakedSubsets(2)))
+    {
+      return applied(Strategy.NAKED_PAIR);
+    }
+    else if ((isEnabled(Strategy.HIDDEN_PAIR)) && (checkHiddenSubsets(2)))
+    {
+      return applied(Strategy.HIDDEN_PAIR);
+    }
+    else if ((isEnabled(Strategy.NAKED_TRIPLE)) && (checkNakedSubsets(3)))
+    {
+      return applied(Strategy.NAKED_TRIPLE);
+    }
+    else if ((isEnabled(Strategy.HIDDEN_TRIPLE)) && (checkHiddenSubsets(3)))
+    {
+      return applied(Strategy.HIDDEN_TRIPLE);
+    }
+    else if ((isEnabled(Strategy.X_WING)) && (checkFish(2)))
+    {
+      return applied(Strategy.X_WING);
+    }
+    else if ((isEnabled(Strategy.SWORDFISH)) && (checkFish(3)))
+    {
+      return applied(Strategy.SWORDFISH);
+    }
+    else if ((isEnabled(Strategy.JELLYFISH)) && (checkFish(4)))
+    {
+      return applied(Strategy.JELLYFISH);
+    }
+    
+    return false;
   }
   
   
   /**
-   * Return the block number for the specified location.
+   * Credit a strategy with removing candidates.
    * 
-   * @param location the location of interest
-   * @return the block number for the location
+   * @param strategy the strategy that was applied
+   * @return true, so this can end a chain of checks
    */
-  private int getBlockNumber(final int location)
+  private boolean applied(final Strategy strategy)
   {
-    // Check the inputs
-    if ((location < 0) || (location > 80))
+    if (stats != null)
     {
-      throw new RuntimeException("Illegal value in getBlockNumber()");
+      stats.addStep(strategy);
     }
     
-    // Get the row and column for this location
-    int row = getRowNumber(location) / 3;
-    int col = getColumnNumber(location) / 3;
-    
-    // Compute the block number and return it
-    return ((row * 3) + col);
+    return true;
   }
   
   
   /**
-   * Return the row of cells for the specified location.
+   * Remove digits from every unsolved cell in a unit that is not
+   * in a set of cells.
    * 
-   * @param location the location of interest
-   * @return the cells crossing the location
+   * @param unit the unit of interest
+   * @param skipCells the cells to leave alone (bit N for index N)
+   * @param mask the digits to remove
+   * @return whether any candidates were removed
    */
-  private List<Cell> getRowByLocation(final int location)
+  private boolean removeFromUnit(final int unit, final int skipCells,
+                                 final int mask)
   {
-    return (getRow(getRowNumber(location)));
+    boolean bChanged = false;
+    for (int i = 0; i < 9; ++i)
+    {
+      final int location = Geometry.UNIT_CELLS[unit][i];
+      if (((skipCells & (1 << i)) == 0) &&
+          ((aiCandidates[location] & mask) != 0))
+      {
+        removeCandidates(location, mask);
+        bChanged = true;
+      }
+    }
+    
+    return bChanged;
   }
   
   
   /**
-   * Return the column of cells for the specified location.
+   * Look for digits that, within a block, can only go in one row
+   * or column.  The digit can then be removed from the rest of that
+   * row or column.
    * 
-   * @param location the location of interest
-   * @return the cells crossing the location
+   * @return whether any candidates were removed
    */
-  private List<Cell> getColumnByLocation(final int location)
+  private boolean checkPointing()
   {
-    return (getColumn(getColumnNumber(location)));
+    // Iterate over each block
+    for (int block = 0; block < 9; ++block)
+    {
+      final int[] cells = Geometry.UNIT_CELLS[block + 18];
+      
+      // Collect the candidates in each row and column of the block
+      int row0 = 0, row1 = 0, row2 = 0;
+      int col0 = 0, col1 = 0, col2 = 0;
+      for (int i = 0; i < 3; ++i)
+      {
+        row0 |= aiCandidates[cells[i]];
+        row1 |= aiCandidates[cells[i + 3]];
+        row2 |= aiCandidates[cells[i + 6]];
+        col0 |= aiCandidates[cells[i * 3]];
+        col1 |= aiCandidates[cells[(i * 3) + 1]];
+        col2 |= aiCandidates[cells[(i * 3) + 2]];
+      }
+      
+      // The row and column numbers of the block's top left cell
+      final int row = Geometry.ROW[cells[0]];
+      final int col = Geometry.COLUMN[cells[0]];
+      
+      // The cells of the block, within a row or column
+      final int rowCells = 7 << col;
+      final int colCells = 7 << row;
+      
+      // Remove each digit confined to one line from the rest of the line
+      if ((removeFromUnit(row, rowCells, row0 & ~(row1 | row2))) |
+          (removeFromUnit(row + 1, rowCells, row1 & ~(row0 | row2))) |
+          (removeFromUnit(row + 2, rowCells, row2 & ~(row0 | row1))) |
+          (removeFromUnit(col + 9, colCells, col0 & ~(col1 | col2))) |
+          (removeFromUnit(col + 10, colCells, col1 & ~(col0 | col2))) |
+          (removeFromUnit(col + 11, colCells, col2 & ~(col0 | col1))))
+      {
+        return true;
+      }
+    }
+    
+    return false;
   }
   
   
   /**
-   * Return the column of cells for the specified location.
+   * Look for digits that, within a row or column, can only go in
+   * one block.  The digit can then be removed from the rest of that
+   * block.
    * 
-   * @param location the location of interest
-   * @return the cells crossing the location
+   * @return whether any candidates were removed
    */
-  private List<Cell> getBlockByLocation(final int location)
+  private boolean checkClaiming()
   {
-    return (getBlock(getBlockNumber(location)));
+    // Iterate over each row and column
+    for (int unit = 0; unit < 18; ++unit)
+    {
+      final int[] cells = Geometry.UNIT_CELLS[unit];
+      
+      // Collect the candidates in each third of the line
+      final int seg0 = aiCandidates[cells[0]] | aiCandidates[cells[1]] |
+                       aiCandidates[cells[2]];
+      final int seg1 = aiCandidates[cells[3]] | aiCandidates[cells[4]] |
+                       aiCandidates[cells[5]];
+      final int seg2 = aiCandidates[cells[6]] | aiCandidates[cells[7]] |
+                       aiCandidates[cells[8]];
+      
+      // Remove each digit confined to one block from the rest of the block
+      if ((claimForBlock(unit, cells[0], seg0 & ~(seg1 | seg2))) |
+          (claimForBlock(unit, cells[3], seg1 & ~(seg0 | seg2))) |
+          (claimForBlock(unit, cells[6], seg2 & ~(seg0 | seg1))))
+      {
+        return true;
+      }
+    }
+    
+    return false;
   }
   
   
   /**
-   * Return the list of possible values for a given location.
+   * Remove digits from the cells of a block that are not in the
+   * specified row or column.
    * 
-   * @param location the cell location
-   * @return the list of values possible for the location
+   * @param line the row or column unit
+   * @param location a cell in both the line and the block
+   * @param mask the digits to remove
+   * @return whether any candidates were removed
    */
-  private List<Integer> getValuesNotAt(final int location)
+  private boolean claimForBlock(final int line, final int location,
+                                final int mask)
   {
-    // This is the array that we'll return
-    List<Integer> values = new ArrayList<Integer>(9);
+    // Check the input
+    if (mask == 0)
+    {
+      return false;
+    }
     
-    // Iterate over the list of possible values
-    for (int value = 1; value <= 9; ++value)
+    // Skip the block cells that are on the line
+    final int block = Geometry.BLOCK[location];
+    final int[] cells = Geometry.UNIT_CELLS[block + 18];
+    int skipCells = 0;
+    for (int i = 0; i < 9; ++i)
     {
-      if ((!rowHasValueByLocation(location, value)) &&
-          (!columnHasValueByLocation(location, value)) &&
-          (!blockHasValueByLocation(location, value)))
+      if ((Geometry.UNITS_OF[cells[i]] & (1 << line)) != 0)
       {
-        values.add(new Integer(value));
+        skipCells |= (1 << i);
       }
     }
     
-    return values;
+    return removeFromUnit(block + 18, skipCells, mask);
   }
   
   
   /**
-   * Return the number of occurrences of the specified value
-   * in the list of cells.
+   * Look in each unit for a naked subset: N cells whose candidates
+   * only cover N digits.  Those digits can be removed from the
+   * other cells in the unit.
    * 
-   * @param cells the list of cells to check
-   * @param value the value to check for
-   * @return the number of matching values in the list
+   * @param size the size of the subset (2 or 3)
+   * @return whether any candidates were removed
    */
-  private int getValueCountInList(final List<Cell> cells,
-                                  final int value)
+  private boolean checkNakedSubsets(final int size)
   {
-    // This is the variable we'll return
-    int nNum = 0;
-    
-    // Iterate over the list, looking for the specified value
-    for (Cell cell : cells)
+    for (int unit = 0; unit < Geometry.NUM_UNITS; ++unit)
     {
-      if (cell.getValue() == value)
+      if (findNakedSubset(unit, size, 0, 0, 0, 0))
       {
-        ++nNum;
+        return true;
       }
     }
     
-    // Return the number of matching values in the list
-    return nNum;
+    return false;
   }
   
   
   /**
-   * Return the number of missing values (zeros) in the list of cells.
+   * Search a unit for a naked subset, by adding cells one at a
+   * time.
    * 
-   * @param cells the list of cells to check
-   * @return the number of missing values in the list
+   * @param unit the unit of interest
+   * @param size the size of the subset
+   * @param start the first cell index to consider adding
+   * @param count the number of cells chosen so far
+   * @param digits the candidates of the cells chosen so far
+   * @param chosen the cells chosen so far (bit N for index N)
+   * @return whether any candidates were removed
    */
-  private int getNumberOfMissingValues(final List<Cell> cells)
+  private boolean findNakedSubset(final int unit, final int size,
+                                  final int start, final int count,
+                                  final int digits, final int chosen)
   {
-    return getValueCountInList(cells, 0);
+    // If the subset is complete, remove its digits from the other cells
+    if (count == size)
+    {
+      return removeFromUnit(unit, chosen, digits);
+    }
+    
+    // Try adding each remaining cell
+    for (int i = start; i < 9; ++i)
+    {
+      final int candidates = aiCandidates[Geometry.UNIT_CELLS[unit][i]];
+      final int union = digits | candidates;
+      if ((candidates != 0) && (Integer.bitCount(union) <= size) &&
+          (findNakedSubset(unit, size, i + 1, count + 1, union,
+                           chosen | (1 << i))))
+      {
+        return true;
+      }
+    }
+    
+    return false;
   }
   
   
   /**
-   * Return the list of integers not in the specified row.
+   * Look in each unit for a hidden subset: N digits that can only
+   * go in the same N cells.  Any other candidates can be removed
+   * from those cells.
    * 
-   * @param row the row of interest
-   * @return the list of integers not in the row
+   * @param size the size of the subset (2 or 3)
+   * @return whether any candidates were removed
    */
-  private List<Integer> getValuesNotInRow(final int row)
+  private boolean checkHiddenSubsets(final int size)
   {
-    // Get the cells in this row
-    List<Cell> cells = getRow(row);
-    
-    // Get the number of digits missing from the list
-    final int nNumMissingDigits = getNumberOfMissingValues(cells);
-    
-    // This is the array that we'll return
-    List<Integer> values = new ArrayList<Integer>(nNumMissingDigits);
-    
-    // Check if any are missing
-    if (nNumMissingDigits < 1)
-    {
-      // None are missing, so there's nothing to do
-      return values;
-    }
-    
-    // Default to the current value was not found
-    boolean bFound = false;
-    
-    // Iterate over the list of possible values for a cell
-    for (int value = 1; value <= 9; ++value)
+    for (int unit = 0; unit < Geometry.NUM_UNITS; ++unit)
     {
-      // Default to the current value was not found
-      bFound = false;
-      
-      // Iterate over the cells until we hit the end or hit a match
-      for (int i = 0; (i < 9) && (!bFound); ++i)
+      // Find the possible cells (bit N for index N) for each digit
+      java.util.Arrays.fill(aiPositions, 0);
+      for (int i = 0; i < 9; ++i)
       {
-        // Update bFound with whether a match was found
-        bFound = (cells.get(i).getValue() == value);
+        int candidates = aiCandidates[Geometry.UNIT_CELLS[unit][i]];
+        while (candidates != 0)
+        {
+          final int mask = candidates & -candidates;
+          candidates ^= mask;
+          aiPositions[Integer.numberOfTrailingZeros(mask)] |= (1 << i);
+        }
       }
       
-      // Check if a match was found
-      if (!bFound)
+      if (findHiddenSubset(unit, size, 0, 0, 0, 0))
       {
-        // A match was not found, so add the value to the list to return
-        values.add(value);
-        
-        // Check if we hit the number of missing values
-        if (values.size() == nNumMissingDigits)
-        {
-          break;
-        }
+        return true;
       }
     }
     
-    // Return the list of values not found
-    return values;
+    return false;
   }
   
   
   /**
-   * Return the list of integers not in the specified block.
+   * Search a unit for a hidden subset, by adding digits one at a
+   * time.  The positions of each digit must already be computed.
    * 
-   * @param block the block of interest
-   * @return the list of integers not in the block
+   * @param unit the unit of interest
+   * @param size the size of the subset
+   * @param start the first digit index (0-8) to consider adding
+   * @param count the number of digits chosen so far
+   * @param cells the possible cells of the digits chosen so far
+   * @param chosen the digits chosen so far
+   * @return whether any candidates were removed
    */
-  private List<Integer> getValuesNotInBlock(final int block)
+  private boolean findHiddenSubset(final int unit, final int size,
+                                   final int start, final int count,
+                                   final int cells, final int chosen)
   {
-    // Get the cells in this block
-    List<Cell> cells = getBlock(block);
-    
-    // Get the number of digits missing from the list
-    final int nNumMissingDigits = getNumberOfMissingValues(cells);
-    
-    // This is the array that we'll return
-    List<Integer> values = new ArrayList<Integer>(nNumMissingDigits);
-    
-    // Check if any are missing
-    if (nNumMissingDigits < 1)
+    // If the subset is complete, remove the other digits from its cells
+    if (count == size)
     {
-      // None are missing, so there's nothing to do
-      return values;
+      return removeFromUnit(unit, ~cells, ALL_DIGITS & ~chosen);
     }
     
-    // Default to the current value was not found
-    boolean bFound = false;
-    
-    // Iterate over the list of possible values for a cell
-    for (int value = 1; value <= 9; ++value)
+    // Try adding each remaining digit.  Digits with one position
+    // are hidden singles, so they're left to the cheaper rule.
+    for (int i = start; i < 9; ++i)
     {
-      // Default to the current value was not found
-      bFound = false;
-      
-      // Iterate over the cells until we hit the end or hit a match
-      for (int i = 0; (i < 9) && (!bFound); ++i)
+      final int positions = aiPositions[i];
+      final int union = cells | positions;
+      if ((Integer.bitCount(positions) > 1) &&
+          (Integer.bitCount(union) <= size) &&
+          (findHiddenSubset(unit, size, i + 1, count + 1, union,
+                            chosen | (1 << i))))
       {
-        // Update bFound with whether a match was found
-        bFound = (cells.get(i).getValue() == value);
+        return true;
       }
-      
-      // Check if a match was found
-      if (!bFound)
+    }
+    
+    return false;
+  }
+  
+  
+  /**
+   * Build the bitboard of possible cells for each digit, along
+   * with its transpose (bit (col * 9 + row) for each cell).
+   */
+  private void buildBitboards()
+  {
+    java.util.Arrays.fill(alDigitLow, 0L);
+    java.util.Arrays.fill(alDigitHigh, 0L);
+    java.util.Arrays.fill(alDigitTransposedLow, 0L);
+    java.util.Arrays.fill(alDigitTransposedHigh, 0L);
+    
+    for (int location = 0; location < NUM_CELLS; ++location)
+    {
+      final int transposed = (Geometry.COLUMN[location] * 9) +
+                             Geometry.ROW[location];
+      int candidates = aiCandidates[location];
+      while (candidates != 0)
       {
-        // A match was not found, so add the value to the list to return
-        values.add(value);
+        final int digit = Integer.numberOfTrailingZeros(candidates);
+        candidates &= (candidates - 1);
         
-        // Check if we hit the number of missing values
-        if (values.size() == nNumMissingDigits)
+        if (location < 64)
         {
-          break;
+          alDigitLow[digit] |= (1L << location);
+        }
+        else
+        {
+          alDigitHigh[digit] |= (1L << (location - 64));
+        }
+        
+        if (transposed < 64)
+        {
+          alDigitTransposedLow[digit] |= (1L << transposed);
+        }
+        else
+        {
+          alDigitTransposedHigh[digit] |= (1L << (transposed - 64));
         }
       }
     }
-    
-    // Return the list of values not found
-    return values;
   }
   
   
   /**
-   * Return the list of integers not in the specified column.
+   * Look for a fish of the specified size: N rows in which a digit
+   * is confined to the same N columns (or the same with rows and
+   * columns swapped).  The digit can then be removed from the rest
+   * of those columns.
    * 
-   * @param column the column of interest
-   * @return the list of integers not in the column
+   * @param size the size of the fish (2 for X-Wing, 3 for Swordfish,
+   *             4 for Jellyfish)
+   * @return whether any candidates were removed
    */
-  private List<Integer> getValuesNotInColumn(final int column)
+  private boolean checkFish(final int size)
   {
-    // Get the cells in this column
-    List<Cell> cells = getColumn(column);
-    
-    // Get the number of digits missing from the list
-    final int nNumMissingDigits = getNumberOfMissingValues(cells);
-    
-    // This is the array that we'll return
-    List<Integer> values = new ArrayList<Integer>(nNumMissingDigits);
-    
-    // Check if any are missing
-    if (nNumMissingDigits < 1)
-    {
-      // None are missing, so there's nothing to do
-      return values;
-    }
+    // Get the possible cells for each digit
+    buildBitboards();
     
-    // Default to the current value was not found
-    boolean bFound = false;
-    
-    // Iterate over the list of possible values for a cell
-    for (int value = 1; value <= 9; ++value)
+    // Iterate over the digits
+    for (int digit = 0; digit < 9; ++digit)
     {
-      // Default to the current value was not found
-      bFound = false;
+      // Use the rows as the base lines.  The columns of each
+      // row are nine consecutive bits in the bitboard.
+      for (int row = 0; row < 9; ++row)
+      {
+        aiPositions[row] = Geometry.getNineBits(alDigitLow[digit],
+                                                alDigitHigh[digit], row * 9);
+      }
       
-      // Iterate over the cells until we hit the end or hit a match
-      for (int i = 0; (i < 9) && (!bFound); ++i)
+      if (findFish(digit, size, false, 0, 0, 0, 0))
       {
-        // Update bFound with whether a match was found
-        bFound = (cells.get(i).getValue() == value);
+        return true;
       }
       
-      // Check if a match was found
-      if (!bFound)
+      // Use the columns as the base lines, using the transpose
+      for (int col = 0; col < 9; ++col)
       {
-        // A match was not found, so add the value to the list to return
-        values.add(value);
-        
-        // Check if we hit the number of missing values
-        if (values.size() == nNumMissingDigits)
-        {
-          break;
-        }
+        aiPositions[col] = Geometry.getNineBits(alDigitTransposedLow[digit],
+                                                alDigitTransposedHigh[digit],
+                                                col * 9);
+      }
+      
+      if (findFish(digit, size, true, 0, 0, 0, 0))
+      {
+        return true;
       }
     }
     
-    // Return the list of values not found
-    return values;
+    return false;
   }
   
   
   /**
-   * Return whether the puzzle is solved.
+   * Search for a fish by adding base lines one at a time.  The
+   * positions of the digit in each base line must already be
+   * computed.
    * 
-   * @return whether the puzzle is solved
+   * @param digit the digit index (0-8)
+   * @param size the size of the fish
+   * @param byColumn whether the base lines are columns
+   * @param start the first base line to consider adding
+   * @param count the number of base lines chosen so far
+   * @param cover the lines crossing the chosen base lines
+   * @param base the base lines chosen so far
+   * @return whether any candidates were removed
    */
-  public boolean isSolved()
+  private boolean findFish(final int digit, final int size,
+                           final boolean byColumn, final int start,
+                           final int count, final int cover,
+                           final int base)
   {
-    boolean isSolved = true;
+    // If the fish is complete, remove the digit from the cover lines
+    if (count == size)
+    {
+      return removeFish(digit, byColumn, cover, base);
+    }
     
-    // Iterate over the list
-    for (int i = 0; (i < NUM_CELLS) && (isSolved); ++i)
+    // Try adding each remaining line.  A line with one position
+    // is a hidden single, so it's left to the cheaper rule.
+    for (int i = start; i < 9; ++i)
     {
-      if (aiMatrix[i] == 0)
+      final int positions = aiPositions[i];
+      final int union = cover | positions;
+      if ((Integer.bitCount(positions) > 1) &&
+          (Integer.bitCount(union) <= size) &&
+          (findFish(digit, size, byColumn, i + 1, count + 1, union,
+                    base | (1 << i))))
       {
-        isSolved = false;
+        return true;
       }
     }
     
-    return isSolved;
+    return false;
   }
   
   
   /**
-   * Return the number of unsolved cells.
+   * Remove a digit from the cells in the cover lines of a fish
+   * that are not in its base lines.
    * 
-   * @return the number of unsolved cells
+   * @param digit the digit index (0-8)
+   * @param byColumn whether the base lines are columns
+   * @param cover the cover lines
+   * @param base the base lines
+   * @return whether any candidates were removed
    */
-  @SuppressWarnings("unused")
-  private int getNumberOfUnsolvedCells()
+  private boolean removeFish(final int digit, final boolean byColumn,
+                             final int cover, final int base)
   {
-    int nNum = 0;
+    // Build the bitboard of cells in the cover lines
+    long low = 0L;
+    long high = 0L;
+    for (int line = 0; line < 9; ++line)
+    {
+      if ((cover & (1 << line)) != 0)
+      {
+        low |= (byColumn ? Geometry.ROW_LOW[line] : Geometry.COLUMN_LOW[line]);
+        high |= (byColumn ? Geometry.ROW_HIGH[line] : Geometry.COLUMN_HIGH[line]);
+      }
+    }
     
-    // Iterate over the list
-    for (int i = 0; i < NUM_CELLS; ++i)
+    // Take out the cells in the base lines
+    for (int line = 0; line < 9; ++line)
     {
-      if (aiMatrix[i] == 0)
+      if ((base & (1 << line)) != 0)
       {
-        ++nNum;
+        low &= ~(byColumn ? Geometry.COLUMN_LOW[line] : Geometry.ROW_LOW[line]);
+        high &= ~(byColumn ? Geometry.COLUMN_HIGH[line] : Geometry.ROW_HIGH[line]);
       }
     }
     
-    return nNum;
+    // Keep the cells that can hold the digit
+    low &= alDigitLow[digit];
+    high &= alDigitHigh[digit];
+    if ((low | high) == 0L)
+    {
+      return false;
+    }
+    
+    // Remove the digit from those cells
+    final int mask = 1 << digit;
+    while (low != 0L)
+    {
+      removeCandidates(Long.numberOfTrailingZeros(low), mask);
+      low &= (low - 1L);
+    }
+    
+    while (high != 0L)
+    {
+      removeCandidates(Long.numberOfTrailingZeros(high) + 64, mask);
+      high &= (high - 1L);
+    }
+    
+    return true;
   }
   
   
   /**
-   * Check an unsolved cell for having only one possibility.
+   * Return whether nine units, starting with the specified one,
+   * hold each digit at most once.
    * 
-   * @return whether the puzzle was changed
+   * @param matrix the puzzle data
+   * @param firstUnit the first unit to check
+   * @return whether the units are all valid
    */
-  private boolean checkForSinglePossibleValue()
+  private static boolean unitsAreValid(final int[] matrix, final int firstUnit)
   {
-    boolean bChanged = false;
-    
-    // Iterate over the list
-    for (int i = 0; i < NUM_CELLS; ++i)
+    // Iterate over each unit
+    for (int unit = firstUnit; unit < (firstUnit + 9); ++unit)
     {
-      if (aiMatrix[i] == 0)
+      // Record the digits seen so far, looking for a repeat
+      int seen = 0;
+      for (int i = 0; i < 9; ++i)
       {
-        List<Integer> possibleValues = getValuesNotAt(i);
-        if (possibleValues.size() == 1)
+        final int value = matrix[Geometry.UNIT_CELLS[unit][i]];
+        if (value != 0)
         {
-          aiMatrix[i] = possibleValues.get(0).intValue();
-          bChanged = true;
+          final int mask = getDigitMask(value);
+          if ((seen & mask) != 0)
+          {
+            return false;
+          }
+          seen |= mask;
         }
       }
     }
     
-    return bChanged;
+    return true;
   }
   
   
   /**
-   * Check each row to see if each missing value can only
-   * be in one empty slot.
+   * Return whether the rows are all valid.
    * 
-   * @return whether the puzzle was changed
+   * @return whether the rows are all valid
    */
-  private boolean checkRowForElimination()
+  private boolean rowsAreValid()
   {
-    // This is the variable we'll return at the end
-    boolean bChanged = false;
+    return unitsAreValid(aiMatrix, 0);
+  }
+  
+  
+  /**
+   * Return whether the columns are all valid.
+   * 
+   * @return whether the columns are all valid
+   */
+  private boolean columnsAreValid()
+  {
+    return unitsAreValid(aiMatrix, 9);
+  }
+  
+  
+  /**
+   * Return whether the blocks are all valid.
+   * 
+   * @return whether the blocks are all valid
+   */
+  private boolean blocksAreValid()
+  {
+    return unitsAreValid(aiMatrix, 18);
+  }
+  
+  
+  /**
+   * Return whether the empty cells are all valid.
+   * 
+   * @return whether the empty cells are all valid
+   */
+  private boolean emptiesAreValid()
+  {
+    // This is the value we'll return
+    boolean bValid = true;
     
-    // Iterate over each row
-    for (int row = 0; row < 9; ++row)
+    // Compute the candidates for each cell
+    initCandidates();
+    
+    // Iterate over all cells in the puzzle
+    for (int index = 0; (index < NUM_CELLS) && (bValid); ++index)
     {
-      // Get the unsolved cells in the current row
-      List<Cell> values = getRowsUnsolvedCells(row);
-      
-      // Get the values not in the row
-      List<Integer> missingValues = getValuesNotInRow(row);
+      // Get the value in this cell
+      int value = aiMatrix[index];
       
-      // Iterate over the missing values
-      for (Integer missingValue : missingValues)
+      // Check if it's solved
+      if (value == 0)
       {
-        // The number of possible spots for this value
-        int numOpenings = 0;
-        
-        // The last recorded viable cell for the current value
-        int openLocation = 0;
-        
-        // Iterate over the unsolved cells in the row
-        for (Cell cell : values)
-        {
-          // See if the block or column for this cell has the value
-          if (!(blockHasValueByLocation(cell.getLocation(), missingValue.intValue())))
-          {
-            if (!(columnHasValueByLocation(cell.getLocation(), missingValue.intValue())))
-            {
-              // The current missing value is not in this block or column,
-              // so save the location and increase the number of possible
-              // spots for this value
-              ++numOpenings;
-              openLocation = cell.getLocation();
-            }
-          }
-        }
-        
-        // See if there is only one possibility for the current missing value
-        if (numOpenings == 1)
+        // It's not solved.  See if there are any possible values for it
+        if (aiCandidates[index] == 0)
         {
-          // There is only one possibility, so update the array and
-          // record that the array changed
-          aiMatrix[openLocation] = missingValue.intValue();
-          bChanged = true;
+          bValid = false;
         }
       }
     }
     
-    // Return whether any changes were made
-    return bChanged;
+    // Return the validity
+    return bValid;
   }
   
   
   /**
-   * Check each column to see if each missing value can only
-   * be in one empty slot.
+   * Return whether the puzzle is in a consistent state.
    * 
-   * @return whether the puzzle was changed
+   * @return whether the puzzle is in a consistent state
+   */
+  public boolean isValid()
+  {
+    // Check each row, column, block and empty cells for duplicate values
+    return (rowsAreValid() && columnsAreValid() &&
+            blocksAreValid() && emptiesAreValid());
+  }
+  
+  
+  /**
+   * Solve the puzzle.
+   * 
+   * @return whether the puzzle was solved
    */
-  private boolean checkColumnForElimination()
+  public boolean solve()
   {
-    // This is the variable we'll return at the end
-    boolean bChanged = false;
+    final long start = ((stats == null) ? 0L : System.nanoTime());
+    final Object event = SolverEvents.beginSolve(this);
+    
+    // Compute the candidates for each cell
+    initCandidates();
     
-    // Iterate over each column
-    for (int col = 0; col < 9; ++col)
+    // Fill in everything that can be deduced
+    propagate();
+    
+    if (stats != null)
     {
-      // Get the unsolved cells in the current column
-      List<Cell> values = getColumnsUnsolvedCells(col);
-      
-      // Get the values not in the column
-      List<Integer> missingValues = getValuesNotInColumn(col);
-      
-      // Iterate over the missing values
-      for (Integer missingValue : missingValues)
-      {
-        // The number of possible spots for this value
-        int numOpenings = 0;
-        
-        // The last recorded viable cell for the current value
-        int openLocation = 0;
-        
-        // Iterate over the unsolved cells in the column
-        for (Cell cell : values)
-        {
-          // See if the block or row for this cell has the value
-          if (!(blockHasValueByLocation(cell.getLocation(), missingValue.intValue())))
-          {
-            if (!(rowHasValueByLocation(cell.getLocation(), missingValue.intValue())))
-            {
-              // The current missing value is not in this block or row,
-              // so save the location and increase the number of possible
-              // spots for this value
-              ++numOpenings;
-              openLocation = cell.getLocation();
-            }
-          }
-        }
-        
-        // See if there is only one possibility for the current missing value
-        if (numOpenings == 1)
-        {
-          // There is only one possibility, so update the array and
-          // record that the array changed
-          aiMatrix[openLocation] = missingValue.intValue();
-          bChanged = true;
-        }
-      }
+      stats.addSolve(System.nanoTime() - start);
+    }
+   
+    // Return whether the puzzle was solved
+    final boolean solved = isSolved();
+    if (event != null)
+    {
+      SolverEvents.endSolve(event, new SolveResult(SolveStatus.FINISHED, solved, 0L));
     }
     
-    // Return whether any changes were made
-    return bChanged;
+    return solved;
   }
   
   
   /**
-   * Check each block to see if each missing value can only
-   * be in one empty slot.
+   * Apply the deduction rules until there is nothing left to do
+   * or a contradiction is found.  Rather than sweeping the whole
+   * puzzle, this works from what changed: cells left with a single
+   * candidate, and units whose candidates changed.
    * 
-   * @return whether the puzzle was changed
+   * @return false if the puzzle has reached a dead end
    */
-  private boolean checkBlockForElimination()
+  boolean propagate()
   {
-    // This is the variable we'll return at the end
-    boolean bChanged = false;
-    
-    // Iterate over each block
-    for (int block = 0; block < 9; ++block)
+    final Object event = SolverEvents.beginPropagate(this);
+    final boolean consistent = deduce();
+    SolverEvents.endPropagate(event, this, consistent);
+    return consistent;
+  }
+  
+  
+  /**
+   * Apply the deduction rules, for propagate().
+   * 
+   * @return false if the puzzle has reached a dead end
+   */
+  private boolean deduce()
+  {
+    while (!bDeadEnd)
     {
-      // Get the unsolved cells in the current block
-      List<Cell> values = getBlocksUnsolvedCells(block);
+      // Stop if the limits on the solve have been reached
+      if ((bWatched) && (((++passCount) & CHECK_MASK) == 0) && (isStopped()))
+      {
+        nextCheck = 0L;
+        return false;
+      }
       
-      // Get the values not in the block
-      List<Integer> missingValues = getValuesNotInBlock(block);
+      if (stats != null)
+      {
+        stats.addPass();
+      }
       
-      // Iterate over the missing values
-      for (Integer missingValue : missingValues)
+      // Check for a cell with only one possible value
+      final int location = (isEnabled(Strategy.NAKED_SINGLE) ?
+                            getFirstInBucket(1) : -1);
+      if (location >= 0)
       {
-        // The number of possible spots for this value
-        int numOpenings = 0;
-        
-        // The last recorded viable cell for the current value
-        int openLocation = 0;
-        
-        // Iterate over the unsolved cells in the block
-        for (Cell cell : values)
-        {
-          // See if the row or column for this cell has the value
-          if (!(rowHasValueByLocation(cell.getLocation(), missingValue.intValue())))
-          {
-            if (!(columnHasValueByLocation(cell.getLocation(), missingValue.intValue())))
-            {
-              // The current missing value is not in this row or column,
-              // so save the location and increase the number of possible
-              // spots for this value
-              ++numOpenings;
-              openLocation = cell.getLocation();
-            }
-          }
-        }
-        
-        // See if there is only one possibility for the current missing value
-        if (numOpenings == 1)
+        placeValue(location, getDigit(aiCandidates[location]));
+        if (stats != null)
         {
-          // There is only one possibility, so update the array and
-          // record that the array changed
-          aiMatrix[openLocation] = missingValue.intValue();
-          bChanged = true;
+          stats.addStep(Strategy.NAKED_SINGLE);
         }
+        continue;
       }
+      
+      // Check a changed R/C/B to see if a missing value can
+      // only be in one location in that R/C/B
+      if (unitQueue != 0)
+      {
+        final int unit = Integer.numberOfTrailingZeros(unitQueue);
+        unitQueue &= (unitQueue - 1);
+        checkUnitForElimination(unit);
+        continue;
+      }
+      
+      // Try the more expensive rules
+      if (applyStrategies())
+      {
+        continue;
+      }
+      
+      // There's nothing left to check
+      break;
     }
     
-    // Return whether any changes were made
-    return bChanged;
+    return (!bDeadEnd);
   }
   
   
   /**
-   * Check each type of group (row, column, block) to see if
-   * each missing value can only be in one empty slot in
-   * that group.
+   * Try to solve a puzzle, making a guess if it can't solve it.
+   * The search backtracks as deep as needed, so any valid puzzle
+   * with a solution gets solved.  If there is no solution, the
+   * puzzle is left as it was.
    * 
-   * @return whether the puzzle was changed
+   * @return whether the puzzle was solved
    */
-  private boolean checkGroupForElimination()
+  public boolean solveWithGuess()
   {
-    // Check each type of grouping for changes to the puzzle
-    boolean bChanged1 = checkRowForElimination();
-    boolean bChanged2 = checkColumnForElimination();
-    boolean bChanged3 = checkBlockForElimination();
-    
-    // Return whether any of the methods above made a change to the puzzle
-    return ((bChanged1) || (bChanged2) || (bChanged3));
+    return solveWithGuess(null).isSolved();
   }
   
   
   /**
-   * Return whether the rows are all valid.
+   * Try to solve a puzzle, making a guess if it can't solve it,
+   * within the given limits.  If the search is stopped early or
+   * there is no solution, the puzzle is left as it was.
    * 
-   * @return whether the rows are all valid
+   * @param options the limits on the solve, or null for none
+   * @return the result of the solve
    */
-  private boolean rowsAreValid()
+  public SolveResult solveWithGuess(final SolveOptions options)
   {
-    // This is the value we'll return
-    boolean bValid = true;
-    
-    // Iterate over each group
-    for (int group = 0; (group < 9) && (bValid); ++group)
+    // Set the limits, and clear them again when done
+    final long start = ((stats == null) ? 0L : System.nanoTime());
+    final Object event = SolverEvents.beginSolve(this);
+    setLimits(options, (options == null) ? null : options.getCancellationToken());
+    try
     {
-      // Get the current group
-      List<Cell> cells = getRow(group);
-      
-      // Iterate over the possible (solved) values
-      for (int val = 1; (val <= 9) && (bValid); ++val)
+      final boolean solved = solveInPlace();
+      if (stats != null)
       {
-        // See if the current group has more than one occurrence
-        // of the current possible value
-        if (getValueCountInList(cells, val) > 1)
-        {
-          // It does, so this group is not valid
-          bValid = false;
-        }
+        stats.addSolve(System.nanoTime() - start);
       }
+      
+      final SolveResult result = new SolveResult(
+          (stopStatus == null) ? SolveStatus.FINISHED : stopStatus, solved, nodeCount);
+      SolverEvents.endSolve(event, result);
+      return result;
+    }
+    finally
+    {
+      setLimits(null, null);
     }
-    
-    // Return the validity
-    return bValid;
   }
   
   
   /**
-   * Return whether the columns are all valid.
+   * Solve the puzzle with the search, within the current limits.
    * 
-   * @return whether the columns are all valid
+   * @return whether the puzzle was solved
    */
-  private boolean columnsAreValid()
+  private boolean solveInPlace()
   {
-    // This is the value we'll return
-    boolean bValid = true;
+    // Check if it's valid
+    if (!isValid())
+    {
+      return false;
+    }
     
-    // Iterate over each group
-    for (int group = 0; (group < 9) && (bValid); ++group)
+    // Compute the candidates and start with an empty undo log
+    initCandidates();
+    
+    // Search for a solution
+    if (search())
     {
-      // Get the current group
-      List<Cell> cells = getColumn(group);
-      
-      // Iterate over the possible (solved) values
-      for (int val = 1; (val <= 9) && (bValid); ++val)
-      {
-        // See if the current group has more than one occurrence
-        // of the current possible value
-        if (getValueCountInList(cells, val) > 1)
-        {
-          // It does, so this group is not valid
-          bValid = false;
-        }
-      }
+      return true;
     }
     
-    // Return the validity
-    return bValid;
+    // There is no solution, so roll back to the original puzzle
+    undoTo(0);
+    return false;
   }
   
   
   /**
-   * Return whether the blocks are all valid.
+   * Depth-first search for a solution.  Each guess is undone with
+   * the trail, rather than by copying the puzzle.  The search
+   * branches on the cell with the fewest candidates.
    * 
-   * @return whether the blocks are all valid
+   * @return whether the puzzle was solved
    */
-  private boolean blocksAreValid()
+  boolean search()
   {
-    // This is the value we'll return
-    boolean bValid = true;
+    // Stop if the limits have been reached, and count the node
+    if ((nodeCount >= nextCheck) && (!checkLimits()))
+    {
+      return false;
+    }
+    ++nodeCount;
+    
+    // Fill in what can be deduced, and stop if this branch is impossible
+    if (!propagate())
+    {
+      return false;
+    }
+    
+    // Find the most constrained unsolved cell
+    final int location = getBranchCell();
+    
+    // If every cell is filled in, the puzzle is solved
+    if (location < 0)
+    {
+      return true;
+    }
+    
+    // Save the trail position so each guess can be undone
+    final int mark = trailSize;
     
-    // Iterate over each group
-    for (int group = 0; (group < 9) && (bValid); ++group)
+    // Try each possible value for the cell
+    int possibles = aiCandidates[location];
+    while (possibles != 0)
     {
-      // Get the current group
-      List<Cell> cells = getBlock(group);
+      // Take the lowest remaining possible value
+      final int mask = possibles & -possibles;
+      possibles ^= mask;
       
-      // Iterate over the possible (solved) values
-      for (int val = 1; (val <= 9) && (bValid); ++val)
+      // Make the guess and search from there
+      final int digit = getDigit(mask);
+      final Object event = SolverEvents.beginGuess(location, digit);
+      placeValue(location, digit);
+      if (stats != null)
       {
-        // See if the current group has more than one occurrence
-        // of the current possible value
-        if (getValueCountInList(cells, val) > 1)
-        {
-          // It does, so this group is not valid
-          bValid = false;
-        }
+        stats.addGuess();
+      }
+      
+      final boolean solved = search();
+      SolverEvents.endGuess(event, solved);
+      if (solved)
+      {
+        return true;
+      }
+      
+      // The guess failed, so undo it
+      undoTo(mark);
+      if (stats != null)
+      {
+        stats.addBacktrack();
       }
     }
     
-    // Return the validity
-    return bValid;
+    // None of the values worked
+    return false;
   }
   
   
   /**
-   * Return whether the empty cells are all valid.
+   * Count the solutions of the puzzle, stopping once the limit is
+   * reached.  A limit of 2 is enough to check whether the solution
+   * is unique.  The puzzle is left unchanged.
    * 
-   * @return whether the empty cells are all valid
+   * @param limit the most solutions to count
+   * @return the number of solutions found, up to the limit
    */
-  private boolean emptiesAreValid()
+  public int countSolutions(final int limit)
   {
-    // This is the value we'll return
-    boolean bValid = true;
-    
-    // Iterate over all cells in the puzzle
-    for (int index = 0; (index < NUM_CELLS) && (bValid); ++index)
-    {
-      // Get the value in this cell
-      int value = aiMatrix[index];
-      
-      // Check if it's solved
-      if (value == 0)
-      {
-        // It's not solved.  See if there are any possible values for it
-        List<Integer> values = getValuesNotAt(index);
-        if ((values == null) || (values.size() < 1))
-        {
-          bValid = false;
-        }
-      }
-    }
-    
-    // Return the validity
-    return bValid;
+    return countSolutions(limit, null);
   }
   
   
   /**
-   * Return whether the puzzle is in a consistent state.
+   * Count the solutions of the puzzle within the given limits,
+   * stopping once the count limit is reached.  The puzzle is left
+   * unchanged.
    * 
-   * @return whether the puzzle is in a consistent state
+   * @param limit the most solutions to count
+   * @param options the limits on the search, or null for none
+   * @return the number of solutions found, up to the limit, or -1
+   *         if the search was stopped early
    */
-  public boolean isValid()
+  public int countSolutions(final int limit, final SolveOptions options)
   {
-    // Check each row, column, block and empty cells for duplicate values
-    return (rowsAreValid() && columnsAreValid() &&
-            blocksAreValid() && emptiesAreValid());
+    // An invalid puzzle has no solutions
+    if ((limit < 1) || (!isValid()))
+    {
+      return 0;
+    }
+    
+    // Compute the candidates and start with an empty undo log
+    initCandidates();
+    setLimits(options, (options == null) ? null : options.getCancellationToken());
+    try
+    {
+      // Count the solutions, then roll back to the original puzzle
+      final int count = countFrom(limit);
+      undoTo(0);
+      return ((stopStatus == null) ? count : -1);
+    }
+    finally
+    {
+      setLimits(null, null);
+    }
   }
   
   
   /**
-   * Solve the puzzle.
+   * Return whether the puzzle has exactly one solution.
    * 
-   * @return whether the puzzle was solved
+   * @return whether the puzzle has a unique solution
    */
-  public boolean solve()
+  public boolean hasUniqueSolution()
   {
-    // This is the variable we return, to denote whether the
-    // puzzle changed at all
-    boolean puzzleChanged = false;
-    
-    do
-    {
-      // Check each empty cell in the puzzle, and see if
-      // there is only one possible value for that cell
-      puzzleChanged = checkForSinglePossibleValue();
-      
-      // For each R/C/B, check if a missing value can
-      // only be in one location in that R/C/B
-      boolean bChanged1 = checkGroupForElimination();
-      
-      // See if there were any changes made to the puzzle
-      puzzleChanged = (puzzleChanged || bChanged1);
-    } while (puzzleChanged);
-   
-    // Return whether the puzzle was solved
-    return isSolved();
+    return (countSolutions(2) == 1);
   }
   
   
   /**
-   * Try to solve a puzzle, making a guess if it can't solve it.
+   * Depth-first search that counts solutions instead of stopping
+   * at the first one.
    * 
-   * @return whether the puzzle was solved
+   * @param limit the most solutions to count
+   * @return the number of solutions found, up to the limit
    */
-  public boolean solveWithGuess()
+  int countFrom(final int limit)
   {
-    // Check if it's valid
-    if (!isValid())
+    // Stop if the limits have been reached, and count the node
+    if ((nodeCount >= nextCheck) && (!checkLimits()))
     {
-      return false;
+      return 0;
+    }
+    ++nodeCount;
+    
+    // Fill in what can be deduced, and stop if this branch is impossible
+    if (!propagate())
+    {
+      return 0;
     }
     
-    // Try to solve
-    boolean solved = solve();
+    // If every cell is filled in, this is one solution
+    final int location = getBranchCell();
+    if (location < 0)
+    {
+      return 1;
+    }
     
-    // This is the puzzle copy that will be used below
-    Sudoku puzzle = new Sudoku();
+    // Save the trail position so each guess can be undone
+    final int mark = trailSize;
     
-    // Is it solved?
-    if (!solved)
+    // Add up the solutions for each possible value of the cell
+    int count = 0;
+    int possibles = aiCandidates[location];
+    while ((possibles != 0) && (count < limit))
     {
-      // It's not, so iterate over all the cells
-      for (int i = 0; (i < NUM_CELLS) && (!solved); ++i)
+      // Take the lowest remaining possible value
+      final int mask = possibles & -possibles;
+      possibles ^= mask;
+      
+      // Make the guess and count from there
+      placeValue(location, getDigit(mask));
+      if (stats != null)
       {
-        // Is this cell solved?
-        if (aiMatrix[i] == 0)
-        {
-          // It's not, so get the possible values for the cell
-          List<Integer> possibles = getValuesNotAt(i);
-          
-          // Iterate over the possible values
-          for (int poss = 0; (poss < possibles.size()) && (!solved); ++poss)
-          {
-            // Copy the puzzle
-            puzzle.copyMatrix(this);
-            
-            // Set the current cell to the current possible value
-            puzzle.aiMatrix[i] = possibles.get(poss).intValue();
-            
-            // Try to solve the copy
-            boolean rc = puzzle.solve();
-            
-            // Did it solve the puzzle and is it valid?
-            if ((rc) && (puzzle.isValid()))
-            {
-              // It is, so save the data and update the solved boolean
-              copyMatrix(puzzle);
-              solved = true;
-            }
-          }
-        }
+        stats.addGuess();
+      }
+      
+      count += countFrom(limit - count);
+      undoTo(mark);
+      if (stats != null)
+      {
+        stats.addBacktrack();
       }
     }
     
-    // Return whether the puzzle was solved
-    return solved;
+    return count;
   }
   
   
@@ -1390,6 +2029,176 @@ public final class Sudoku
   }
   
   
+  /**
+   * Return a copy of this puzzle with the same strategy settings.
+   * 
+   * @return a copy of this
+   */
+  Sudoku copy()
+  {
+    Sudoku sudoku = new Sudoku();
+    sudoku.copyMatrix(this);
+    sudoku.strategyMask = strategyMask;
+    return sudoku;
+  }
+  
+  
+  /**
+   * Return a copy of this puzzle in its current search state: the
+   * candidates, masks and buckets are copied, and the copy starts
+   * with an empty undo log.  The state must be fully propagated.
+   * 
+   * @return a copy of this, ready to continue the search
+   */
+  Sudoku copyState()
+  {
+    Sudoku sudoku = copy();
+    System.arraycopy(aiRowMasks, 0, sudoku.aiRowMasks, 0, 9);
+    System.arraycopy(aiColumnMasks, 0, sudoku.aiColumnMasks, 0, 9);
+    System.arraycopy(aiBlockMasks, 0, sudoku.aiBlockMasks, 0, 9);
+    System.arraycopy(aiCandidates, 0, sudoku.aiCandidates, 0, NUM_CELLS);
+    System.arraycopy(alBucketLow, 0, sudoku.alBucketLow, 0, 10);
+    System.arraycopy(alBucketHigh, 0, sudoku.alBucketHigh, 0, 10);
+    System.arraycopy(aiOpenPeers, 0, sudoku.aiOpenPeers, 0, NUM_CELLS);
+    return sudoku;
+  }
+  
+  
+  /**
+   * Set the limits on the search, and reset the count of nodes.
+   * The cancellation token is passed separately, so the parallel
+   * search can use its own token with the caller's limits.
+   * 
+   * @param options the deadline and node limit, or null for none
+   * @param token the cancellation token, or null to never cancel
+   */
+  void setLimits(final SolveOptions options, final CancellationToken token)
+  {
+    cancelToken = token;
+    bDeadline = ((options != null) && (options.hasDeadline()));
+    deadline = (bDeadline ? options.getDeadline() : 0L);
+    maxNodes = ((options == null) ? Long.MAX_VALUE : options.getMaxNodes());
+    bWatched = ((token != null) || (bDeadline));
+    nodeCount = 0L;
+    nextCheck = (bWatched ? 0L : maxNodes);
+    stopStatus = null;
+  }
+  
+  
+  /**
+   * Set the most search nodes to visit, after the limits were set.
+   * 
+   * @param nodes the most nodes to visit
+   */
+  void setMaxNodes(final long nodes)
+  {
+    maxNodes = nodes;
+    nextCheck = 0L;
+  }
+  
+  
+  /**
+   * Check the limits before a new search node, and schedule the
+   * next check.  Between checks, the search only compares the
+   * node count, so the limits cost almost nothing.
+   * 
+   * @return whether the search can continue
+   */
+  private boolean checkLimits()
+  {
+    if ((stopStatus == null) && (nodeCount >= maxNodes))
+    {
+      stopStatus = SolveStatus.NODE_LIMIT;
+    }
+    
+    if (isStopped())
+    {
+      // Check again (and stop) at every node from now on
+      nextCheck = 0L;
+      return false;
+    }
+    
+    nextCheck = (bWatched ? Math.min(maxNodes, nodeCount + CHECK_INTERVAL) : maxNodes);
+    return true;
+  }
+  
+  
+  /**
+   * Check whether the search should stop, because it was stopped
+   * already, its token was cancelled, or its deadline has passed.
+   * 
+   * @return whether the search should stop
+   */
+  private boolean isStopped()
+  {
+    if (stopStatus == null)
+    {
+      if ((cancelToken != null) && (cancelToken.isCancelled()))
+      {
+        stopStatus = SolveStatus.CANCELLED;
+      }
+      else if ((bDeadline) && (System.nanoTime() - deadline >= 0L))
+      {
+        stopStatus = SolveStatus.TIMED_OUT;
+      }
+    }
+    
+    return (stopStatus != null);
+  }
+  
+  
+  /**
+   * Return why the search was stopped.
+   * 
+   * @return why the search was stopped, or null if it wasn't
+   */
+  SolveStatus getStopStatus()
+  {
+    return stopStatus;
+  }
+  
+  
+  /**
+   * Return the number of search nodes visited since the limits
+   * were set.
+   * 
+   * @return the number of nodes
+   */
+  long getNodeCount()
+  {
+    return nodeCount;
+  }
+  
+  
+  /**
+   * Return an iterator over the solutions of this puzzle.  The
+   * solutions are found one at a time, as the iterator advances,
+   * by searching a copy of the puzzle.  Each solution is returned
+   * as a string of 81 digits.  An invalid puzzle has no solutions.
+   * 
+   * @return an iterator over the solutions
+   */
+  public Iterator<String> solutionIterator()
+  {
+    return new SolutionIterator(this);
+  }
+  
+  
+  /**
+   * Return a sequential stream of the solutions of this puzzle.
+   * The solutions are found lazily, so memory use doesn't depend
+   * on how many there are.
+   * 
+   * @return a stream of the solutions, as strings of 81 digits
+   */
+  public Stream<String> solutions()
+  {
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(
+        solutionIterator(), Spliterator.ORDERED | Spliterator.DISTINCT |
+        Spliterator.NONNULL | Spliterator.IMMUTABLE), false);
+  }
+  
+  
   /**
    * Clone this object.
    * 
@@ -1473,6 +2282,34 @@ public final class Sudoku
   }
   
   
+  /**
+   * Return the canonical form of the puzzle.  Puzzles that differ
+   * only by relabeling the digits, or by the row and column moves
+   * that keep a grid valid, have the same canonical form.
+   * 
+   * @return the canonical form, as 81 digits
+   * @see Canonicalizer
+   */
+  public String getCanonicalForm()
+  {
+    return new Canonicalizer().canonicalize(this);
+  }
+  
+  
+  /**
+   * Return whether another puzzle is the same as this one, up to
+   * relabeling the digits and the row and column moves that keep
+   * a grid valid.  Unlike equals, this ignores the layout.
+   * 
+   * @param other the other puzzle
+   * @return whether the puzzles are equivalent
+   */
+  public boolean isEquivalent(final Sudoku other)
+  {
+    return ((other != null) && (getCanonicalForm().equals(other.getCanonicalForm())));
+  }
+  
+  
   /**
    * Main entry point for the application.
    * 
@@ -1487,12 +2324,15 @@ public final class Sudoku
     puzzle.setData("0500608000300070409400801000000003080607" +
                    "05010409000000005090076090800030001070080");
     
-    // Solve the puzzle
+    // Solve the puzzle, counting the work done
+    SolveStatistics statistics = new SolveStatistics();
+    puzzle.setStatistics(statistics);
     boolean solved = puzzle.solveWithGuess();
     
-    // Print out whether it was solved, and the puzzle
+    // Print out whether it was solved, the puzzle and the counts
     System.out.println("Solved? " + ((solved ? "Yes" : "No")));
     System.out.println("Valid? " + ((puzzle.isValid() ? "Yes" : "No")));
     System.out.println(puzzle.toString());
+    System.out.println(statistics.toString());
   }
 }
@@ -0,0 +1,83 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.sudoku;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * The flight recorder event for one solve of a puzzle.  By default
+ * only solves that take at least 20 milliseconds are recorded.
+ * 
+ * @author Mike Wallace (mwallace at pobox.com)
+ * @version 1.0
+ */
+@Name("io.miti.sudoku.Solve")
+@Label("Sudoku Solve")
+@Category("Sudoku")
+@Description("The solve of one puzzle")
+@StackTrace(false)
+@Threshold("20 ms")
+final class SolveEvent extends Event
+{
+  /**
+   * The puzzle, as 81 digits, with zero for an empty cell.
+   */
+  @Label("Puzzle")
+  String puzzle;
+  
+  /**
+   * The number of cells filled in before the solve.
+   */
+  @Label("Clues")
+  int clues;
+  
+  /**
+   * How the solve ended.
+   */
+  @Label("Status")
+  String status;
+  
+  /**
+   * Whether the puzzle was solved.
+   */
+  @Label("Solved")
+  boolean solved;
+  
+  /**
+   * The number of search nodes visited.
+   */
+  @Label("Nodes")
+  long nodes;
+}
@@ -0,0 +1,221 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.sudoku;
+
+import jdk.jfr.EventType;
+
+/**
+ * The hooks that record Java Flight Recorder events for the solver:
+ * one for each solve, each round of propagation, and each guess.
+ * 
+ * This is the Java 11 version, which is placed in the jar under
+ * META-INF/versions/11 and replaces the empty Java 8 version.
+ * An event object is only created if the event type is turned on
+ * in a running recording, so with no recording the cost is a
+ * check of a flag.
+ * 
+ * @author Mike Wallace (mwallace at pobox.com)
+ * @version 1.0
+ */
+final class SolverEvents
+{
+  /**
+   * The number of cells in a row.
+   */
+  private static final int ROW_SIZE = 9;
+  
+  /**
+   * The number of cells in the puzzle.
+   */
+  private static final int NUM_CELLS = ROW_SIZE * ROW_SIZE;
+  
+  /**
+   * The type of the solve event.
+   */
+  private static final EventType SOLVE_TYPE = EventType.getEventType(SolveEvent.class);
+  
+  /**
+   * The type of the propagate event.
+   */
+  private static final EventType PROPAGATE_TYPE =
+    EventType.getEventType(PropagateEvent.class);
+  
+  /**
+   * The type of the guess event.
+   */
+  private static final EventType GUESS_TYPE = EventType.getEventType(GuessEvent.class);
+  
+  
+  /**
+   * Default constructor.  Not used.
+   */
+  private SolverEvents()
+  {
+    super();
+  }
+  
+  
+  /**
+   * Start timing a solve.
+   * 
+   * @param puzzle the puzzle, before it's solved
+   * @return the event handle, or null
+   */
+  static Object beginSolve(final Sudoku puzzle)
+  {
+    if (!SOLVE_TYPE.isEnabled())
+    {
+      return null;
+    }
+    
+    SolveEvent event = new SolveEvent();
+    event.puzzle = puzzle.getData();
+    event.clues = NUM_CELLS - puzzle.getNumberOfUnsolvedCells();
+    event.begin();
+    return event;
+  }
+  
+  
+  /**
+   * Finish timing a solve.
+   * 
+   * @param event the event handle, or null
+   * @param result the result of the solve
+   */
+  static void endSolve(final Object event, final SolveResult result)
+  {
+    if (event == null)
+    {
+      return;
+    }
+    
+    SolveEvent solve = (SolveEvent) event;
+    solve.end();
+    if (solve.shouldCommit())
+    {
+      solve.status = result.getStatus().toString();
+      solve.solved = result.isSolved();
+      solve.nodes = result.getNodeCount();
+      solve.commit();
+    }
+  }
+  
+  
+  /**
+   * Start timing a round of propagation.
+   * 
+   * @param puzzle the puzzle
+   * @return the event handle, or null
+   */
+  static Object beginPropagate(final Sudoku puzzle)
+  {
+    if (!PROPAGATE_TYPE.isEnabled())
+    {
+      return null;
+    }
+    
+    PropagateEvent event = new PropagateEvent();
+    event.placed = puzzle.getNumberOfUnsolvedCells();
+    event.begin();
+    return event;
+  }
+  
+  
+  /**
+   * Finish timing a round of propagation.
+   * 
+   * @param event the event handle, or null
+   * @param puzzle the puzzle
+   * @param consistent false if the round reached a dead end
+   */
+  static void endPropagate(final Object event, final Sudoku puzzle,
+                           final boolean consistent)
+  {
+    if (event == null)
+    {
+      return;
+    }
+    
+    PropagateEvent propagate = (PropagateEvent) event;
+    propagate.end();
+    if (propagate.shouldCommit())
+    {
+      // The field held the number of empty cells before the round
+      propagate.placed -= puzzle.getNumberOfUnsolvedCells();
+      propagate.deadEnd = !consistent;
+      propagate.commit();
+    }
+  }
+  
+  
+  /**
+   * Start timing a guess, and the search below it.
+   * 
+   * @param location the cell guessed
+   * @param value the value guessed
+   * @return the event handle, or null
+   */
+  static Object beginGuess(final int location, final int value)
+  {
+    if (!GUESS_TYPE.isEnabled())
+    {
+      return null;
+    }
+    
+    GuessEvent event = new GuessEvent();
+    event.row = (location / ROW_SIZE) + 1;
+    event.column = (location % ROW_SIZE) + 1;
+    event.value = value;
+    event.begin();
+    return event;
+  }
+  
+  
+  /**
+   * Finish timing a guess.
+   * 
+   * @param event the event handle, or null
+   * @param solved whether the guess led to a solution
+   */
+  static void endGuess(final Object event, final boolean solved)
+  {
+    if (event == null)
+    {
+      return;
+    }
+    
+    GuessEvent guess = (GuessEvent) event;
+    guess.end();
+    if (guess.shouldCommit())
+    {
+      guess.solved = solved;
+      guess.commit();
+    }
+  }
+}